@@ -0,0 +1,5 @@
+#!/bin/sh
+# Lets the replica in docker-compose.yaml stream the WAL from the primary.
+# Only runs when the primary's data volume is initialized.
+set -e
+echo "host replication all all scram-sha-256" >> "$PGDATA/pg_hba.conf"
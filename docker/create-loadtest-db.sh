@@ -0,0 +1,7 @@
+#!/bin/sh
+# Creates the database of the load tests, which empty and reseed the job_ad table,
+# so they never touch the development database.
+# Only runs when the primary's data volume is initialized.
+set -e
+psql -v ON_ERROR_STOP=1 --username "$POSTGRES_USER" --dbname "$POSTGRES_DB" \
+  -c "CREATE DATABASE jobdb_loadtest OWNER $POSTGRES_USER"
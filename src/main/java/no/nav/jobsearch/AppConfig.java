@@ -1,22 +1,63 @@
 package no.nav.jobsearch;
 
+import java.net.http.HttpClient;
 import java.util.List;
+import java.util.concurrent.Executors;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.http.client.reactive.JdkClientHttpConnector;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
 
 @Configuration
 public class AppConfig {
 
   /**
    * Creates a RestTemplate bean to be used for making HTTP requests.
+   * If virtual threads are enabled, the requests are made with the JDK HttpClient
+   * instead of HttpURLConnection, with the internal tasks of the client also running on virtual threads.
    *
+   * @param virtualThreads Whether virtual threads are enabled
    * @return A RestTemplate bean
    */
   @Bean
-  public RestTemplate restTemplate() {
+  public RestTemplate restTemplate(
+    @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads
+  ) {
     RestTemplate restTemplate = new RestTemplate();
+    if (virtualThreads) {
+      restTemplate.setRequestFactory(
+        new JdkClientHttpRequestFactory(
+          HttpClient
+            .newBuilder()
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build()
+        )
+      );
+    }
     restTemplate.setInterceptors(List.of(new UriEncodingInterceptor()));
     return restTemplate;
   }
+
+  /**
+   * Creates the WebClient used by the reactive feed client.
+   * The requests are made with the non-blocking JDK HttpClient,
+   * so many page requests can be in flight without a thread per request.
+   *
+   * @return A WebClient bean
+   */
+  @Bean
+  @ConditionalOnProperty(name = "feed.client", havingValue = "reactive")
+  public WebClient feedWebClient() {
+    return WebClient
+      .builder()
+      .clientConnector(new JdkClientHttpConnector(HttpClient.newHttpClient()))
+      .codecs(codecs ->
+        codecs.defaultCodecs().maxInMemorySize(16 * 1024 * 1024)
+      )
+      .build();
+  }
 }
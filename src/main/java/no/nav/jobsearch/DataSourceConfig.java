@@ -0,0 +1,101 @@
+package no.nav.jobsearch;
+
+import com.zaxxer.hikari.HikariDataSource;
+import java.sql.Connection;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+/**
+ * Splits the database access between a primary and a replica datasource, each with its own connection pool.
+ * Read-only transactions, like the exports, use the replica,
+ * and all other transactions use the primary, so a full refresh can't take the connections needed to serve requests.
+ * The statistics snapshot and the keyword index are loaded in read/write transactions, as they must not lag behind the primary.
+ * The replica is configured with {@code spring.datasource.replica.*} and defaults to the primary database.
+ */
+@Configuration
+public class DataSourceConfig {
+
+  /**
+   * Creates the connection pool of the primary database, configured with {@code spring.datasource.*}.
+   *
+   * @param properties The datasource properties
+   * @return The primary datasource
+   */
+  @Bean
+  @ConfigurationProperties("spring.datasource.hikari")
+  public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+    HikariDataSource dataSource = properties
+      .initializeDataSourceBuilder()
+      .type(HikariDataSource.class)
+      .build();
+    dataSource.setPoolName("primary");
+    return dataSource;
+  }
+
+  /**
+   * Creates the connection pool of the replica database.
+   * The URL and the credentials default to those of the primary database.
+   *
+   * @param properties The datasource properties of the primary database
+   * @param url The JDBC URL of the replica (optional)
+   * @param username The username of the replica (optional)
+   * @param password The password of the replica (optional)
+   * @return The replica datasource
+   */
+  @Bean
+  @ConfigurationProperties("spring.datasource.replica.hikari")
+  public HikariDataSource replicaDataSource(
+    DataSourceProperties properties,
+    @Value("${spring.datasource.replica.url:}") String url,
+    @Value("${spring.datasource.replica.username:}") String username,
+    @Value("${spring.datasource.replica.password:}") String password
+  ) {
+    HikariDataSource dataSource = properties
+      .initializeDataSourceBuilder()
+      .type(HikariDataSource.class)
+      .build();
+    if (!url.isBlank()) {
+      dataSource.setJdbcUrl(url);
+    }
+    if (!username.isBlank()) {
+      dataSource.setUsername(username);
+      dataSource.setPassword(password);
+    }
+    dataSource.setPoolName("replica");
+    return dataSource;
+  }
+
+  /**
+   * Creates the datasource used by JPA and JDBC.
+   * The connection is only fetched from a pool when it is first used,
+   * once a transaction has marked it as read-only or not, and is fetched from the replica if it is read-only.
+   * The connection defaults are given up front, so no connection is needed at startup.
+   *
+   * @param primaryDataSource The primary datasource
+   * @param replicaDataSource The replica datasource
+   * @return The routing datasource
+   */
+  @Bean
+  @Primary
+  public DataSource dataSource(
+    @Qualifier("primaryDataSource") DataSource primaryDataSource,
+    @Qualifier("replicaDataSource") DataSource replicaDataSource
+  ) {
+    LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy();
+    dataSource.setTargetDataSource(primaryDataSource);
+    dataSource.setReadOnlyDataSource(replicaDataSource);
+    dataSource.setDefaultAutoCommit(true);
+    dataSource.setDefaultTransactionIsolation(
+      Connection.TRANSACTION_READ_COMMITTED
+    );
+    dataSource.afterPropertiesSet();
+    return dataSource;
+  }
+}
@@ -0,0 +1,143 @@
+package no.nav.jobsearch;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.zip.GZIPOutputStream;
+import no.nav.jobsearch.model.Granularity;
+import no.nav.jobsearch.service.ExportFormat;
+import no.nav.jobsearch.service.ExportService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Controller for streaming exports of the job ads and the statistics, as NDJSON or CSV.
+ * The response is written while the data is read, and gzip-compressed if the client accepts it.
+ */
+@RestController
+@RequestMapping("/export")
+public class ExportController {
+
+  private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+  private final ExportService exportService;
+
+  public ExportController(ExportService exportService) {
+    this.exportService = exportService;
+  }
+
+  /**
+   * Export the job ads, without their descriptions.
+   *
+   * @param from The first day of the published dates (optional)
+   * @param to The last day of the published dates (optional)
+   * @param format ndjson or csv (optional, defaults to ndjson)
+   * @param acceptEncoding The Accept-Encoding header of the request
+   * @return The job ads, one per line
+   */
+  @GetMapping("/ads")
+  public ResponseEntity<StreamingResponseBody> exportAds(
+    @RequestParam(required = false) @DateTimeFormat(
+      iso = DateTimeFormat.ISO.DATE
+    ) LocalDate from,
+    @RequestParam(required = false) @DateTimeFormat(
+      iso = DateTimeFormat.ISO.DATE
+    ) LocalDate to,
+    @RequestParam(defaultValue = "ndjson") String format,
+    @RequestHeader(
+      value = HttpHeaders.ACCEPT_ENCODING,
+      required = false
+    ) String acceptEncoding
+  ) {
+    ExportFormat exportFormat = ExportFormat.of(format);
+    boolean gzip = Util.acceptsGzip(acceptEncoding);
+    return response(
+      "ads",
+      exportFormat,
+      gzip,
+      out ->
+        exportService.exportAds(from, to, exportFormat, compress(out, gzip))
+    );
+  }
+
+  /**
+   * Export the Kotlin vs Java statistics per day, week or month.
+   *
+   * @param from The first day of the window (optional, defaults to six months ago)
+   * @param to The last day of the window (optional, defaults to today)
+   * @param granularity day, week or month (optional, defaults to week)
+   * @param format ndjson or csv (optional, defaults to ndjson)
+   * @param acceptEncoding The Accept-Encoding header of the request
+   * @return The statistics, one period per line
+   */
+  @GetMapping("/stats")
+  public ResponseEntity<StreamingResponseBody> exportStats(
+    @RequestParam(required = false) @DateTimeFormat(
+      iso = DateTimeFormat.ISO.DATE
+    ) LocalDate from,
+    @RequestParam(required = false) @DateTimeFormat(
+      iso = DateTimeFormat.ISO.DATE
+    ) LocalDate to,
+    @RequestParam(defaultValue = "week") String granularity,
+    @RequestParam(defaultValue = "ndjson") String format,
+    @RequestHeader(
+      value = HttpHeaders.ACCEPT_ENCODING,
+      required = false
+    ) String acceptEncoding
+  ) {
+    Granularity periodGranularity = Granularity.of(granularity);
+    ExportFormat exportFormat = ExportFormat.of(format);
+    boolean gzip = Util.acceptsGzip(acceptEncoding);
+    return response(
+      "stats",
+      exportFormat,
+      gzip,
+      out ->
+        exportService.exportStats(
+          from,
+          to,
+          periodGranularity,
+          exportFormat,
+          compress(out, gzip)
+        )
+    );
+  }
+
+  private static ResponseEntity<StreamingResponseBody> response(
+    String name,
+    ExportFormat format,
+    boolean gzip,
+    StreamingResponseBody body
+  ) {
+    ResponseEntity.BodyBuilder response = ResponseEntity
+      .ok()
+      .contentType(MediaType.parseMediaType(format.getContentType()))
+      .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+      .header(
+        HttpHeaders.CONTENT_DISPOSITION,
+        ContentDisposition
+          .attachment()
+          .filename(name + "." + format.getFileExtension())
+          .build()
+          .toString()
+      );
+    if (gzip) {
+      response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+    }
+    return response.body(body);
+  }
+
+  private static OutputStream compress(OutputStream out, boolean gzip)
+    throws IOException {
+    return gzip ? new GZIPOutputStream(out, GZIP_BUFFER_SIZE) : out;
+  }
+}
@@ -0,0 +1,71 @@
+package no.nav.jobsearch;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import no.nav.jobsearch.service.FeedPageArchive;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * Actuator endpoint exposing the feed page archive, and reprocessing the stored jobs from it.
+ * Available at /actuator/feedarchive; POST to it to reprocess the jobs.
+ */
+@Component
+@Profile("!test")
+@Endpoint(id = "feedarchive")
+public class FeedArchiveEndpoint {
+
+  private final FeedPageArchive pageArchive;
+
+  private final JobFetchScheduler jobFetchScheduler;
+
+  public FeedArchiveEndpoint(
+    FeedPageArchive pageArchive,
+    JobFetchScheduler jobFetchScheduler
+  ) {
+    this.pageArchive = pageArchive;
+    this.jobFetchScheduler = jobFetchScheduler;
+  }
+
+  @ReadOperation
+  public ArchiveState state() {
+    List<Path> segments = pageArchive.segments();
+    long bytes = 0;
+    for (Path segment : segments) {
+      try {
+        bytes += Files.size(segment);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    return new ArchiveState(
+      pageArchive.isEnabled(),
+      pageArchive.getDirectory() == null
+        ? null
+        : pageArchive.getDirectory().toString(),
+      segments.size(),
+      bytes
+    );
+  }
+
+  /**
+   * Reprocesses the stored jobs from the archived pages, once a running fetch has finished.
+   */
+  @WriteOperation
+  public void reprocess() {
+    jobFetchScheduler.reprocessArchivedJobs();
+  }
+
+  public record ArchiveState(
+    boolean enabled,
+    String directory,
+    int segments,
+    long bytes
+  ) {}
+}
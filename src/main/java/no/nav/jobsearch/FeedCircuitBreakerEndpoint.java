@@ -0,0 +1,42 @@
+package no.nav.jobsearch;
+
+import java.time.Duration;
+import java.time.Instant;
+import no.nav.jobsearch.service.FeedCircuitBreaker;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * Actuator endpoint exposing the state of the feed circuit breaker.
+ * Available at /actuator/feedcircuitbreaker.
+ */
+@Component
+@Endpoint(id = "feedcircuitbreaker")
+public class FeedCircuitBreakerEndpoint {
+
+  private final FeedCircuitBreaker circuitBreaker;
+
+  public FeedCircuitBreakerEndpoint(FeedCircuitBreaker circuitBreaker) {
+    this.circuitBreaker = circuitBreaker;
+  }
+
+  @ReadOperation
+  public CircuitBreakerState state() {
+    return new CircuitBreakerState(
+      circuitBreaker.getState(),
+      circuitBreaker.getConsecutiveFailures(),
+      circuitBreaker.getFailureThreshold(),
+      circuitBreaker.getWaitDurationInOpenState(),
+      circuitBreaker.getOpenedAt()
+    );
+  }
+
+  public record CircuitBreakerState(
+    FeedCircuitBreaker.State state,
+    int consecutiveFailures,
+    int failureThreshold,
+    Duration waitDurationInOpenState,
+    Instant openedAt
+  ) {}
+}
@@ -0,0 +1,22 @@
+package no.nav.jobsearch;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * Answers invalid request parameters of the statistics and export endpoints,
+ * like an unknown granularity or a window ending before it starts, with {@code 400 Bad Request}.
+ */
+@RestControllerAdvice(
+  assignableTypes = { StatsController.class, ExportController.class }
+)
+public class InvalidParameterAdvice {
+
+  @ExceptionHandler(IllegalArgumentException.class)
+  public ResponseEntity<String> handleInvalidParameter(
+    IllegalArgumentException e
+  ) {
+    return ResponseEntity.badRequest().body(e.getMessage());
+  }
+}
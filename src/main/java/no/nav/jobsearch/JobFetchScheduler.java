@@ -1,39 +1,227 @@
 package no.nav.jobsearch;
 
+import jakarta.annotation.PreDestroy;
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import no.nav.jobsearch.service.FeedFetcher;
 import no.nav.jobsearch.service.FeedService;
+import no.nav.jobsearch.service.FeedUnavailableException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.annotation.Profile;
 import org.springframework.context.event.EventListener;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.scheduling.support.CronTrigger;
 import org.springframework.stereotype.Component;
 
+/**
+ * Schedules the ingest runs of the feed categories configured with {@code feed.categories}.
+ * Every category is a pipeline of its own: it has its own cursor and purge scope in the database,
+ * its own schedules, and its runs are made on threads of its own, so the categories are ingested concurrently,
+ * each with the bounded fetch concurrency of the {@link FeedFetcher}, and all within the global rate limit of the feed.
+ * The schedules of a category default to {@code update.all.jobs.cron.expression} and {@code updated.jobs.cron.expression},
+ * and can be overridden with {@code feed.category.<category>.update.all.jobs.cron.expression}
+ * and {@code feed.category.<category>.updated.jobs.cron.expression}.
+ */
 @Component
 @Profile("!test")
 public class JobFetchScheduler {
 
+  private static final Logger logger = LoggerFactory.getLogger(
+    JobFetchScheduler.class
+  );
+
   private final FeedService feedService;
 
-  public JobFetchScheduler(FeedService feedService) {
+  private final Environment environment;
+
+  /**
+   * Prevents the full refresh and the fetch of updated jobs of a category from running at the same time.
+   * Locks are used rather than synchronized, as synchronized blocks pin virtual threads
+   * to their carrier thread while waiting for the feed.
+   */
+  private final Map<String, ReentrantLock> runLocks = new LinkedHashMap<>();
+
+  /**
+   * Runs the ingest runs, with two threads per category.
+   * A run never waits for the lock of its category, so at most one run per category holds a thread for long,
+   * and the skipped runs of a category never wait behind the runs of the others.
+   */
+  private final ThreadPoolTaskScheduler ingestScheduler;
+
+  /**
+   * Creates a scheduler for the configured feed categories.
+   *
+   * @param feedService The service making the ingest runs
+   * @param environment The environment with the schedules of the categories
+   * @param categories The feed categories, or {@link FeedFetcher#ALL_CATEGORIES} alone for the whole feed
+   * @param virtualThreads Whether to make the runs on virtual threads
+   * @throws IllegalArgumentException if no category is configured, or the whole feed is combined with categories
+   */
+  public JobFetchScheduler(
+    FeedService feedService,
+    Environment environment,
+    @Value("${feed.categories:IT}") List<String> categories,
+    @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads
+  ) {
+    if (categories.isEmpty()) {
+      throw new IllegalArgumentException("No feed categories configured");
+    }
+    if (
+      categories.size() > 1 && categories.contains(FeedFetcher.ALL_CATEGORIES)
+    ) {
+      throw new IllegalArgumentException(
+        "The whole feed cannot be ingested together with other categories: " +
+        categories
+      );
+    }
     this.feedService = feedService;
+    this.environment = environment;
+    categories.forEach(category ->
+      runLocks.put(category, new ReentrantLock())
+    );
+    this.ingestScheduler = new ThreadPoolTaskScheduler();
+    ingestScheduler.setPoolSize(2 * categories.size());
+    ingestScheduler.setThreadFactory(
+      virtualThreads
+        ? Thread.ofVirtual().name("feed-ingest-", 0).factory()
+        : Thread.ofPlatform().name("feed-ingest-", 0).daemon().factory()
+    );
+    ingestScheduler.initialize();
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    ingestScheduler.shutdown();
   }
 
   /**
-   * Updates all jobs.
-   * Configured to run once on application startup and then every day at midnight by default.
+   * Starts a full refresh of every category on application startup, and schedules the runs of the categories.
    */
   @EventListener(ApplicationReadyEvent.class)
-  @Scheduled(cron = "${update.all.jobs.cron.expression:0 0 0 * * *}")
-  public void updateAllJobs() {
-    feedService.fetchAndUpdateAllITJobs(LocalDateTime.now());
+  public void start() {
+    for (String category : runLocks.keySet()) {
+      ingestScheduler.execute(() -> updateAllJobs(category));
+      ingestScheduler.schedule(
+        () -> updateAllJobs(category),
+        new CronTrigger(
+          cronExpression(
+            category,
+            "update.all.jobs.cron.expression",
+            "0 0 0 * * *"
+          )
+        )
+      );
+      ingestScheduler.schedule(
+        () -> fetchUpdatedJobs(category),
+        new CronTrigger(
+          cronExpression(
+            category,
+            "updated.jobs.cron.expression",
+            "0 */10 * * * *"
+          )
+        )
+      );
+      logger.info("Scheduled ingest runs of feed category {}", category);
+    }
+  }
+
+  private String cronExpression(
+    String category,
+    String property,
+    String defaultExpression
+  ) {
+    return environment.getProperty(
+      "feed.category." + category + "." + property,
+      environment.getProperty(property, defaultExpression)
+    );
+  }
+
+  /**
+   * Updates all jobs of a category.
+   * Configured to run once on application startup and then every day at midnight by default.
+   * The run is skipped if the feed circuit breaker is open, or another run of the category is in progress.
+   *
+   * @param category The feed category
+   */
+  public void updateAllJobs(String category) {
+    ReentrantLock runLock = runLocks.get(category);
+    if (!runLock.tryLock()) {
+      logger.info(
+        "Skipping full refresh of category {}: another run is in progress",
+        category
+      );
+      return;
+    }
+    try {
+      feedService.fetchAndUpdateAllJobs(category, LocalDateTime.now());
+    } catch (FeedUnavailableException e) {
+      logger.warn(
+        "Skipping full refresh of category {}: {}",
+        category,
+        e.getMessage()
+      );
+    } finally {
+      runLock.unlock();
+    }
+  }
+
+  /**
+   * Reprocesses the stored jobs from the feed page archive,
+   * waiting for the running fetches of all categories to finish first.
+   */
+  public void reprocessArchivedJobs() {
+    runExclusively(feedService::reprocessArchivedJobs);
+  }
+
+  /**
+   * Runs a task that writes the stored jobs on the calling thread, like a backfill,
+   * waiting for the running fetches of all categories to finish first.
+   * The runs of the categories are skipped until the task has finished.
+   *
+   * @param task The task
+   */
+  public void runExclusively(Runnable task) {
+    runLocks.values().forEach(ReentrantLock::lock);
+    try {
+      task.run();
+    } finally {
+      runLocks.values().forEach(ReentrantLock::unlock);
+    }
   }
 
   /**
-   * Fetches updated jobs.
+   * Fetches the updated jobs of a category.
    * Configured to run every 10 minutes by default.
+   * The run is skipped if the feed circuit breaker is open, or another run of the category is in progress.
+   *
+   * @param category The feed category
    */
-  @Scheduled(cron = "${updated.jobs.cron.expression:0 */10 * * * *}")
-  public void fetchUpdatedJobs() {
-    feedService.fetchAndSaveUpdatedJobs(LocalDateTime.now());
+  public void fetchUpdatedJobs(String category) {
+    ReentrantLock runLock = runLocks.get(category);
+    if (!runLock.tryLock()) {
+      logger.info(
+        "Skipping fetch of updated jobs of category {}: another run is in progress",
+        category
+      );
+      return;
+    }
+    try {
+      feedService.fetchAndSaveUpdatedJobs(category, LocalDateTime.now());
+    } catch (FeedUnavailableException e) {
+      logger.warn(
+        "Skipping fetch of updated jobs of category {}: {}",
+        category,
+        e.getMessage()
+      );
+    } finally {
+      runLock.unlock();
+    }
   }
 }
@@ -0,0 +1,52 @@
+package no.nav.jobsearch;
+
+import no.nav.jobsearch.service.ReclassificationJob;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * Actuator endpoint running the reclassification backfill.
+ * Available at /actuator/reclassification; POST to it to start the backfill, and DELETE to cancel it.
+ */
+@Component
+@Profile("!test")
+@Endpoint(id = "reclassification")
+public class ReclassificationEndpoint {
+
+  private final ReclassificationJob reclassificationJob;
+
+  private final JobFetchScheduler jobFetchScheduler;
+
+  public ReclassificationEndpoint(
+    ReclassificationJob reclassificationJob,
+    JobFetchScheduler jobFetchScheduler
+  ) {
+    this.reclassificationJob = reclassificationJob;
+    this.jobFetchScheduler = jobFetchScheduler;
+  }
+
+  @ReadOperation
+  public ReclassificationJob.Progress progress() {
+    return reclassificationJob.getProgress();
+  }
+
+  /**
+   * Starts the backfill, unless it is already running.
+   * The backfill waits for the running fetches to finish, and holds back the fetches until it has finished.
+   *
+   * @return Whether the backfill was started
+   */
+  @WriteOperation
+  public boolean start() {
+    return reclassificationJob.start(jobFetchScheduler::runExclusively);
+  }
+
+  @DeleteOperation
+  public void cancel() {
+    reclassificationJob.cancel();
+  }
+}
@@ -1,12 +1,26 @@
 package no.nav.jobsearch;
 
-import java.time.LocalDateTime;
+import java.time.LocalDate;
 import java.util.List;
-import no.nav.jobsearch.model.JobStatistics;
-import no.nav.jobsearch.repository.JobAdRepository;
+import no.nav.jobsearch.model.Dimension;
+import no.nav.jobsearch.model.DimensionStatistics;
+import no.nav.jobsearch.model.Granularity;
+import no.nav.jobsearch.model.KeywordStatistics;
+import no.nav.jobsearch.model.PeriodStatistics;
+import no.nav.jobsearch.service.StatsResponseCache;
+import no.nav.jobsearch.service.StatsResponseCache.EncodedStatistics;
+import no.nav.jobsearch.service.StatsService;
+import no.nav.jobsearch.service.StatsStreamService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 /**
  * Controller for statistics.
@@ -15,23 +29,181 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping("/stats")
 public class StatsController {
 
-  private final JobAdRepository jobAdRepository;
+  private final StatsService statsService;
 
-  public StatsController(JobAdRepository jobAdRepository) {
-    this.jobAdRepository = jobAdRepository;
+  private final StatsResponseCache statsResponseCache;
+
+  private final StatsStreamService statsStreamService;
+
+  public StatsController(
+    StatsService statsService,
+    StatsResponseCache statsResponseCache,
+    StatsStreamService statsStreamService
+  ) {
+    this.statsService = statsService;
+    this.statsResponseCache = statsResponseCache;
+    this.statsStreamService = statsStreamService;
   }
 
   /**
    * Get statistics for Kotlin vs Java job ads.
-   * The statistics are based on the number of job ads for Kotlin and Java in the last six months grouped by week.
+   * The statistics are based on the number of job ads for Kotlin and Java grouped by week,
+   * in the last six months unless another window is given.
+   * The response is served pre-encoded, gzip-compressed if the client accepts it,
+   * with an ETag that only changes when the statistics do.
    *
+   * @param from The first day of the window, snapped to the start of its week (optional)
+   * @param to The last day of the window, snapped to the end of its week (optional)
+   * @param acceptEncoding The Accept-Encoding header of the request
    * @return A list of maps containing the week, the number of Kotlin job ads and the number of Java job ads
    */
   @GetMapping("/kotlin-vs-java")
-  public List<JobStatistics> getKotlinVsJavaStats() {
-    LocalDateTime sixMonthsAgo = LocalDateTime.now().minusMonths(6);
-    return JobStatistics.of(
-      jobAdRepository.getKotlinVsJavaStats2(sixMonthsAgo)
+  public ResponseEntity<byte[]> getKotlinVsJavaStats(
+    @RequestParam(required = false) @DateTimeFormat(
+      iso = DateTimeFormat.ISO.DATE
+    ) LocalDate from,
+    @RequestParam(required = false) @DateTimeFormat(
+      iso = DateTimeFormat.ISO.DATE
+    ) LocalDate to,
+    @RequestHeader(
+      value = HttpHeaders.ACCEPT_ENCODING,
+      required = false
+    ) String acceptEncoding
+  ) {
+    EncodedStatistics statistics = statsResponseCache.getKotlinVsJavaStats(
+      from,
+      to
+    );
+    boolean gzipped = Util.acceptsGzip(acceptEncoding);
+    // A request with a matching If-None-Match header gets a 304 without the body
+    ResponseEntity.BodyBuilder response = ResponseEntity
+      .ok()
+      .contentType(MediaType.APPLICATION_JSON)
+      .eTag(statistics.getETag(gzipped))
+      .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+    return gzipped
+      ? response
+        .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+        .body(statistics.getGzip())
+      : response.body(statistics.getJson());
+  }
+
+  /**
+   * Stream the statistics for Kotlin vs Java job ads grouped by week as Server-Sent Events.
+   * The statistics are sent when the stream is opened, and again whenever an ingest run changes them.
+   * Each event has the ETag of the statistics as id, so a client reconnecting with {@code Last-Event-ID}
+   * only gets the statistics again if they changed in the meantime.
+   *
+   * @param from The first day of the window, snapped to the start of its week (optional)
+   * @param to The last day of the window, snapped to the end of its week (optional)
+   * @param lastEventId The Last-Event-ID header of a reconnecting client
+   * @return The stream of statistics, as {@code stats} events with the same JSON as {@code /kotlin-vs-java}
+   */
+  @GetMapping(
+    path = "/kotlin-vs-java/stream",
+    produces = MediaType.TEXT_EVENT_STREAM_VALUE
+  )
+  public SseEmitter streamKotlinVsJavaStats(
+    @RequestParam(required = false) @DateTimeFormat(
+      iso = DateTimeFormat.ISO.DATE
+    ) LocalDate from,
+    @RequestParam(required = false) @DateTimeFormat(
+      iso = DateTimeFormat.ISO.DATE
+    ) LocalDate to,
+    @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId
+  ) {
+    return statsStreamService.subscribe(from, to, lastEventId);
+  }
+
+  /**
+   * Get statistics for Kotlin vs Java job ads grouped by day, week or month.
+   * The window is snapped to whole periods, so that all requests within a period share the same window.
+   *
+   * @param from The first day of the window (optional, defaults to six months ago)
+   * @param to The last day of the window (optional, defaults to today)
+   * @param granularity day, week or month (optional, defaults to week)
+   * @param region Only count job ads in this region, e.g. OSLO (optional, requires granularity week)
+   * @param sector Only count job ads in this sector, e.g. Offentlig (optional, requires granularity week)
+   * @param category Only count job ads ingested from this feed category, e.g. IT (optional, requires granularity week)
+   * @return The number of Kotlin, Java and all job ads per period
+   */
+  @GetMapping("/kotlin-vs-java/periods")
+  public List<PeriodStatistics> getKotlinVsJavaStatsPerPeriod(
+    @RequestParam(required = false) @DateTimeFormat(
+      iso = DateTimeFormat.ISO.DATE
+    ) LocalDate from,
+    @RequestParam(required = false) @DateTimeFormat(
+      iso = DateTimeFormat.ISO.DATE
+    ) LocalDate to,
+    @RequestParam(defaultValue = "week") String granularity,
+    @RequestParam(required = false) String region,
+    @RequestParam(required = false) String sector,
+    @RequestParam(required = false) String category
+  ) {
+    return statsService.getKotlinVsJavaStats(
+      from,
+      to,
+      Granularity.of(granularity),
+      region,
+      sector,
+      category
+    );
+  }
+
+  /**
+   * Get statistics for Kotlin vs Java job ads broken down by region, sector or feed category,
+   * drilling down with the other filters. The window is snapped to whole weeks.
+   *
+   * @param from The first day of the window (optional, defaults to six months ago)
+   * @param to The last day of the window (optional, defaults to today)
+   * @param by region, sector or category
+   * @param region Only count job ads in this region (optional)
+   * @param sector Only count job ads in this sector (optional)
+   * @param category Only count job ads ingested from this feed category (optional)
+   * @return The number of Kotlin, Java and all job ads per region, sector or category, with the most job ads first
+   */
+  @GetMapping("/kotlin-vs-java/breakdown")
+  public List<DimensionStatistics> getKotlinVsJavaBreakdown(
+    @RequestParam(required = false) @DateTimeFormat(
+      iso = DateTimeFormat.ISO.DATE
+    ) LocalDate from,
+    @RequestParam(required = false) @DateTimeFormat(
+      iso = DateTimeFormat.ISO.DATE
+    ) LocalDate to,
+    @RequestParam String by,
+    @RequestParam(required = false) String region,
+    @RequestParam(required = false) String sector,
+    @RequestParam(required = false) String category
+  ) {
+    return statsService.getKotlinVsJavaBreakdown(
+      from,
+      to,
+      Dimension.of(by),
+      region,
+      sector,
+      category
     );
   }
+
+  /**
+   * Get the number of job ads matching a boolean keyword query, grouped by week.
+   * The window is snapped to whole weeks.
+   *
+   * @param q The query, e.g. {@code kotlin AND spring AND NOT android}, with the operators AND, OR, NOT and parentheses
+   * @param from The first day of the window (optional, defaults to six months ago)
+   * @param to The last day of the window (optional, defaults to today)
+   * @return The number of matching job ads per week
+   */
+  @GetMapping("/keywords")
+  public List<KeywordStatistics> getKeywordStats(
+    @RequestParam String q,
+    @RequestParam(required = false) @DateTimeFormat(
+      iso = DateTimeFormat.ISO.DATE
+    ) LocalDate from,
+    @RequestParam(required = false) @DateTimeFormat(
+      iso = DateTimeFormat.ISO.DATE
+    ) LocalDate to
+  ) {
+    return statsService.getKeywordStats(q, from, to);
+  }
 }
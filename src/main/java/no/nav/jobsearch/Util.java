@@ -3,6 +3,7 @@ package no.nav.jobsearch;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.util.Locale;
 import java.util.Optional;
 
 public final class Util {
@@ -28,4 +29,47 @@ public final class Util {
       )
       .orElse(null);
   }
+
+  /**
+   * Checks whether a client accepts a gzip-compressed response.
+   * A coding listed with {@code q=0} is refused, and {@code *} covers gzip if gzip is not listed itself.
+   *
+   * @param acceptEncoding The Accept-Encoding header of the request, or {@code null} if missing
+   * @return {@code true} if gzip is accepted with a quality above 0
+   */
+  public static boolean acceptsGzip(String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return false;
+    }
+    Double gzipQuality = null;
+    Double anyQuality = null;
+    for (String coding : acceptEncoding.split(",")) {
+      String[] parameters = coding.split(";");
+      String name = parameters[0].trim().toLowerCase(Locale.ROOT);
+      if (name.equals("gzip") || name.equals("x-gzip")) {
+        gzipQuality = quality(parameters);
+      } else if (name.equals("*")) {
+        anyQuality = quality(parameters);
+      }
+    }
+    Double quality = gzipQuality != null ? gzipQuality : anyQuality;
+    return quality != null && quality > 0;
+  }
+
+  /**
+   * Reads the quality of a coding of an Accept-Encoding header, 1 if not given and 0 if malformed.
+   */
+  private static double quality(String[] parameters) {
+    for (int i = 1; i < parameters.length; i++) {
+      String parameter = parameters[i].trim();
+      if (parameter.regionMatches(true, 0, "q=", 0, 2)) {
+        try {
+          return Double.parseDouble(parameter.substring(2).trim());
+        } catch (NumberFormatException e) {
+          return 0;
+        }
+      }
+    }
+    return 1;
+  }
 }
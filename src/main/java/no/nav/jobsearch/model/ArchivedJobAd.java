@@ -0,0 +1,87 @@
+package no.nav.jobsearch.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.Transient;
+import java.time.LocalDate;
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import org.springframework.data.domain.Persistable;
+
+/**
+ * A job ad that has been purged from the job ads table and counted in the {@link JobAdWeeklyHistory}.
+ * Records what the job ad was counted as, so the counts can be taken out of the history again
+ * if the job ad comes back to the feed, like a republished job ad, and is stored again.
+ * Instances of this class are persisted in the database, one per purged job ad.
+ */
+@Entity
+@Data
+public class ArchivedJobAd implements Persistable<String> {
+
+  @Id
+  private String uuid;
+
+  /**
+   * The Monday of the week the job ad was counted in.
+   */
+  private LocalDate week;
+
+  /**
+   * The technology flags the job ad was counted with.
+   */
+  private long technologies;
+
+  /**
+   * Whether the job ad has not been stored yet, so that saving it inserts it
+   * without first selecting it by its UUID.
+   */
+  @Transient
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  @EqualsAndHashCode.Exclude
+  @ToString.Exclude
+  private boolean isNew = true;
+
+  public ArchivedJobAd() {}
+
+  public ArchivedJobAd(String uuid, LocalDate week, long technologies) {
+    this.uuid = uuid;
+    this.week = week;
+    this.technologies = technologies;
+  }
+
+  /**
+   * The counts the job ad adds to the history of its week.
+   */
+  public PeriodStatistics toPeriodStatistics() {
+    return new PeriodStatistics(
+      week,
+      week.plusWeeks(1),
+      Technology.KOTLIN.isIn(technologies) ? 1 : 0,
+      Technology.JAVA.isIn(technologies) ? 1 : 0,
+      1
+    );
+  }
+
+  @Override
+  public String getId() {
+    return uuid;
+  }
+
+  @Override
+  public boolean isNew() {
+    return isNew;
+  }
+
+  @PostLoad
+  @PostPersist
+  void markNotNew() {
+    this.isNew = false;
+  }
+}
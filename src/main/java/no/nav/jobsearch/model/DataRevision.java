@@ -0,0 +1,21 @@
+package no.nav.jobsearch.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.Data;
+
+/**
+ * The revision of the job ads and the weekly history: a single row whose revision is incremented
+ * by every transaction that changes them, with {@link no.nav.jobsearch.repository.DataRevisionRepository#increment}.
+ * Unlike counts or dates of the job ads, it also changes when only the technology flags of job ads change,
+ * so a copy of the data, like the statistics snapshot file, can tell whether it is still current.
+ */
+@Entity
+@Data
+public class DataRevision {
+
+  @Id
+  private int id;
+
+  private long revision;
+}
@@ -0,0 +1,22 @@
+package no.nav.jobsearch.model;
+
+/**
+ * How the description of a job ad is stored in the database.
+ * The technologies mentioned in the description are stored as flags in all modes.
+ */
+public enum DescriptionStorage {
+  /**
+   * The description is stored as plain text.
+   */
+  TEXT,
+
+  /**
+   * The description is stored deflate-compressed.
+   */
+  COMPRESSED,
+
+  /**
+   * Only the technology flags derived from the description are stored.
+   */
+  DROP,
+}
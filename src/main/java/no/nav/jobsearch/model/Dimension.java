@@ -0,0 +1,34 @@
+package no.nav.jobsearch.model;
+
+import java.util.Locale;
+
+/**
+ * Dimension the job statistics can be broken down by, besides time and technology.
+ */
+public enum Dimension {
+  /**
+   * The county of the first place of work.
+   */
+  REGION,
+
+  /**
+   * The sector of the employer.
+   */
+  SECTOR,
+
+  /**
+   * The feed category the job ad was ingested from.
+   */
+  CATEGORY;
+
+  /**
+   * Parses a dimension, ignoring case.
+   *
+   * @param value The dimension, e.g. "region"
+   * @return The dimension
+   * @throws IllegalArgumentException if the value is not a known dimension
+   */
+  public static Dimension of(String value) {
+    return valueOf(value.trim().toUpperCase(Locale.ROOT));
+  }
+}
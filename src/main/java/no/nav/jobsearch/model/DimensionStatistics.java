@@ -0,0 +1,16 @@
+package no.nav.jobsearch.model;
+
+/**
+ * Number of Kotlin, Java and all job ads with a value of a {@link Dimension}.
+ *
+ * @param value The value of the dimension, e.g. "OSLO", or {@code null} for job ads without a value
+ * @param kotlinCount The number of job ads mentioning Kotlin
+ * @param javaCount The number of job ads mentioning Java
+ * @param totalCount The number of job ads
+ */
+public record DimensionStatistics(
+  String value,
+  long kotlinCount,
+  long javaCount,
+  long totalCount
+) {}
@@ -0,0 +1,57 @@
+package no.nav.jobsearch.model;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Locale;
+
+/**
+ * Size of the periods the job statistics are grouped by.
+ * Weeks are ISO weeks starting on Monday.
+ */
+public enum Granularity {
+  DAY,
+  WEEK,
+  MONTH;
+
+  /**
+   * Parses a granularity, ignoring case.
+   *
+   * @param value The granularity, e.g. "week"
+   * @return The granularity
+   * @throws IllegalArgumentException if the value is not a known granularity
+   */
+  public static Granularity of(String value) {
+    return valueOf(value.trim().toUpperCase(Locale.ROOT));
+  }
+
+  /**
+   * Snaps a date to the first day of the period it belongs to.
+   *
+   * @param date The date
+   * @return The first day of the period containing the date
+   */
+  public LocalDate periodStart(LocalDate date) {
+    return switch (this) {
+      case DAY -> date;
+      case WEEK -> date.with(
+        TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)
+      );
+      case MONTH -> date.withDayOfMonth(1);
+    };
+  }
+
+  /**
+   * Returns the first day of the period following the period starting at the given date.
+   *
+   * @param periodStart The first day of a period
+   * @return The first day of the next period
+   */
+  public LocalDate nextPeriodStart(LocalDate periodStart) {
+    return switch (this) {
+      case DAY -> periodStart.plusDays(1);
+      case WEEK -> periodStart.plusWeeks(1);
+      case MONTH -> periodStart.plusMonths(1);
+    };
+  }
+}
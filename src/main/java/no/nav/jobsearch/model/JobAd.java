@@ -4,16 +4,39 @@ import static no.nav.jobsearch.Util.parseToLocalDateTime;
 
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.function.Function;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.LazyGroup;
+import org.springframework.data.domain.Persistable;
 
 /**
  * Represents a job ad.
  * Instances of this class are persisted in the database.
+ * Depending on the {@link DescriptionStorage}, the description is stored as text, compressed, or not at all.
+ * The technologies mentioned in the description are always stored as flags.
+ * The employer, region, occupation and sector are kept as dimensions of the statistics.
+ * The description is loaded lazily, when it is first accessed.
+ * Every job ad belongs to the feed category it was ingested from, which scopes the cursor and the purge
+ * of the ingest runs of that category.
  */
 @Entity
+@Table(
+  indexes = @Index(
+    name = "job_ad_category_updated",
+    columnList = "category, updated"
+  )
+)
 @Data
-public class JobAd {
+public class JobAd implements Persistable<String> {
 
   @Getter
   @Id
@@ -21,31 +44,176 @@ public class JobAd {
 
   private String title;
 
+  @Basic(fetch = FetchType.LAZY)
+  @LazyGroup("description")
+  @ToString.Exclude
   @Column(columnDefinition = "TEXT")
   private String description;
 
+  @Setter(AccessLevel.NONE)
+  @Basic(fetch = FetchType.LAZY)
+  @LazyGroup("description")
+  @ToString.Exclude
+  @Convert(converter = CompressedTextConverter.class)
+  @Column(columnDefinition = "BYTEA")
+  private String compressedDescription;
+
+  /**
+   * Bitset of the {@link Technology} values mentioned in the description,
+   * or {@code null} for job ads stored before the flags were introduced.
+   */
+  @Setter(AccessLevel.NONE)
+  private Long technologies;
+
   private LocalDateTime published;
   private LocalDateTime updated;
 
+  private String employer;
+
+  /**
+   * The county of the first place of work with a county, in upper case.
+   */
+  private String region;
+
+  /**
+   * The first level of the first occupation category.
+   */
+  private String occupation;
+
+  /**
+   * The sector of the employer, e.g. "Privat" or "Offentlig".
+   */
+  private String sector;
+
+  /**
+   * The feed category the job ad was ingested from, e.g. "IT".
+   * Job ads stored before the categories were configurable were all ingested from the IT category,
+   * which the column defaults to when it is added.
+   */
+  @ColumnDefault("'IT'")
+  private String category;
+
   @Getter
   private LocalDateTime expires;
 
+  /**
+   * Whether the job ad has not been stored yet, so that saving it inserts it
+   * without first selecting it by its assigned UUID.
+   */
+  @Transient
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  @EqualsAndHashCode.Exclude
+  @ToString.Exclude
+  private boolean isNew = true;
+
   public JobAd() {}
 
   public JobAd(JobAdDto dto) {
+    this(dto, DescriptionStorage.TEXT);
+  }
+
+  public JobAd(JobAdDto dto, DescriptionStorage descriptionStorage) {
     this.uuid = dto.getUuid();
-    this.title = dto.getTitle();
-    this.description = dto.getDescription();
-    this.published = parseToLocalDateTime(dto.getPublished());
-    this.updated = parseToLocalDateTime(dto.getUpdated());
-    this.expires = parseToLocalDateTime(dto.getExpires());
+    updateFromDto(dto, descriptionStorage);
   }
 
   public void updateFromDto(JobAdDto dto) {
+    updateFromDto(dto, DescriptionStorage.TEXT);
+  }
+
+  public void updateFromDto(
+    JobAdDto dto,
+    DescriptionStorage descriptionStorage
+  ) {
     this.title = dto.getTitle();
-    this.description = dto.getDescription();
+    setDescription(dto.getDescription(), descriptionStorage);
     this.published = parseToLocalDateTime(dto.getPublished());
     this.updated = parseToLocalDateTime(dto.getUpdated());
     this.expires = parseToLocalDateTime(dto.getExpires());
+    this.employer =
+      dto.getEmployer() != null
+        ? trimToNull(dto.getEmployer().getName())
+        : null;
+    this.region =
+      first(dto.getWorkLocations(), location ->
+        trimToNull(location.getCounty())
+      );
+    if (region != null) {
+      this.region = region.toUpperCase(Locale.ROOT);
+    }
+    this.occupation =
+      first(dto.getOccupationCategories(), category ->
+        trimToNull(category.getLevel1())
+      );
+    this.sector = trimToNull(dto.getSector());
+  }
+
+  /**
+   * Returns the first non-null attribute of a list of values.
+   */
+  private static <T> String first(
+    List<T> values,
+    Function<T, String> attribute
+  ) {
+    return values == null
+      ? null
+      : values
+        .stream()
+        .filter(Objects::nonNull)
+        .map(attribute)
+        .filter(Objects::nonNull)
+        .findFirst()
+        .orElse(null);
+  }
+
+  private static String trimToNull(String value) {
+    return value == null || value.isBlank() ? null : value.strip();
+  }
+
+  /**
+   * Returns the description, whether it is stored as text or compressed.
+   *
+   * @return The description, or {@code null} if it is not stored
+   */
+  public String getDescription() {
+    return description != null ? description : compressedDescription;
+  }
+
+  public void setDescription(String description) {
+    setDescription(description, DescriptionStorage.TEXT);
+  }
+
+  /**
+   * Sets the description and the technology flags derived from it.
+   *
+   * @param description The description
+   * @param descriptionStorage How the description is stored
+   */
+  public void setDescription(
+    String description,
+    DescriptionStorage descriptionStorage
+  ) {
+    this.technologies = Technology.flagsOf(description);
+    this.description =
+      descriptionStorage == DescriptionStorage.TEXT ? description : null;
+    this.compressedDescription =
+      descriptionStorage == DescriptionStorage.COMPRESSED ? description : null;
+  }
+
+  @Override
+  public String getId() {
+    return uuid;
+  }
+
+  @Override
+  public boolean isNew() {
+    return isNew;
+  }
+
+  @PostLoad
+  @PostPersist
+  void markNotNew() {
+    this.isNew = false;
   }
 }
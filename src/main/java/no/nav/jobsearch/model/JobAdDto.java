@@ -4,6 +4,7 @@ import static no.nav.jobsearch.Util.parseToLocalDateTime;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import java.time.LocalDateTime;
+import java.util.List;
 import lombok.Data;
 
 /**
@@ -20,8 +21,51 @@ public class JobAdDto {
   private String published;
   private String updated;
   private String expires;
+  private Employer employer;
+  private List<WorkLocation> workLocations;
+  private List<OccupationCategory> occupationCategories;
+
+  /**
+   * The sector of the employer, e.g. "Privat" or "Offentlig".
+   */
+  private String sector;
 
   public LocalDateTime getPublishedAsLocalDateTime() {
     return parseToLocalDateTime(published);
   }
+
+  /**
+   * The employer of a job ad.
+   */
+  @Data
+  @JsonIgnoreProperties(ignoreUnknown = true)
+  public static class Employer {
+
+    private String name;
+    private String orgnr;
+  }
+
+  /**
+   * A place of work of a job ad. The county is used as the region of the job ad.
+   */
+  @Data
+  @JsonIgnoreProperties(ignoreUnknown = true)
+  public static class WorkLocation {
+
+    private String country;
+    private String county;
+    private String municipal;
+    private String city;
+  }
+
+  /**
+   * An occupation category of a job ad, e.g. level 1 "IT" and level 2 "Utvikling".
+   */
+  @Data
+  @JsonIgnoreProperties(ignoreUnknown = true)
+  public static class OccupationCategory {
+
+    private String level1;
+    private String level2;
+  }
 }
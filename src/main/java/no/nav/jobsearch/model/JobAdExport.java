@@ -0,0 +1,23 @@
+package no.nav.jobsearch.model;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * A job ad as exported to analysts, without its description.
+ *
+ * @param uuid The UUID of the job ad
+ * @param title The title of the job ad
+ * @param published The date the job ad was published
+ * @param updated The date the job ad was last updated
+ * @param expires The date the job ad expires
+ * @param technologies The technologies mentioned in the description
+ */
+public record JobAdExport(
+  String uuid,
+  String title,
+  LocalDateTime published,
+  LocalDateTime updated,
+  LocalDateTime expires,
+  List<Technology> technologies
+) {}
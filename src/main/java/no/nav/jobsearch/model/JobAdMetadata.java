@@ -0,0 +1,17 @@
+package no.nav.jobsearch.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * The metadata of a stored job ad, without its description.
+ * Used by maintenance passes that do not need the full entity.
+ *
+ * @param uuid The UUID of the job ad
+ * @param updated The date the job ad was last updated
+ * @param expires The date the job ad expires
+ */
+public record JobAdMetadata(
+  String uuid,
+  LocalDateTime updated,
+  LocalDateTime expires
+) {}
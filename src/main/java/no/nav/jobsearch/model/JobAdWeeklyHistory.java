@@ -0,0 +1,46 @@
+package no.nav.jobsearch.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import java.time.LocalDate;
+import lombok.Data;
+
+/**
+ * The number of Kotlin, Java and all job ads published in a week that have been purged from the job ads table.
+ * Job ads are folded into these counts before they are deleted, so the statistics keep their history
+ * while the job ads table only holds the ads of the feed.
+ * Instances of this class are persisted in the database, one per week,
+ * and the counts are added to with {@link no.nav.jobsearch.repository.JobAdWeeklyHistoryRepository#addCounts}.
+ */
+@Entity
+@Data
+public class JobAdWeeklyHistory {
+
+  /**
+   * The Monday the week starts with.
+   */
+  @Id
+  private LocalDate week;
+
+  private long kotlinCount;
+
+  private long javaCount;
+
+  private long totalCount;
+
+  public JobAdWeeklyHistory() {}
+
+  public JobAdWeeklyHistory(LocalDate week) {
+    this.week = week;
+  }
+
+  public PeriodStatistics toPeriodStatistics() {
+    return new PeriodStatistics(
+      week,
+      week.plusWeeks(1),
+      kotlinCount,
+      javaCount,
+      totalCount
+    );
+  }
+}
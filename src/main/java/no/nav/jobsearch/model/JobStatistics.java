@@ -13,6 +13,23 @@ public record JobStatistics(
   long javaCount,
   long totalCount
 ) {
+  /**
+   * Converts the statistics of an ISO week to the weekly statistics.
+   *
+   * @param week The statistics of a period starting on a Monday and lasting one week
+   * @return The weekly statistics
+   */
+  public static JobStatistics of(PeriodStatistics week) {
+    LocalDateTime weekStart = week.periodStart().atStartOfDay();
+    return new JobStatistics(
+      weekStart,
+      weekStart.get(WeekFields.ISO.weekOfWeekBasedYear()),
+      week.kotlinCount(),
+      week.javaCount(),
+      week.totalCount()
+    );
+  }
+
   public static JobStatistics of(Object[] record) {
     return Optional
       .ofNullable(record)
@@ -0,0 +1,16 @@
+package no.nav.jobsearch.model;
+
+import java.time.LocalDate;
+
+/**
+ * Number of job ads matching a keyword query that were published within a period.
+ *
+ * @param periodStart The first day of the period
+ * @param periodEnd The first day after the period
+ * @param count The number of matching job ads
+ */
+public record KeywordStatistics(
+  LocalDate periodStart,
+  LocalDate periodEnd,
+  long count
+) {}
@@ -0,0 +1,20 @@
+package no.nav.jobsearch.model;
+
+import java.time.LocalDate;
+
+/**
+ * Number of Kotlin, Java and all job ads published within a period.
+ *
+ * @param periodStart The first day of the period
+ * @param periodEnd The first day after the period
+ * @param kotlinCount The number of job ads mentioning Kotlin
+ * @param javaCount The number of job ads mentioning Java
+ * @param totalCount The number of job ads
+ */
+public record PeriodStatistics(
+  LocalDate periodStart,
+  LocalDate periodEnd,
+  long kotlinCount,
+  long javaCount,
+  long totalCount
+) {}
@@ -0,0 +1,71 @@
+package no.nav.jobsearch.model;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Technologies that job ads are classified by.
+ * A job ad mentions a technology if its description contains the keyword, ignoring case.
+ * The technologies of a job ad are stored as a bitset, with one bit per technology.
+ */
+public enum Technology {
+  KOTLIN("kotlin"),
+  JAVA("java");
+
+  private final String keyword;
+
+  Technology(String keyword) {
+    this.keyword = keyword;
+  }
+
+  /**
+   * The bit of this technology in a technology bitset.
+   */
+  public long flag() {
+    return 1L << ordinal();
+  }
+
+  /**
+   * Whether a technology bitset contains this technology.
+   *
+   * @param technologies A technology bitset
+   * @return {@code true} if the bit of this technology is set
+   */
+  public boolean isIn(long technologies) {
+    return (technologies & flag()) != 0;
+  }
+
+  /**
+   * Classifies a job ad description.
+   *
+   * @param description The description, may be {@code null}
+   * @return The bitset of the technologies mentioned in the description
+   */
+  public static long flagsOf(String description) {
+    if (description == null) {
+      return 0L;
+    }
+    String text = description.toLowerCase(Locale.ROOT);
+    long technologies = 0L;
+    for (Technology technology : values()) {
+      if (text.contains(technology.keyword)) {
+        technologies |= technology.flag();
+      }
+    }
+    return technologies;
+  }
+
+  /**
+   * Lists the technologies in a technology bitset.
+   *
+   * @param technologies A technology bitset
+   * @return The technologies whose bits are set, in declaration order
+   */
+  public static List<Technology> listOf(long technologies) {
+    return Arrays
+      .stream(values())
+      .filter(technology -> technology.isIn(technologies))
+      .toList();
+  }
+}
@@ -0,0 +1,26 @@
+package no.nav.jobsearch.repository;
+
+import java.util.Collection;
+import no.nav.jobsearch.model.ArchivedJobAd;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repository for the job ads counted in the weekly history.
+ */
+@Repository
+public interface ArchivedJobAdRepository
+  extends CrudRepository<ArchivedJobAd, String> {
+  /**
+   * Deletes archived job ads in a single statement, without loading them.
+   *
+   * @param uuids The UUIDs of the job ads
+   * @return The number of deleted archived job ads
+   */
+  @Modifying
+  @Query("DELETE FROM ArchivedJobAd a WHERE a.uuid IN :uuids")
+  int deleteByUuidIn(@Param("uuids") Collection<String> uuids);
+}
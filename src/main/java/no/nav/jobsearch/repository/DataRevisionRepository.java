@@ -0,0 +1,37 @@
+package no.nav.jobsearch.repository;
+
+import no.nav.jobsearch.model.DataRevision;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repository for the revision of the job ads and the weekly history.
+ */
+@Repository
+public interface DataRevisionRepository
+  extends CrudRepository<DataRevision, Integer> {
+  /**
+   * Increments the revision in a single statement, creating it if needed.
+   * The row stays locked until the transaction commits, so the revisions are committed in order.
+   *
+   * @return The new revision
+   */
+  @Query(
+    value = """
+    INSERT INTO data_revision (id, revision) VALUES (1, 1)
+    ON CONFLICT (id) DO UPDATE SET revision = data_revision.revision + 1
+    RETURNING revision
+    """,
+    nativeQuery = true
+  )
+  long increment();
+
+  /**
+   * Finds the current revision.
+   *
+   * @return The revision, or 0 if the data has never been changed
+   */
+  @Query("SELECT COALESCE(MAX(r.revision), 0) FROM DataRevision r")
+  long findCurrent();
+}
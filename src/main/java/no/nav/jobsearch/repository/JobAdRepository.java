@@ -1,10 +1,17 @@
 package no.nav.jobsearch.repository;
 
+import jakarta.persistence.QueryHint;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 import no.nav.jobsearch.model.JobAd;
+import no.nav.jobsearch.model.JobAdMetadata;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -14,24 +21,152 @@ import org.springframework.stereotype.Repository;
  */
 @Repository
 public interface JobAdRepository extends CrudRepository<JobAd, String> {
+  /**
+   * Streams the columns of all job ads needed to build the statistics snapshot,
+   * without loading them as entities. Must be called within a transaction.
+   * The description is only read for job ads stored without technology flags.
+   *
+   * @return Rows of UUID, published date, expiry date, technology flags, description, region, sector and category
+   */
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
   @Query(
     """
-    SELECT j.published,
-           SUM(CASE WHEN LOWER(j.description) LIKE '%kotlin%' THEN 1 ELSE 0 END) as kotlinCount,
-           SUM(CASE WHEN LOWER(j.description) LIKE '%java%' THEN 1 ELSE 0 END) as javaCount,
-           COUNT(j) as totalCount
+    SELECT j.uuid, j.published, j.expires, j.technologies,
+           CASE WHEN j.technologies IS NULL THEN j.description END,
+           j.region, j.sector, j.category
     FROM JobAd j
-    WHERE j.published >= :sixMonthsAgo
-    GROUP BY j.published
-    ORDER BY j.published
     """
   )
-  List<Object[]> getKotlinVsJavaStats2(
-    @Param("sixMonthsAgo") LocalDateTime sixMonthsAgo
-  );
+  Stream<Object[]> streamSnapshotRows();
+
+  /**
+   * Streams the columns of all job ads needed to build the keyword index,
+   * without loading them as entities. Must be called within a transaction.
+   *
+   * @return Rows of UUID, published date, title, description and compressed description
+   */
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "100"))
+  @Query(
+    """
+    SELECT j.uuid, j.published, j.title, j.description, j.compressedDescription
+    FROM JobAd j
+    """
+  )
+  Stream<Object[]> streamKeywordRows();
 
   Optional<JobAd> findByUuid(String uuid);
 
+  /**
+   * Reads the metadata of all job ads, without loading their descriptions.
+   *
+   * @return The metadata of all job ads
+   */
+  @Query(
+    "SELECT new no.nav.jobsearch.model.JobAdMetadata(j.uuid, j.updated, j.expires) FROM JobAd j"
+  )
+  List<JobAdMetadata> findAllMetadata();
+
+  /**
+   * Reads the metadata of the job ads ingested from a feed category, without loading their descriptions.
+   *
+   * @param category The feed category
+   * @return The metadata of the job ads of the category
+   */
+  @Query(
+    "SELECT new no.nav.jobsearch.model.JobAdMetadata(j.uuid, j.updated, j.expires) FROM JobAd j WHERE j.category = :category"
+  )
+  List<JobAdMetadata> findAllMetadataByCategory(
+    @Param("category") String category
+  );
+
+  /**
+   * Deletes job ads in a single statement, without loading them.
+   *
+   * @param uuids The UUIDs of the job ads to delete
+   * @return The number of deleted job ads
+   */
+  @Modifying
+  @Query("DELETE FROM JobAd j WHERE j.uuid IN :uuids")
+  int deleteByUuidIn(@Param("uuids") Collection<String> uuids);
+
+  /**
+   * Streams the UUIDs of all job ads in order, to split the table into chunks of consecutive UUIDs.
+   * Must be called within a transaction.
+   *
+   * @return The UUIDs in ascending order
+   */
+  @QueryHints(
+    @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "10000")
+  )
+  @Query("SELECT j.uuid FROM JobAd j ORDER BY j.uuid")
+  Stream<String> streamUuidsInOrder();
+
+  /**
+   * Reads the columns needed to reclassify a chunk of job ads, without loading them as entities.
+   *
+   * @param after The UUID before the chunk, exclusive
+   * @param last The last UUID of the chunk, inclusive
+   * @return Rows of UUID, published date, expiry date, technology flags, description, compressed description,
+   *     region, sector and category
+   */
+  @Query(
+    """
+    SELECT j.uuid, j.published, j.expires, j.technologies,
+           j.description, j.compressedDescription, j.region, j.sector,
+           j.category
+    FROM JobAd j
+    WHERE j.uuid > :after AND j.uuid <= :last
+    """
+  )
+  List<Object[]> findReclassificationRows(
+    @Param("after") String after,
+    @Param("last") String last
+  );
+
+  /**
+   * Sets the technology flags of job ads in a single statement, without loading them.
+   *
+   * @param technologies The technology flags
+   * @param uuids The UUIDs of the job ads
+   * @return The number of updated job ads
+   */
+  @Modifying
+  @Query(
+    "UPDATE JobAd j SET j.technologies = :technologies WHERE j.uuid IN :uuids"
+  )
+  int updateTechnologies(
+    @Param("technologies") long technologies,
+    @Param("uuids") Collection<String> uuids
+  );
+
+  /**
+   * Reads the columns needed to count job ads in the weekly history, without loading them as entities.
+   * The description is only read for job ads stored without technology flags.
+   *
+   * @param uuids The UUIDs of the job ads
+   * @return Rows of UUID, published date, technology flags and description
+   */
+  @Query(
+    """
+    SELECT j.uuid, j.published, j.technologies,
+           CASE WHEN j.technologies IS NULL THEN j.description END
+    FROM JobAd j
+    WHERE j.uuid IN :uuids
+    """
+  )
+  List<Object[]> findHistoryRows(@Param("uuids") Collection<String> uuids);
+
   @Query("SELECT MAX(j.updated) FROM JobAd j")
   Optional<LocalDateTime> findNewestUpdatedDate();
+
+  /**
+   * Finds the cursor of the ingest runs of a feed category: the newest updated date of its job ads.
+   *
+   * @param category The feed category
+   * @return The newest updated date, or empty if no job ads of the category are stored
+   */
+  @Query("SELECT MAX(j.updated) FROM JobAd j WHERE j.category = :category")
+  Optional<LocalDateTime> findNewestUpdatedDateByCategory(
+    @Param("category") String category
+  );
 }
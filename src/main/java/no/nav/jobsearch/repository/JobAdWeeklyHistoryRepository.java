@@ -0,0 +1,54 @@
+package no.nav.jobsearch.repository;
+
+import java.time.LocalDate;
+import no.nav.jobsearch.model.JobAdWeeklyHistory;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repository for the weekly counts of purged job ads.
+ */
+@Repository
+public interface JobAdWeeklyHistoryRepository
+  extends CrudRepository<JobAdWeeklyHistory, LocalDate> {
+  /**
+   * Adds the counts of purged job ads to the counts of a week in a single statement, creating the week if needed.
+   * The counts are added by the database, so concurrent purges of the same week both keep their counts.
+   * Negative counts take purged job ads that came back to the feed out of the week again.
+   *
+   * @param week The Monday the week starts with
+   * @param kotlinCount The number of purged Kotlin job ads
+   * @param javaCount The number of purged Java job ads
+   * @param totalCount The number of purged job ads
+   * @return The number of inserted or updated weeks
+   */
+  @Modifying
+  @Query(
+    value = """
+    INSERT INTO job_ad_weekly_history (week, kotlin_count, java_count, total_count)
+    VALUES (:week, :kotlinCount, :javaCount, :totalCount)
+    ON CONFLICT (week) DO UPDATE SET
+      kotlin_count = job_ad_weekly_history.kotlin_count + EXCLUDED.kotlin_count,
+      java_count = job_ad_weekly_history.java_count + EXCLUDED.java_count,
+      total_count = job_ad_weekly_history.total_count + EXCLUDED.total_count
+    """,
+    nativeQuery = true
+  )
+  int addCounts(
+    @Param("week") LocalDate week,
+    @Param("kotlinCount") long kotlinCount,
+    @Param("javaCount") long javaCount,
+    @Param("totalCount") long totalCount
+  );
+
+  /**
+   * Counts the purged job ads of all weeks.
+   *
+   * @return The number of job ads counted in the history
+   */
+  @Query("SELECT COALESCE(SUM(h.totalCount), 0) FROM JobAdWeeklyHistory h")
+  long sumTotalCount();
+}
@@ -0,0 +1,135 @@
+package no.nav.jobsearch.service;
+
+import java.time.LocalDate;
+import no.nav.jobsearch.model.PeriodStatistics;
+import no.nav.jobsearch.model.Technology;
+
+/**
+ * Pre-aggregated daily job ad counts, stored as running totals per day.
+ * The counts of any range of days are the difference of two running totals,
+ * so rolling the days up to weeks or months costs one lookup per period,
+ * regardless of the number of days in the period.
+ */
+class DailyStatistics {
+
+  static final DailyStatistics EMPTY = new DailyStatistics(
+    LocalDate.EPOCH,
+    new long[1],
+    new long[1],
+    new long[1]
+  );
+
+  private final LocalDate firstDay;
+
+  // Element i holds the counts of the days before firstDay + i
+  private final long[] kotlinTotals;
+  private final long[] javaTotals;
+  private final long[] totals;
+
+  private DailyStatistics(
+    LocalDate firstDay,
+    long[] kotlinTotals,
+    long[] javaTotals,
+    long[] totals
+  ) {
+    this.firstDay = firstDay;
+    this.kotlinTotals = kotlinTotals;
+    this.javaTotals = javaTotals;
+    this.totals = totals;
+  }
+
+  /**
+   * Counts the job ads of a {@link JobAdSnapshot} per publication day.
+   * Job ads without a published date are left out.
+   *
+   * @param publishedDays The published epoch day of each job ad
+   * @param technologies The technology bitset of each job ad
+   * @param size The number of job ads
+   * @return The daily statistics
+   */
+  static DailyStatistics of(
+    int[] publishedDays,
+    long[] technologies,
+    int size
+  ) {
+    int firstDay = Integer.MAX_VALUE;
+    int lastDay = Integer.MIN_VALUE;
+    for (int i = 0; i < size; i++) {
+      if (publishedDays[i] != JobAdSnapshot.NO_DATE) {
+        firstDay = Math.min(firstDay, publishedDays[i]);
+        lastDay = Math.max(lastDay, publishedDays[i]);
+      }
+    }
+    if (firstDay > lastDay) {
+      return EMPTY;
+    }
+
+    int days = lastDay - firstDay + 1;
+    long[] kotlinTotals = new long[days + 1];
+    long[] javaTotals = new long[days + 1];
+    long[] totals = new long[days + 1];
+
+    for (int i = 0; i < size; i++) {
+      if (publishedDays[i] == JobAdSnapshot.NO_DATE) {
+        continue;
+      }
+      int index = publishedDays[i] - firstDay + 1;
+      if (Technology.KOTLIN.isIn(technologies[i])) {
+        kotlinTotals[index]++;
+      }
+      if (Technology.JAVA.isIn(technologies[i])) {
+        javaTotals[index]++;
+      }
+      totals[index]++;
+    }
+    for (int i = 1; i <= days; i++) {
+      kotlinTotals[i] += kotlinTotals[i - 1];
+      javaTotals[i] += javaTotals[i - 1];
+      totals[i] += totals[i - 1];
+    }
+    return new DailyStatistics(
+      LocalDate.ofEpochDay(firstDay),
+      kotlinTotals,
+      javaTotals,
+      totals
+    );
+  }
+
+  /**
+   * The first day with job ads, or {@link LocalDate#EPOCH} if there are none.
+   */
+  LocalDate getFirstDay() {
+    return firstDay;
+  }
+
+  /**
+   * The first day after the last day with job ads.
+   */
+  LocalDate getEndDay() {
+    return firstDay.plusDays(totals.length - 1);
+  }
+
+  /**
+   * Sums the counts of the days in a period.
+   *
+   * @param periodStart The first day of the period
+   * @param periodEnd The first day after the period
+   * @return The statistics of the period
+   */
+  PeriodStatistics sum(LocalDate periodStart, LocalDate periodEnd) {
+    int from = index(periodStart);
+    int to = index(periodEnd);
+    return new PeriodStatistics(
+      periodStart,
+      periodEnd,
+      kotlinTotals[to] - kotlinTotals[from],
+      javaTotals[to] - javaTotals[from],
+      totals[to] - totals[from]
+    );
+  }
+
+  private int index(LocalDate day) {
+    long index = day.toEpochDay() - firstDay.toEpochDay();
+    return (int) Math.clamp(index, 0, totals.length - 1);
+  }
+}
@@ -0,0 +1,32 @@
+package no.nav.jobsearch.service;
+
+import no.nav.jobsearch.repository.DataRevisionRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Increments the {@link no.nav.jobsearch.model.DataRevision} in every transaction that publishes changed job ads,
+ * right before it commits, so the revision row is only locked while the transaction commits.
+ * The changes are tagged with the revision they are committed as,
+ * so the listeners that receive them after the commit know which revision they bring their copy of the data to.
+ */
+@Service
+public class DataRevisionService {
+
+  private final DataRevisionRepository revisionRepository;
+
+  public DataRevisionService(DataRevisionRepository revisionRepository) {
+    this.revisionRepository = revisionRepository;
+  }
+
+  /**
+   * Increments the revision before the changes of a transaction are committed.
+   *
+   * @param event The changes of the transaction
+   */
+  @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+  public void onJobAdsChanged(JobAdsChangedEvent event) {
+    event.changes().setRevision(revisionRepository.increment());
+  }
+}
@@ -0,0 +1,82 @@
+package no.nav.jobsearch.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dictionary encoding of the values of a {@link no.nav.jobsearch.model.Dimension},
+ * assigning every distinct value a small int id, so the snapshot stores an int per job ad instead of a string.
+ * Id 0 is the missing value. Ids are only ever added, so the ids of a snapshot stay valid in the snapshots patched from it.
+ * A dictionary is only modified while building a snapshot, and is read-only once the snapshot is built.
+ */
+class DimensionDictionary {
+
+  static final int MISSING = 0;
+
+  private final List<String> values;
+  private final Map<String, Integer> ids;
+
+  DimensionDictionary() {
+    this.values = new ArrayList<>();
+    this.values.add(null);
+    this.ids = new HashMap<>();
+  }
+
+  DimensionDictionary(DimensionDictionary dictionary) {
+    this.values = new ArrayList<>(dictionary.values);
+    this.ids = new HashMap<>(dictionary.ids);
+  }
+
+  /**
+   * Returns the id of a value, adding the value if it is new.
+   *
+   * @param value The value, or {@code null} if missing
+   * @return The id of the value
+   */
+  int id(String value) {
+    if (value == null) {
+      return MISSING;
+    }
+    return ids.computeIfAbsent(
+      value,
+      newValue -> {
+        values.add(newValue);
+        return values.size() - 1;
+      }
+    );
+  }
+
+  /**
+   * Finds the id of a value, ignoring case.
+   *
+   * @param value The value
+   * @return The id of the value, or -1 if the dictionary doesn't contain it
+   */
+  int find(String value) {
+    for (int id = 1; id < values.size(); id++) {
+      if (values.get(id).equalsIgnoreCase(value)) {
+        return id;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the value of an id.
+   *
+   * @param id The id
+   * @return The value, or {@code null} for the missing value
+   */
+  String value(int id) {
+    return values.get(id);
+  }
+
+  /**
+   * The number of ids, including the missing value.
+   */
+  int size() {
+    return values.size();
+  }
+}
@@ -0,0 +1,45 @@
+package no.nav.jobsearch.service;
+
+import java.util.Locale;
+
+/**
+ * Formats of the data exports.
+ */
+public enum ExportFormat {
+  /**
+   * Newline-delimited JSON, one object per line.
+   */
+  NDJSON("application/x-ndjson", "ndjson"),
+
+  /**
+   * Comma-separated values with a header line.
+   */
+  CSV("text/csv", "csv");
+
+  private final String contentType;
+  private final String fileExtension;
+
+  ExportFormat(String contentType, String fileExtension) {
+    this.contentType = contentType;
+    this.fileExtension = fileExtension;
+  }
+
+  /**
+   * Parses an export format, ignoring case.
+   *
+   * @param value The format, e.g. "csv"
+   * @return The export format
+   * @throws IllegalArgumentException if the value is not a known format
+   */
+  public static ExportFormat of(String value) {
+    return valueOf(value.trim().toUpperCase(Locale.ROOT));
+  }
+
+  public String getContentType() {
+    return contentType;
+  }
+
+  public String getFileExtension() {
+    return fileExtension;
+  }
+}
@@ -0,0 +1,153 @@
+package no.nav.jobsearch.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import javax.sql.DataSource;
+import no.nav.jobsearch.model.Granularity;
+import no.nav.jobsearch.model.JobAdExport;
+import no.nav.jobsearch.model.PeriodStatistics;
+import no.nav.jobsearch.model.Technology;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Streams the job ads and the statistics to an output stream, for analysts.
+ * The job ads are read with a JDBC cursor and written one row at a time,
+ * so the memory use is constant regardless of the size of the export.
+ */
+@Service
+public class ExportService {
+
+  private static final int FETCH_SIZE = 1000;
+
+  // The description is only read for job ads stored without technology flags
+  private static final String ADS_QUERY =
+    """
+    SELECT uuid, title, published, updated, expires, technologies,
+           CASE WHEN technologies IS NULL THEN description END AS description
+    FROM job_ad
+    WHERE published >= ? AND published < ?
+    ORDER BY published
+    """;
+
+  private final JdbcTemplate jdbcTemplate;
+
+  private final TransactionTemplate readOnlyTransaction;
+
+  private final StatsService statsService;
+
+  private final ObjectMapper objectMapper;
+
+  public ExportService(
+    DataSource dataSource,
+    PlatformTransactionManager transactionManager,
+    StatsService statsService,
+    ObjectMapper objectMapper
+  ) {
+    this.jdbcTemplate = new JdbcTemplate(dataSource);
+    this.jdbcTemplate.setFetchSize(FETCH_SIZE);
+    // PostgreSQL only uses a cursor for the fetch size within a transaction
+    this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+    this.readOnlyTransaction.setReadOnly(true);
+    this.statsService = statsService;
+    this.objectMapper = objectMapper;
+  }
+
+  /**
+   * Exports the job ads published within a window, ordered by published date.
+   *
+   * @param from The first day of the window, or {@code null} for no lower bound
+   * @param to The last day of the window, or {@code null} for no upper bound
+   * @param format The export format
+   * @param out The output stream, closed when the export is complete
+   */
+  public void exportAds(
+    LocalDate from,
+    LocalDate to,
+    ExportFormat format,
+    OutputStream out
+  ) throws IOException {
+    LocalDateTime start = from != null
+      ? from.atStartOfDay()
+      : LocalDateTime.of(1970, 1, 1, 0, 0);
+    LocalDateTime end = to != null
+      ? to.plusDays(1).atStartOfDay()
+      : LocalDateTime.of(9999, 1, 1, 0, 0);
+
+    try (
+      ExportWriter<JobAdExport> writer = new ExportWriter<>(
+        JobAdExport.class,
+        format,
+        out,
+        objectMapper
+      )
+    ) {
+      RowCallbackHandler writeRow = resultSet ->
+        writer.write(toJobAdExport(resultSet));
+      readOnlyTransaction.executeWithoutResult(status ->
+        jdbcTemplate.query(
+          ADS_QUERY,
+          writeRow,
+          Timestamp.valueOf(start),
+          Timestamp.valueOf(end)
+        )
+      );
+    }
+  }
+
+  /**
+   * Exports the Kotlin vs Java statistics per period.
+   * The statistics are computed in memory, see {@link StatsService#getKotlinVsJavaStats}.
+   *
+   * @param from The first day of the window, or {@code null} for six months before today
+   * @param to The last day of the window, or {@code null} for today
+   * @param granularity The size of the periods
+   * @param format The export format
+   * @param out The output stream, closed when the export is complete
+   */
+  public void exportStats(
+    LocalDate from,
+    LocalDate to,
+    Granularity granularity,
+    ExportFormat format,
+    OutputStream out
+  ) throws IOException {
+    try (
+      ExportWriter<PeriodStatistics> writer = new ExportWriter<>(
+        PeriodStatistics.class,
+        format,
+        out,
+        objectMapper
+      )
+    ) {
+      statsService
+        .getKotlinVsJavaStats(from, to, granularity)
+        .forEach(writer::write);
+    }
+  }
+
+  private static JobAdExport toJobAdExport(ResultSet resultSet)
+    throws SQLException {
+    long technologies = resultSet.getLong("technologies");
+    if (resultSet.wasNull()) {
+      technologies = Technology.flagsOf(resultSet.getString("description"));
+    }
+    return new JobAdExport(
+      resultSet.getString("uuid"),
+      resultSet.getString("title"),
+      resultSet.getObject("published", LocalDateTime.class),
+      resultSet.getObject("updated", LocalDateTime.class),
+      resultSet.getObject("expires", LocalDateTime.class),
+      Technology.listOf(technologies)
+    );
+  }
+}
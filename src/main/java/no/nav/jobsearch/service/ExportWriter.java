@@ -0,0 +1,128 @@
+package no.nav.jobsearch.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.reflect.RecordComponent;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Writes records one by one to an output stream, as NDJSON or CSV.
+ * Nothing but the current record is held in memory.
+ * The CSV columns are the record components, collections are joined with semicolons.
+ *
+ * @param <T> The type of the exported records
+ */
+class ExportWriter<T extends Record> implements Closeable {
+
+  private final ExportFormat format;
+  private final RecordComponent[] columns;
+  private final ObjectMapper objectMapper;
+  private final Writer writer;
+
+  ExportWriter(
+    Class<T> recordType,
+    ExportFormat format,
+    OutputStream out,
+    ObjectMapper objectMapper
+  ) {
+    this.format = format;
+    this.columns = recordType.getRecordComponents();
+    this.objectMapper = objectMapper;
+    this.writer =
+      new BufferedWriter(
+        new OutputStreamWriter(out, StandardCharsets.UTF_8),
+        64 * 1024
+      );
+    if (format == ExportFormat.CSV) {
+      writeCsvLine(
+        Arrays.stream(columns).map(RecordComponent::getName).toList()
+      );
+    }
+  }
+
+  void write(T record) {
+    if (format == ExportFormat.CSV) {
+      writeCsvLine(
+        Arrays.stream(columns).map(column -> value(column, record)).toList()
+      );
+    } else {
+      writeLine(toJson(record));
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    writer.close();
+  }
+
+  private String toJson(T record) {
+    try {
+      return objectMapper.writeValueAsString(record);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void writeCsvLine(List<?> values) {
+    writeLine(
+      values
+        .stream()
+        .map(ExportWriter::escapeCsv)
+        .collect(Collectors.joining(","))
+    );
+  }
+
+  private void writeLine(String line) {
+    try {
+      writer.write(line);
+      writer.write('\n');
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static Object value(RecordComponent column, Record record) {
+    try {
+      return column.getAccessor().invoke(record);
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Formats a value as a CSV field, quoting it if it contains a separator, quote or line break.
+   *
+   * @param value The value, may be {@code null}
+   * @return The CSV field
+   */
+  static String escapeCsv(Object value) {
+    if (value == null) {
+      return "";
+    }
+    String text = value instanceof Collection<?> collection
+      ? collection
+        .stream()
+        .map(String::valueOf)
+        .collect(Collectors.joining(";"))
+      : value.toString();
+    if (
+      text.indexOf(',') < 0 &&
+      text.indexOf('"') < 0 &&
+      text.indexOf('\n') < 0 &&
+      text.indexOf('\r') < 0
+    ) {
+      return text;
+    }
+    return '"' + text.replace("\"", "\"\"") + '"';
+  }
+}
@@ -0,0 +1,163 @@
+package no.nav.jobsearch.service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Circuit breaker guarding the calls to the external job feed.
+ * The breaker opens after a configurable number of consecutive failed calls,
+ * rejects all calls while open, and lets a limited number of probe calls through
+ * once the open period has elapsed (half-open). A successful probe closes the breaker again,
+ * a failed probe re-opens it.
+ */
+@Component
+public class FeedCircuitBreaker {
+
+  private static final Logger logger = LoggerFactory.getLogger(
+    FeedCircuitBreaker.class
+  );
+
+  public enum State {
+    CLOSED,
+    OPEN,
+    HALF_OPEN,
+  }
+
+  private final int failureThreshold;
+  private final Duration waitDurationInOpenState;
+  private final int permittedCallsInHalfOpenState;
+  private final Clock clock;
+
+  private volatile State state = State.CLOSED;
+  private volatile int consecutiveFailures;
+  private volatile Instant openedAt;
+  private int halfOpenCalls;
+
+  @Autowired
+  public FeedCircuitBreaker(
+    @Value("${circuitBreaker.failureThreshold:3}") int failureThreshold,
+    @Value(
+      "${circuitBreaker.waitDurationInOpenState:600000}"
+    ) long waitDurationInOpenState,
+    @Value(
+      "${circuitBreaker.permittedCallsInHalfOpenState:1}"
+    ) int permittedCallsInHalfOpenState
+  ) {
+    this(
+      failureThreshold,
+      Duration.ofMillis(waitDurationInOpenState),
+      permittedCallsInHalfOpenState,
+      Clock.systemUTC()
+    );
+  }
+
+  FeedCircuitBreaker(
+    int failureThreshold,
+    Duration waitDurationInOpenState,
+    int permittedCallsInHalfOpenState,
+    Clock clock
+  ) {
+    this.failureThreshold = failureThreshold;
+    this.waitDurationInOpenState = waitDurationInOpenState;
+    this.permittedCallsInHalfOpenState = permittedCallsInHalfOpenState;
+    this.clock = clock;
+  }
+
+  /**
+   * Checks whether a call to the feed is permitted.
+   * Transitions the breaker from open to half-open when the open period has elapsed.
+   *
+   * @throws FeedUnavailableException if the breaker is open, or all half-open probe calls are in use
+   */
+  public synchronized void acquirePermission() {
+    if (
+      state == State.OPEN &&
+      !clock.instant().isBefore(openedAt.plus(waitDurationInOpenState))
+    ) {
+      logger.info("Feed circuit breaker is half-open, probing the feed.");
+      state = State.HALF_OPEN;
+      halfOpenCalls = 0;
+    }
+
+    switch (state) {
+      case CLOSED -> {}
+      case HALF_OPEN -> {
+        if (++halfOpenCalls > permittedCallsInHalfOpenState) {
+          throw new FeedUnavailableException(
+            "Feed circuit breaker is half-open and the probe calls are in use"
+          );
+        }
+      }
+      case OPEN -> throw new FeedUnavailableException(
+        "Feed circuit breaker is open until " +
+        openedAt.plus(waitDurationInOpenState)
+      );
+    }
+  }
+
+  /**
+   * Records a successful call, closing the breaker if it was half-open.
+   */
+  public synchronized void onSuccess() {
+    consecutiveFailures = 0;
+    if (state == State.HALF_OPEN) {
+      logger.info("Feed circuit breaker is closed, the feed has recovered.");
+      state = State.CLOSED;
+    }
+  }
+
+  /**
+   * Records a failed call.
+   * Opens the breaker if the probe call failed, or the failure threshold is reached.
+   */
+  public synchronized void onFailure() {
+    consecutiveFailures++;
+    if (
+      state == State.HALF_OPEN ||
+      (state == State.CLOSED && consecutiveFailures >= failureThreshold)
+    ) {
+      logger.warn(
+        "Feed circuit breaker is open after {} consecutive failures. Calls are rejected for {}.",
+        consecutiveFailures,
+        waitDurationInOpenState
+      );
+      openedAt = clock.instant();
+      state = State.OPEN;
+    }
+  }
+
+  /**
+   * Whether the next permitted call is a probe call, in which case it should be kept cheap.
+   *
+   * @return {@code true} if the breaker is half-open
+   */
+  public boolean isHalfOpen() {
+    return state == State.HALF_OPEN;
+  }
+
+  public State getState() {
+    return state;
+  }
+
+  public int getConsecutiveFailures() {
+    return consecutiveFailures;
+  }
+
+  public int getFailureThreshold() {
+    return failureThreshold;
+  }
+
+  public Duration getWaitDurationInOpenState() {
+    return waitDurationInOpenState;
+  }
+
+  public Instant getOpenedAt() {
+    return state == State.CLOSED ? null : openedAt;
+  }
+}
@@ -0,0 +1,63 @@
+package no.nav.jobsearch.service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+import no.nav.jobsearch.model.JobAdDto;
+
+/**
+ * Fetches job ads of a category from the external job feed.
+ * The implementation is selected with the {@code feed.client} property:
+ * {@code blocking} (the default) for {@link JobFetcher}, or {@code reactive} for {@link ReactiveJobFetcher}.
+ */
+public interface FeedFetcher {
+  /**
+   * The category that fetches the whole feed, without filtering by category.
+   */
+  String ALL_CATEGORIES = "ALL";
+
+  /**
+   * Fetches jobs of a category updated within the given date range, and hands each fetched page
+   * to the data batch handler on the calling thread.
+   *
+   * @param category The feed category, or {@link #ALL_CATEGORIES} for the whole feed
+   * @param now The current date and time
+   * @param oldestUpdatedDate The oldest updated date to fetch jobs from
+   * @param newestUpdatedDate The newest updated date to fetch jobs from
+   * @param dataBatchHandler The handler for processing the fetched data batch
+   */
+  void fetchJobs(
+    String category,
+    LocalDateTime now,
+    LocalDateTime oldestUpdatedDate,
+    LocalDateTime newestUpdatedDate,
+    Consumer<List<JobAdDto>> dataBatchHandler
+  );
+
+  /**
+   * Fetches all jobs of a category within the given date range, for a full refresh.
+   * Implementations may fetch parts of the range concurrently, but still hand each fetched page
+   * to the data batch handler on the calling thread. Fetches the range as a whole by default.
+   *
+   * @param category The feed category, or {@link #ALL_CATEGORIES} for the whole feed
+   * @param now The current date and time
+   * @param oldestUpdatedDate The oldest updated date to fetch jobs from
+   * @param newestUpdatedDate The newest updated date to fetch jobs from
+   * @param dataBatchHandler The handler for processing the fetched data batch
+   */
+  default void fetchAllJobs(
+    String category,
+    LocalDateTime now,
+    LocalDateTime oldestUpdatedDate,
+    LocalDateTime newestUpdatedDate,
+    Consumer<List<JobAdDto>> dataBatchHandler
+  ) {
+    fetchJobs(
+      category,
+      now,
+      oldestUpdatedDate,
+      newestUpdatedDate,
+      dataBatchHandler
+    );
+  }
+}
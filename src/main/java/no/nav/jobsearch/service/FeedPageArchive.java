@@ -0,0 +1,309 @@
+package no.nav.jobsearch.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import no.nav.jobsearch.model.JobFeedResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Archive of the pages fetched from the job feed, so the job ads can be reprocessed without fetching them again.
+ * The pages are appended to numbered segment files in {@code feed.archive.dir}, as deflate-compressed JSON records,
+ * and a new segment is started once a segment reaches {@code feed.archive.segment.size} bytes.
+ * The segments are only ever appended to, so a crash can at most leave a truncated last record, which is skipped.
+ * The segments are memory-mapped when they are replayed, and the records are inflated straight from the mapping.
+ * The archive is disabled if {@code feed.archive.dir} is empty.
+ */
+@Component
+public class FeedPageArchive {
+
+  private static final Logger logger = LoggerFactory.getLogger(
+    FeedPageArchive.class
+  );
+
+  private static final int MAGIC = 0x4a534641; // "JSFA"
+
+  private static final int FORMAT_VERSION = 1;
+
+  private static final int HEADER_SIZE = 8;
+
+  private static final Pattern SEGMENT_NAME = Pattern.compile(
+    "pages-(\\d+)\\.seg"
+  );
+
+  private final Path directory;
+
+  private final long segmentSize;
+
+  private final ObjectMapper objectMapper;
+
+  private final Counter archivedPagesCounter;
+
+  /**
+   * Serializes the appends of concurrently fetched pages.
+   * A lock is used rather than synchronized, as the pages may be fetched on virtual threads.
+   */
+  private final ReentrantLock appendLock = new ReentrantLock();
+
+  private FileChannel segment;
+
+  public FeedPageArchive(
+    @Value("${feed.archive.dir:}") String directory,
+    @Value("${feed.archive.segment.size:67108864}") long segmentSize,
+    ObjectMapper objectMapper,
+    MeterRegistry meterRegistry
+  ) {
+    this.directory = directory.isBlank() ? null : Path.of(directory);
+    this.segmentSize = Math.min(segmentSize, Integer.MAX_VALUE);
+    this.objectMapper = objectMapper;
+    this.archivedPagesCounter =
+      Counter
+        .builder("feed.archive.pages")
+        .description("Number of feed pages appended to the page archive")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Whether pages are archived.
+   */
+  public boolean isEnabled() {
+    return directory != null;
+  }
+
+  /**
+   * The directory of the segments, or {@code null} if the archive is disabled.
+   */
+  public Path getDirectory() {
+    return directory;
+  }
+
+  /**
+   * Appends a fetched page to the current segment. Failures are logged, as the page has been fetched regardless.
+   *
+   * @param page The page, ignored if {@code null} or the archive is disabled
+   */
+  public void append(JobFeedResponse page) {
+    if (directory == null || page == null) {
+      return;
+    }
+    try {
+      byte[] json = objectMapper.writeValueAsBytes(page);
+      byte[] compressed = deflate(json);
+      ByteBuffer record = ByteBuffer.allocate(8 + compressed.length);
+      record.putInt(compressed.length).putInt(json.length).put(compressed);
+      record.flip();
+      appendLock.lock();
+      try {
+        FileChannel channel = currentSegment();
+        while (record.hasRemaining()) {
+          channel.write(record);
+        }
+        if (channel.size() >= segmentSize) {
+          channel.close();
+          segment = null;
+        }
+      } finally {
+        appendLock.unlock();
+      }
+      archivedPagesCounter.increment();
+    } catch (IOException e) {
+      logger.warn("Failed to archive feed page in {}", directory, e);
+    }
+  }
+
+  /**
+   * Replays the archived pages, newest first: the segments from the last to the first,
+   * and the records of each segment from the last to the first.
+   *
+   * @param pageHandler The handler of each page
+   * @throws UncheckedIOException If a segment cannot be read
+   */
+  public void replay(Consumer<JobFeedResponse> pageHandler) {
+    for (Path segmentFile : segments().reversed()) {
+      try (FileChannel channel = FileChannel.open(segmentFile)) {
+        MappedByteBuffer mapping = channel.map(
+          FileChannel.MapMode.READ_ONLY,
+          0,
+          channel.size()
+        );
+        for (int offset : recordOffsets(segmentFile, mapping).reversed()) {
+          pageHandler.accept(readRecord(mapping, offset));
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(
+          "Failed to replay feed archive segment " + segmentFile,
+          e
+        );
+      }
+    }
+  }
+
+  /**
+   * Lists the segment files, oldest first.
+   *
+   * @return The segment files
+   * @throws UncheckedIOException If the directory cannot be read
+   */
+  public List<Path> segments() {
+    if (directory == null || !Files.isDirectory(directory)) {
+      return List.of();
+    }
+    try (Stream<Path> files = Files.list(directory)) {
+      return files
+        .filter(file -> segmentNumber(file) >= 0)
+        .sorted(Comparator.comparingLong(FeedPageArchive::segmentNumber))
+        .toList();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Closes the current segment, so a new segment is started with the next page.
+   */
+  @PreDestroy
+  public void close() {
+    appendLock.lock();
+    try {
+      if (segment != null) {
+        segment.close();
+        segment = null;
+      }
+    } catch (IOException e) {
+      logger.warn("Failed to close feed archive segment", e);
+    } finally {
+      appendLock.unlock();
+    }
+  }
+
+  /**
+   * Opens a new segment after the last one, if no segment is open.
+   * A segment left by an earlier run is never appended to, so every segment starts with its own header.
+   */
+  private FileChannel currentSegment() throws IOException {
+    if (segment == null) {
+      Files.createDirectories(directory);
+      List<Path> segments = segments();
+      long number = segments.isEmpty()
+        ? 1
+        : segmentNumber(segments.getLast()) + 1;
+      segment =
+        FileChannel.open(
+          directory.resolve("pages-%06d.seg".formatted(number)),
+          StandardOpenOption.CREATE_NEW,
+          StandardOpenOption.APPEND
+        );
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      header.putInt(MAGIC).putInt(FORMAT_VERSION).flip();
+      while (header.hasRemaining()) {
+        segment.write(header);
+      }
+    }
+    return segment;
+  }
+
+  /**
+   * Finds the offsets of the complete records of a segment.
+   */
+  private static List<Integer> recordOffsets(
+    Path segmentFile,
+    ByteBuffer mapping
+  ) throws IOException {
+    if (
+      mapping.limit() < HEADER_SIZE ||
+      mapping.getInt(0) != MAGIC ||
+      mapping.getInt(4) != FORMAT_VERSION
+    ) {
+      throw new IOException("Not a feed archive segment: " + segmentFile);
+    }
+    List<Integer> offsets = new ArrayList<>();
+    int offset = HEADER_SIZE;
+    while (offset + 8 <= mapping.limit()) {
+      int compressedLength = mapping.getInt(offset);
+      if (
+        compressedLength < 0 ||
+        offset + 8 + compressedLength > mapping.limit()
+      ) {
+        break;
+      }
+      offsets.add(offset);
+      offset += 8 + compressedLength;
+    }
+    if (offset != mapping.limit()) {
+      logger.warn(
+        "Skipping truncated record at offset {} of feed archive segment {}",
+        offset,
+        segmentFile
+      );
+    }
+    return offsets;
+  }
+
+  private JobFeedResponse readRecord(ByteBuffer mapping, int offset)
+    throws IOException {
+    int compressedLength = mapping.getInt(offset);
+    byte[] json = new byte[mapping.getInt(offset + 4)];
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(mapping.slice(offset + 8, compressedLength));
+      int length = 0;
+      while (length < json.length && !inflater.finished()) {
+        int inflated = inflater.inflate(json, length, json.length - length);
+        if (inflated == 0 && inflater.needsInput()) {
+          throw new IOException("Truncated feed archive record");
+        }
+        length += inflated;
+      }
+    } catch (DataFormatException e) {
+      throw new IOException("Invalid feed archive record", e);
+    } finally {
+      inflater.end();
+    }
+    return objectMapper.readValue(json, JobFeedResponse.class);
+  }
+
+  private static byte[] deflate(byte[] bytes) {
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try {
+      deflater.setInput(bytes);
+      deflater.finish();
+      ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4);
+      byte[] buffer = new byte[8192];
+      while (!deflater.finished()) {
+        out.write(buffer, 0, deflater.deflate(buffer));
+      }
+      return out.toByteArray();
+    } finally {
+      deflater.end();
+    }
+  }
+
+  private static long segmentNumber(Path file) {
+    Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+    return matcher.matches() ? Long.parseLong(matcher.group(1)) : -1;
+  }
+}
@@ -0,0 +1,89 @@
+package no.nav.jobsearch.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Global rate limit of the requests to the job feed, shared by the ingest runs of all feed categories,
+ * so running more categories concurrently does not put more load on the feed.
+ * Every request, including retries and pages requested ahead, reserves the next free slot
+ * of {@code feed.max.requests.per.second}, and waits for it without holding a lock.
+ */
+@Component
+public class FeedRateLimiter {
+
+  private final long intervalNanos;
+
+  private final Timer waitTimer;
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  private long nextPermitNanos = System.nanoTime();
+
+  /**
+   * Creates a rate limiter.
+   *
+   * @param maxRequestsPerSecond The maximum number of requests per second, 0 for no limit
+   * @param meterRegistry The registry of the wait timer
+   */
+  public FeedRateLimiter(
+    @Value("${feed.max.requests.per.second:0}") double maxRequestsPerSecond,
+    MeterRegistry meterRegistry
+  ) {
+    this.intervalNanos =
+      maxRequestsPerSecond > 0 ? (long) (1e9 / maxRequestsPerSecond) : 0;
+    this.waitTimer =
+      Timer
+        .builder("feed.fetch.wait")
+        .description("Time a request to the job feed waited for the rate limit")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Reserves the next request slot, for callers that wait without blocking a thread.
+   *
+   * @return The number of nanoseconds to wait before making the request, 0 if it can be made right away
+   */
+  long reserve() {
+    if (intervalNanos == 0) {
+      return 0;
+    }
+    long waitNanos;
+    lock.lock();
+    try {
+      long now = System.nanoTime();
+      long permitNanos = Math.max(nextPermitNanos, now);
+      nextPermitNanos = permitNanos + intervalNanos;
+      waitNanos = permitNanos - now;
+    } finally {
+      lock.unlock();
+    }
+    waitTimer.record(waitNanos, TimeUnit.NANOSECONDS);
+    return waitNanos;
+  }
+
+  /**
+   * Reserves the next request slot and waits for it.
+   *
+   * @throws IllegalStateException if the thread is interrupted while waiting
+   */
+  void acquire() {
+    long waitNanos = reserve();
+    if (waitNanos <= 0) {
+      return;
+    }
+    try {
+      TimeUnit.NANOSECONDS.sleep(waitNanos);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(
+        "Interrupted while waiting for the feed rate limit",
+        e
+      );
+    }
+  }
+}
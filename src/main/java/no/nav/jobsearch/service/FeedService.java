@@ -1,17 +1,37 @@
 package no.nav.jobsearch.service;
 
+import static no.nav.jobsearch.Util.parseToLocalDateTime;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+import no.nav.jobsearch.model.ArchivedJobAd;
+import no.nav.jobsearch.model.DescriptionStorage;
 import no.nav.jobsearch.model.JobAd;
 import no.nav.jobsearch.model.JobAdDto;
+import no.nav.jobsearch.model.JobAdMetadata;
+import no.nav.jobsearch.model.PeriodStatistics;
+import no.nav.jobsearch.repository.ArchivedJobAdRepository;
 import no.nav.jobsearch.repository.JobAdRepository;
+import no.nav.jobsearch.repository.JobAdWeeklyHistoryRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @Service
 public class FeedService {
@@ -20,112 +40,556 @@ public class FeedService {
     FeedService.class
   );
 
+  private static final int DELETE_CHUNK_SIZE = 1000;
+
+  private static final int REPROCESS_CHUNK_SIZE = 1000;
+
   @Value("${feed.batch.size:100}")
   private int batchSize;
 
+  @Value("${description.storage:text}")
+  private DescriptionStorage descriptionStorage = DescriptionStorage.TEXT;
+
   private final JobAdRepository jobAdRepository;
 
-  private final JobFetcher jobFetcher;
+  private final JobAdWeeklyHistoryRepository historyRepository;
+
+  private final ArchivedJobAdRepository archivedJobAdRepository;
+
+  private final FeedFetcher jobFetcher;
+
+  private final FeedPageArchive pageArchive;
+
+  private final ApplicationEventPublisher eventPublisher;
+
+  private final TransactionTemplate transaction;
+
+  private final Counter insertedAdsCounter;
+
+  private final Counter updatedAdsCounter;
+
+  private final Counter deletedAdsCounter;
+
+  private final Counter archivedAdsCounter;
+
+  private final Timer batchWriteTimer;
+
+  private final Timer purgeTimer;
 
-  public FeedService(JobAdRepository jobAdRepository, JobFetcher jobFetcher) {
+  /**
+   * The UUIDs seen by each ingest run in progress, which claim the job ads against the runs of other categories.
+   * Guarded by {@link #claimLock}, like the sets themselves while a run is in progress.
+   */
+  private final List<UuidSet> runningRuns = new ArrayList<>();
+
+  private final ReentrantLock claimLock = new ReentrantLock();
+
+  public FeedService(
+    JobAdRepository jobAdRepository,
+    JobAdWeeklyHistoryRepository historyRepository,
+    ArchivedJobAdRepository archivedJobAdRepository,
+    FeedFetcher jobFetcher,
+    FeedPageArchive pageArchive,
+    ApplicationEventPublisher eventPublisher,
+    PlatformTransactionManager transactionManager,
+    MeterRegistry meterRegistry
+  ) {
     this.jobAdRepository = jobAdRepository;
+    this.historyRepository = historyRepository;
+    this.archivedJobAdRepository = archivedJobAdRepository;
     this.jobFetcher = jobFetcher;
+    this.pageArchive = pageArchive;
+    this.eventPublisher = eventPublisher;
+    this.transaction = new TransactionTemplate(transactionManager);
+    this.insertedAdsCounter = adsCounter(meterRegistry, "inserted");
+    this.updatedAdsCounter = adsCounter(meterRegistry, "updated");
+    this.deletedAdsCounter = adsCounter(meterRegistry, "deleted");
+    this.archivedAdsCounter = adsCounter(meterRegistry, "archived");
+    this.batchWriteTimer =
+      Timer
+        .builder("feed.batch.write")
+        .description("Latency of writing a batch of job ads to the database")
+        .publishPercentileHistogram()
+        .register(meterRegistry);
+    this.purgeTimer =
+      Timer
+        .builder("feed.purge")
+        .description("Duration of removing expired and unpublished job ads")
+        .register(meterRegistry);
+  }
+
+  private static Counter adsCounter(
+    MeterRegistry meterRegistry,
+    String operation
+  ) {
+    return Counter
+      .builder("feed.ads")
+      .description("Number of job ads written to or removed from the database")
+      .tag("operation", operation)
+      .register(meterRegistry);
   }
 
   /**
-   * Fetches and updates all IT jobs.
-   * Removes expired and unpublished ads.
+   * Fetches and updates all jobs of a feed category.
+   * Removes the expired and unpublished ads of the category.
+   * Publishes a {@link JobAdsChangedEvent} with the stored and removed ads.
    *
+   * @param category The feed category, or {@link FeedFetcher#ALL_CATEGORIES} for the whole feed
    * @param now The current date and time
    */
   @Transactional
-  public void fetchAndUpdateAllITJobs(LocalDateTime now) {
+  public void fetchAndUpdateAllJobs(String category, LocalDateTime now) {
+    IngestRunSummary summary = new IngestRunSummary("full", category);
+    JobAdChanges changes = new JobAdChanges();
     LocalDateTime oldestPublishedDate = now.minusMonths(6);
-    List<String> activeAdUuids = new ArrayList<>();
-    jobFetcher.fetchJobs(
-      now,
-      oldestPublishedDate,
-      now,
-      jobAdDtos -> {
-        processAndStoreJobsInBatches(jobAdDtos);
-        jobAdDtos.forEach(jobAdDto -> activeAdUuids.add(jobAdDto.getUuid()));
-      }
-    );
-    removeExpiredAndUnpublishedAds(now, activeAdUuids);
+    UuidSet seenAds = startRun();
+    try {
+      jobFetcher.fetchAllJobs(
+        category,
+        now,
+        oldestPublishedDate,
+        now,
+        jobAdDtos ->
+          processUnseenJobs(jobAdDtos, category, seenAds, changes, summary)
+      );
+      summary.addDeleted(
+        removeExpiredAndUnpublishedAds(category, now, seenAds, changes)
+      );
+    } finally {
+      finishRun(seenAds);
+    }
+    writeHistory(changes);
+    publishChanges(changes);
+    logger.info("Ingest run finished: {}", summary);
   }
 
   /**
-   * Fetches and saves updated jobs.
+   * Fetches and saves the updated jobs of a feed category,
+   * starting at the newest updated date of the stored jobs of the category.
+   * Publishes a {@link JobAdsChangedEvent} with the stored ads.
    *
+   * @param category The feed category, or {@link FeedFetcher#ALL_CATEGORIES} for the whole feed
    * @param now The current date and time
    */
   @Transactional
-  public void fetchAndSaveUpdatedJobs(LocalDateTime now) {
+  public void fetchAndSaveUpdatedJobs(String category, LocalDateTime now) {
+    IngestRunSummary summary = new IngestRunSummary("updated", category);
+    JobAdChanges changes = new JobAdChanges();
+    UuidSet seenAds = startRun();
+    try {
+      findNewestUpdatedDate(category)
+        .ifPresent(newestUpdatedDate ->
+          jobFetcher.fetchJobs(
+            category,
+            now,
+            newestUpdatedDate,
+            now,
+            jobAdDtos ->
+              processUnseenJobs(jobAdDtos, category, seenAds, changes, summary)
+          )
+        );
+    } finally {
+      finishRun(seenAds);
+    }
+    writeHistory(changes);
+    publishChanges(changes);
+    logger.info("Ingest run finished: {}", summary);
+  }
+
+  /**
+   * Finds the cursor of a feed category. The whole feed starts at the newest of all stored jobs.
+   */
+  private Optional<LocalDateTime> findNewestUpdatedDate(String category) {
+    return FeedFetcher.ALL_CATEGORIES.equals(category)
+      ? jobAdRepository.findNewestUpdatedDate()
+      : jobAdRepository.findNewestUpdatedDateByCategory(category);
+  }
+
+  /**
+   * Finds the metadata of the stored jobs of a feed category. The whole feed finds the jobs of all categories.
+   */
+  private List<JobAdMetadata> findAllMetadata(String category) {
+    return FeedFetcher.ALL_CATEGORIES.equals(category)
+      ? jobAdRepository.findAllMetadata()
+      : jobAdRepository.findAllMetadataByCategory(category);
+  }
+
+  /**
+   * Registers an ingest run, whose seen job ads are claimed against the concurrent runs of other categories.
+   *
+   * @return The UUIDs seen by the run
+   */
+  private UuidSet startRun() {
+    UuidSet seenAds = new UuidSet();
+    claimLock.lock();
+    try {
+      runningRuns.add(seenAds);
+    } finally {
+      claimLock.unlock();
+    }
+    return seenAds;
+  }
+
+  /**
+   * Releases the job ads claimed by an ingest run once its transaction has completed,
+   * so a concurrent run only writes them after the changes of the run are visible or rolled back.
+   *
+   * @param seenAds The UUIDs seen by the run
+   */
+  private void finishRun(UuidSet seenAds) {
+    Runnable release = () -> {
+      claimLock.lock();
+      try {
+        runningRuns.remove(seenAds);
+      } finally {
+        claimLock.unlock();
+      }
+    };
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronization() {
+          @Override
+          public void afterCompletion(int status) {
+            release.run();
+          }
+        }
+      );
+    } else {
+      release.run();
+    }
+  }
+
+  /**
+   * Reprocesses the stored jobs from the archived feed pages, without fetching them from the feed,
+   * e.g. to reclassify them after the classification rules have changed.
+   * The pages are replayed newest first, and each stored job is only reprocessed from its newest archived version,
+   * unless that is older than the stored version. Jobs that are no longer stored are skipped, so removed ads stay removed.
+   * The jobs are reprocessed in chunks of {@value #REPROCESS_CHUNK_SIZE}, each committed in its own transaction,
+   * so the persistence context does not grow with the archive.
+   * Publishes a {@link JobAdsChangedEvent} with the stored ads of each chunk.
+   */
+  public void reprocessArchivedJobs() {
+    IngestRunSummary summary = new IngestRunSummary("replay");
+    Map<String, LocalDateTime> storedAds = new HashMap<>();
     jobAdRepository
-      .findNewestUpdatedDate()
-      .ifPresent(newestUpdatedDate ->
-        jobFetcher.fetchJobs(
-          now,
-          newestUpdatedDate,
-          now,
-          this::processAndStoreJobsInBatches
+      .findAllMetadata()
+      .forEach(ad -> storedAds.put(ad.uuid(), ad.updated()));
+    UuidSet reprocessed = new UuidSet();
+    List<JobAdDto> chunk = new ArrayList<>();
+    pageArchive.replay(page -> {
+      summary.addFetched(page.getContent().size());
+      page
+        .getContent()
+        .stream()
+        .filter(ad -> reprocessed.add(ad.getUuid()))
+        .filter(ad -> isStoredVersion(ad, storedAds))
+        .forEach(chunk::add);
+      if (chunk.size() >= REPROCESS_CHUNK_SIZE) {
+        reprocessChunk(chunk, summary);
+        chunk.clear();
+      }
+    });
+    if (!chunk.isEmpty()) {
+      reprocessChunk(chunk, summary);
+    }
+    logger.info("Ingest run finished: {}", summary);
+  }
+
+  private void reprocessChunk(
+    List<JobAdDto> jobAdDtos,
+    IngestRunSummary summary
+  ) {
+    transaction.executeWithoutResult(status -> {
+      JobAdChanges changes = new JobAdChanges();
+      summary.addBatch(processAndStoreJobsInBatches(jobAdDtos, null, changes));
+      writeHistory(changes);
+      publishChanges(changes);
+    });
+  }
+
+  /**
+   * Processes and stores the jobs of a fetched page that have not been seen before in the run.
+   * The feed cursor starts each date range at the last job of the previous one,
+   * so the jobs at the boundary are fetched twice, and are only stored once.
+   * A job listed in more than one category is only stored by the first of the concurrent runs to see it:
+   * two runs inserting the same job would fail on its key, and two runs updating the same jobs could deadlock.
+   * The other runs still count it as seen, so they do not remove it.
+   *
+   * @param jobAds The jobs of the page
+   * @param category The feed category of the run
+   * @param seenAds The UUIDs of the jobs seen in the run, to which the jobs of the page are added
+   * @param changes Collects the stored job ads
+   * @param summary Counts the fetched, stored and skipped job ads
+   */
+  private void processUnseenJobs(
+    List<JobAdDto> jobAds,
+    String category,
+    UuidSet seenAds,
+    JobAdChanges changes,
+    IngestRunSummary summary
+  ) {
+    summary.addFetched(jobAds.size());
+    List<JobAdDto> unseenAds;
+    claimLock.lock();
+    try {
+      unseenAds =
+        jobAds
+          .stream()
+          .filter(ad -> seenAds.add(ad.getUuid()))
+          .filter(ad -> !isClaimedByOtherRun(ad.getUuid(), seenAds))
+          .toList();
+    } finally {
+      claimLock.unlock();
+    }
+    summary.addDuplicates(jobAds.size() - unseenAds.size());
+    if (!unseenAds.isEmpty()) {
+      // The whole feed doesn't tell the category of a job, so it keeps the stored category
+      summary.addBatch(
+        processAndStoreJobsInBatches(
+          unseenAds,
+          FeedFetcher.ALL_CATEGORIES.equals(category) ? null : category,
+          changes
         )
       );
+    }
+  }
+
+  private boolean isClaimedByOtherRun(String uuid, UuidSet seenAds) {
+    for (UuidSet run : runningRuns) {
+      if (run != seenAds && run.contains(uuid)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isStoredVersion(
+    JobAdDto ad,
+    Map<String, LocalDateTime> storedAds
+  ) {
+    if (!storedAds.containsKey(ad.getUuid())) {
+      return false;
+    }
+    LocalDateTime storedUpdated = storedAds.get(ad.getUuid());
+    LocalDateTime archivedUpdated = parseToLocalDateTime(ad.getUpdated());
+    return (
+      storedUpdated == null ||
+      archivedUpdated == null ||
+      !archivedUpdated.isBefore(storedUpdated)
+    );
   }
 
   /**
    * Processes and stores jobs in batches.
    *
    * @param jobAds The list of job ads to process and store
+   * @param category The feed category the jobs were fetched from, or {@code null} to keep the stored category
+   * @param changes Collects the stored job ads
+   * @return The number of inserted and updated job ads
    */
-  void processAndStoreJobsInBatches(List<JobAdDto> jobAds) {
-    logger.info("Processing and storing {} jobs in batches.", jobAds.size());
+  BatchResult processAndStoreJobsInBatches(
+    List<JobAdDto> jobAds,
+    String category,
+    JobAdChanges changes
+  ) {
+    logger.debug("Processing and storing {} jobs in batches.", jobAds.size());
 
     List<JobAd> batch = new ArrayList<>();
+    List<String> insertedUuids = new ArrayList<>();
+    int inserted = 0;
+    int updated = 0;
 
     for (JobAdDto ad : jobAds) {
       Optional<JobAd> existingAd = jobAdRepository.findByUuid(ad.getUuid());
 
       if (existingAd.isPresent()) {
         JobAd jobAd = existingAd.get();
-        jobAd.updateFromDto(ad); // Update existing ad
+        jobAd.updateFromDto(ad, descriptionStorage); // Update existing ad
         batch.add(jobAd);
+        updated++;
       } else {
-        batch.add(new JobAd(ad)); // Create new ad
+        batch.add(new JobAd(ad, descriptionStorage)); // Create new ad
+        insertedUuids.add(ad.getUuid());
+        inserted++;
+      }
+      if (category != null) {
+        batch.getLast().setCategory(category);
       }
+      changes.stored(batch.getLast());
 
       // If batch reaches defined size, save and clear it
       if (batch.size() >= batchSize) {
-        jobAdRepository.saveAll(batch);
+        saveBatch(batch);
         batch.clear();
       }
     }
 
     // Save remaining items in batch
     if (!batch.isEmpty()) {
-      jobAdRepository.saveAll(batch);
+      saveBatch(batch);
     }
+    if (!insertedUuids.isEmpty()) {
+      unarchive(insertedUuids, changes);
+    }
+
+    insertedAdsCounter.increment(inserted);
+    updatedAdsCounter.increment(updated);
+    return new BatchResult(inserted, updated);
+  }
+
+  private void saveBatch(List<JobAd> batch) {
+    batchWriteTimer.record(() -> jobAdRepository.saveAll(batch));
   }
 
   /**
-   * Removes expired and unpublished ads.
+   * Removes the expired and unpublished ads of a feed category, after folding them into the weekly history.
+   * The whole feed removes the expired and unpublished ads of all categories.
    *
+   * @param category The feed category, or {@link FeedFetcher#ALL_CATEGORIES} for the whole feed
    * @param now The current date and time
-   * @param activeAdUuids The list of active ad UUIDs
+   * @param activeAdUuids The UUIDs of the active ads, seen in the feed
+   * @param changes Collects the removed job ads
+   * @return The number of removed job ads
    */
-  void removeExpiredAndUnpublishedAds(
+  int removeExpiredAndUnpublishedAds(
+    String category,
     LocalDateTime now,
-    List<String> activeAdUuids
+    UuidSet activeAdUuids,
+    JobAdChanges changes
   ) {
-    Iterable<JobAd> storedAds = jobAdRepository.findAll();
+    return purgeTimer.record(() -> {
+      List<String> removedUuids = new ArrayList<>();
+
+      for (JobAdMetadata ad : findAllMetadata(category)) {
+        if (ad.expires().isBefore(now) || !activeAdUuids.contains(ad.uuid())) {
+          if (logger.isDebugEnabled()) {
+            logger.debug("Removing job ad with UUID: {}", ad.uuid());
+          }
+          removedUuids.add(ad.uuid());
+          changes.removed(ad.uuid());
+        }
+      }
+
+      // Delete in chunks, to keep the IN lists of the delete statements bounded
+      int deleted = 0;
+      for (int i = 0; i < removedUuids.size(); i += DELETE_CHUNK_SIZE) {
+        List<String> chunk = removedUuids.subList(
+          i,
+          Math.min(i + DELETE_CHUNK_SIZE, removedUuids.size())
+        );
+        archive(chunk, changes);
+        deleted += jobAdRepository.deleteByUuidIn(chunk);
+      }
+
+      deletedAdsCounter.increment(deleted);
+      return deleted;
+    });
+  }
+
+  /**
+   * Counts job ads into the weekly counts of the purged job ads, which are added to the history
+   * by {@link #writeHistory} in the transaction that deletes them,
+   * so every job ad is counted either in the job ads table or in the history.
+   * The purged job ads are recorded as {@link ArchivedJobAd}s, to take them out of the history if they come back.
+   *
+   * @param uuids The UUIDs of the job ads about to be deleted
+   * @param changes Collects the weekly counts of the job ads
+   */
+  private void archive(List<String> uuids, JobAdChanges changes) {
+    List<JobAdSnapshot.Row> rows = new ArrayList<>();
+    List<ArchivedJobAd> archivedJobAds = new ArrayList<>();
+    for (Object[] row : jobAdRepository.findHistoryRows(uuids)) {
+      JobAdSnapshot.Row snapshotRow = JobAdSnapshot.Row.of(
+        (String) row[0],
+        (LocalDateTime) row[1],
+        null,
+        (Long) row[2],
+        (String) row[3]
+      );
+      LocalDate week = WeeklyHistory.weekOf(snapshotRow);
+      if (week != null) {
+        rows.add(snapshotRow);
+        archivedJobAds.add(
+          new ArchivedJobAd((String) row[0], week, snapshotRow.technologies())
+        );
+      }
+    }
+    WeeklyHistory archived = WeeklyHistory.count(rows);
+    if (archived.isEmpty()) {
+      return;
+    }
+
+    archivedJobAdRepository.saveAll(archivedJobAds);
+    changes.archived(archived);
+    archivedAdsCounter.increment(archivedJobAds.size());
+  }
+
+  /**
+   * Takes purged job ads that have come back to the feed out of the weekly history again,
+   * like a republished job ad or one whose expiry date was extended,
+   * so they are only counted in the job ads table, where they are stored again.
+   *
+   * The counts are taken out of the history by {@link #writeHistory}.
+   *
+   * @param uuids The UUIDs of the inserted job ads
+   * @param changes Collects the weekly counts taken out of the history
+   */
+  private void unarchive(List<String> uuids, JobAdChanges changes) {
+    List<ArchivedJobAd> returnedAds = new ArrayList<>();
+    archivedJobAdRepository.findAllById(uuids).forEach(returnedAds::add);
+    if (returnedAds.isEmpty()) {
+      return;
+    }
 
-    for (JobAd ad : storedAds) {
+    WeeklyHistory unarchived = WeeklyHistory.of(
+      returnedAds.stream().map(ArchivedJobAd::toPeriodStatistics).toList()
+    );
+    archivedJobAdRepository.deleteByUuidIn(
+      returnedAds.stream().map(ArchivedJobAd::getUuid).toList()
+    );
+    changes.unarchived(unarchived);
+    logger.debug(
+      "Took {} purged job ads back out of the weekly history",
+      returnedAds.size()
+    );
+  }
+
+  /**
+   * Adds the weekly counts of the job ads purged and taken out of the history during a run to the history,
+   * at the end of the transaction of the run, so the weeks are only locked while the run commits.
+   * The weeks are written in order, so the concurrent runs of other categories lock them in the same order,
+   * and the counts are added by the database, so they keep the counts of the other runs.
+   *
+   * @param changes The changes of the run
+   */
+  void writeHistory(JobAdChanges changes) {
+    for (PeriodStatistics week : changes.getArchived().getWeeks()) {
       if (
-        ad.getExpires().isBefore(now) || !activeAdUuids.contains(ad.getUuid())
+        week.kotlinCount() != 0 ||
+        week.javaCount() != 0 ||
+        week.totalCount() != 0
       ) {
-        logger.info("Removing job ad with UUID: {}", ad.getUuid());
-        jobAdRepository.delete(ad);
+        historyRepository.addCounts(
+          week.periodStart(),
+          week.kotlinCount(),
+          week.javaCount(),
+          week.totalCount()
+        );
       }
     }
   }
+
+  private void publishChanges(JobAdChanges changes) {
+    if (!changes.isEmpty()) {
+      eventPublisher.publishEvent(new JobAdsChangedEvent(changes));
+    }
+  }
+
+  /**
+   * The result of storing a list of job ads.
+   *
+   * @param inserted The number of job ads that were new
+   * @param updated The number of job ads that already existed and were updated
+   */
+  record BatchResult(int inserted, int updated) {}
 }
@@ -0,0 +1,12 @@
+package no.nav.jobsearch.service;
+
+/**
+ * Thrown when a call to the external job feed is rejected without being attempted,
+ * because the feed circuit breaker is open.
+ */
+public class FeedUnavailableException extends RuntimeException {
+
+  public FeedUnavailableException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,108 @@
+package no.nav.jobsearch.service;
+
+/**
+ * Aggregated counts and duration of a single ingest run.
+ * Collected while the run is in progress, and logged as one summary line when the run has finished,
+ * instead of logging every processed job ad.
+ */
+class IngestRunSummary {
+
+  private final String run;
+  private final String category;
+  private final long startNanos = System.nanoTime();
+
+  /**
+   * The job ads returned by the feed, or read from the archive, including those fetched more than once.
+   */
+  private int fetched;
+  private int inserted;
+  private int updated;
+  private int deleted;
+  private int duplicates;
+
+  IngestRunSummary(String run) {
+    this(run, null);
+  }
+
+  /**
+   * Creates the summary of an ingest run of a feed category.
+   *
+   * @param run The kind of run, e.g. "full"
+   * @param category The feed category, or {@code null} for a run of all stored job ads
+   */
+  IngestRunSummary(String run, String category) {
+    this.run = run;
+    this.category = category;
+  }
+
+  void addFetched(int fetched) {
+    this.fetched += fetched;
+  }
+
+  void addBatch(FeedService.BatchResult batchResult) {
+    inserted += batchResult.inserted();
+    updated += batchResult.updated();
+  }
+
+  void addDeleted(int deleted) {
+    this.deleted += deleted;
+  }
+
+  /**
+   * Counts fetched job ads that were skipped, as they had already been fetched earlier in the run,
+   * or by a concurrent run of another category.
+   */
+  void addDuplicates(int duplicates) {
+    this.duplicates += duplicates;
+  }
+
+  int getFetched() {
+    return fetched;
+  }
+
+  int getInserted() {
+    return inserted;
+  }
+
+  int getUpdated() {
+    return updated;
+  }
+
+  int getDeleted() {
+    return deleted;
+  }
+
+  int getDuplicates() {
+    return duplicates;
+  }
+
+  long getDurationMillis() {
+    return (System.nanoTime() - startNanos) / 1_000_000;
+  }
+
+  /**
+   * Formats the summary as key=value pairs, so that it can be parsed by log aggregation tools.
+   *
+   * @return The formatted summary
+   */
+  @Override
+  public String toString() {
+    return (
+      "run=" +
+      run +
+      (category != null ? " category=" + category : "") +
+      " fetched=" +
+      fetched +
+      " inserted=" +
+      inserted +
+      " updated=" +
+      updated +
+      " deleted=" +
+      deleted +
+      " duplicates=" +
+      duplicates +
+      " durationMs=" +
+      getDurationMillis()
+    );
+  }
+}
@@ -0,0 +1,104 @@
+package no.nav.jobsearch.service;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import no.nav.jobsearch.model.JobAd;
+
+/**
+ * The job ads stored and removed during an ingest run, in the compact form of the {@link JobAdSnapshot},
+ * with the terms of the stored job ads for the {@link KeywordIndex},
+ * and the weekly counts of the removed job ads folded into the {@link WeeklyHistory}.
+ * If a job ad is both stored and removed during the run, the last change wins.
+ * Once committed, the changes are tagged with the {@link no.nav.jobsearch.model.DataRevision} they were committed as.
+ */
+public class JobAdChanges {
+
+  private final Map<UUID, JobAdSnapshot.Row> stored = new LinkedHashMap<>();
+  private final Set<UUID> removed = new HashSet<>();
+  private final KeywordIndex.Delta keywords = new KeywordIndex.Delta();
+  private WeeklyHistory archived = WeeklyHistory.EMPTY;
+  private long revision;
+
+  void stored(JobAd jobAd) {
+    JobAdSnapshot.Row row = JobAdSnapshot.Row.of(jobAd);
+    removed.remove(row.uuid());
+    stored.put(row.uuid(), row);
+    keywords.stored(
+      row.uuid(),
+      row.publishedDay(),
+      jobAd.getTitle(),
+      jobAd.getDescription()
+    );
+  }
+
+  /**
+   * Records a job ad whose snapshot row changed while its title and description did not, like a reclassified job ad.
+   */
+  void reclassified(JobAdSnapshot.Row row) {
+    removed.remove(row.uuid());
+    stored.put(row.uuid(), row);
+  }
+
+  void removed(String jobAdUuid) {
+    UUID uuid = JobAdSnapshot.key(jobAdUuid);
+    stored.remove(uuid);
+    removed.add(uuid);
+    keywords.removed(uuid);
+  }
+
+  /**
+   * Records the weekly counts of job ads that were folded into the history before they were removed.
+   */
+  void archived(WeeklyHistory history) {
+    archived = archived.plus(history);
+  }
+
+  /**
+   * Records the weekly counts of purged job ads that came back to the feed, and were taken out of the history again.
+   */
+  void unarchived(WeeklyHistory history) {
+    archived = archived.minus(history);
+  }
+
+  Collection<JobAdSnapshot.Row> getStored() {
+    return stored.values();
+  }
+
+  Set<UUID> getRemoved() {
+    return removed;
+  }
+
+  WeeklyHistory getArchived() {
+    return archived;
+  }
+
+  /**
+   * The revision of the data the changes were committed as, or 0 if they have not been committed.
+   */
+  long getRevision() {
+    return revision;
+  }
+
+  void setRevision(long revision) {
+    this.revision = revision;
+  }
+
+  KeywordIndex.Delta getKeywords() {
+    return keywords;
+  }
+
+  /**
+   * Whether the snapshot row of the job ad is replaced or removed by these changes.
+   */
+  boolean affects(UUID uuid) {
+    return stored.containsKey(uuid) || removed.contains(uuid);
+  }
+
+  boolean isEmpty() {
+    return stored.isEmpty() && removed.isEmpty() && archived.isEmpty();
+  }
+}
@@ -0,0 +1,532 @@
+package no.nav.jobsearch.service;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import no.nav.jobsearch.model.Dimension;
+import no.nav.jobsearch.model.JobAd;
+import no.nav.jobsearch.model.Technology;
+
+/**
+ * Immutable, columnar copy of the job ad metadata needed for the statistics.
+ * Every job ad is a row of primitive columns: its UUID as two longs, its published and expiry dates
+ * as epoch days, its {@link Technology} bitset, and the dictionary ids of its region, sector and feed category,
+ * about 44 bytes per job ad.
+ * It also holds the {@link WeeklyHistory} of the job ads that have been purged from the database.
+ * Changes are applied by building a new snapshot, so readers never need a lock.
+ * A snapshot can be written to and read back from a file, to start with warm statistics after a restart.
+ */
+class JobAdSnapshot {
+
+  /**
+   * Epoch day of a missing date.
+   */
+  static final int NO_DATE = Integer.MIN_VALUE;
+
+  /**
+   * The last version given to a snapshot. Declared before {@link #EMPTY}, which takes the first version.
+   */
+  private static final AtomicLong LAST_VERSION = new AtomicLong();
+
+  static final JobAdSnapshot EMPTY = new Builder(0).build();
+
+  /**
+   * Version of the file format written by {@link #writeTo}.
+   * Increase it when the format or the meaning of the columns changes,
+   * so that snapshot files written by older versions are rejected.
+   */
+  static final int FORMAT_VERSION = 5;
+
+  private static final int MAGIC = 0x4a53534e; // "JSSN"
+
+  private final int size;
+  private final long[] uuidHigh;
+  private final long[] uuidLow;
+  private final int[] publishedDays;
+  private final int[] expiresDays;
+  private final long[] technologies;
+  private final int[] regionIds;
+  private final int[] sectorIds;
+  private final int[] categoryIds;
+  private final DimensionDictionary regions;
+  private final DimensionDictionary sectors;
+  private final DimensionDictionary categories;
+  private final WeeklyHistory history;
+
+  /**
+   * Identifies the snapshot without referencing it. Every snapshot built in this process gets a higher version.
+   */
+  private final long version = LAST_VERSION.incrementAndGet();
+
+  private volatile DailyStatistics dailyStatistics;
+
+  private volatile StatsCube cube;
+
+  private JobAdSnapshot(Builder builder) {
+    this.size = builder.size;
+    this.uuidHigh = Arrays.copyOf(builder.uuidHigh, size);
+    this.uuidLow = Arrays.copyOf(builder.uuidLow, size);
+    this.publishedDays = Arrays.copyOf(builder.publishedDays, size);
+    this.expiresDays = Arrays.copyOf(builder.expiresDays, size);
+    this.technologies = Arrays.copyOf(builder.technologies, size);
+    this.regionIds = Arrays.copyOf(builder.regionIds, size);
+    this.sectorIds = Arrays.copyOf(builder.sectorIds, size);
+    this.categoryIds = Arrays.copyOf(builder.categoryIds, size);
+    this.regions = builder.regions;
+    this.sectors = builder.sectors;
+    this.categories = builder.categories;
+    this.history = builder.history;
+  }
+
+  long getVersion() {
+    return version;
+  }
+
+  /**
+   * The number of job ads in the snapshot.
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Counts the job ads that have not expired at the start of a day.
+   *
+   * @param day The day
+   * @return The number of job ads expiring on or after the day
+   */
+  int countActive(LocalDate day) {
+    int epochDay = (int) day.toEpochDay();
+    int active = 0;
+    for (int i = 0; i < size; i++) {
+      if (expiresDays[i] >= epochDay) {
+        active++;
+      }
+    }
+    return active;
+  }
+
+  /**
+   * The daily counts of the job ads in the snapshot, computed on first use.
+   */
+  DailyStatistics getDailyStatistics() {
+    DailyStatistics statistics = dailyStatistics;
+    if (statistics == null) {
+      statistics = DailyStatistics.of(publishedDays, technologies, size);
+      dailyStatistics = statistics;
+    }
+    return statistics;
+  }
+
+  /**
+   * The weekly counts per feed category, region and sector of the job ads in the snapshot, computed on first use.
+   */
+  StatsCube getCube() {
+    StatsCube statistics = cube;
+    if (statistics == null) {
+      statistics =
+        StatsCube.of(
+          publishedDays,
+          technologies,
+          regionIds,
+          sectorIds,
+          categoryIds,
+          size,
+          regions,
+          sectors,
+          categories
+        );
+      cube = statistics;
+    }
+    return statistics;
+  }
+
+  /**
+   * The weekly counts of the job ads purged from the database.
+   */
+  WeeklyHistory getHistory() {
+    return history;
+  }
+
+  /**
+   * The dictionary of the values of a dimension.
+   */
+  DimensionDictionary dictionary(Dimension dimension) {
+    return switch (dimension) {
+      case REGION -> regions;
+      case SECTOR -> sectors;
+      case CATEGORY -> categories;
+    };
+  }
+
+  /**
+   * Builds a new snapshot with the changes of an ingest run applied.
+   *
+   * @param changes The stored, removed and archived job ads
+   * @return The new snapshot
+   */
+  JobAdSnapshot patch(JobAdChanges changes) {
+    Builder builder = new Builder(size + changes.getStored().size(), this);
+    builder.history(history.plus(changes.getArchived()));
+    for (int i = 0; i < size; i++) {
+      if (!changes.affects(new UUID(uuidHigh[i], uuidLow[i]))) {
+        builder.add(
+          uuidHigh[i],
+          uuidLow[i],
+          publishedDays[i],
+          expiresDays[i],
+          technologies[i],
+          regionIds[i],
+          sectorIds[i],
+          categoryIds[i]
+        );
+      }
+    }
+    changes.getStored().forEach(builder::add);
+    return builder.build();
+  }
+
+  /**
+   * Writes the snapshot in a binary format that {@link #readFrom} reads back.
+   * The rows are preceded by a header with the format version and the known technologies,
+   * as the technology flags are only meaningful for the same list of technologies,
+   * and followed by the weekly history.
+   *
+   * @param out The output to write to
+   * @throws IOException If the snapshot cannot be written
+   */
+  void writeTo(DataOutput out) throws IOException {
+    out.writeInt(MAGIC);
+    out.writeInt(FORMAT_VERSION);
+    out.writeUTF(technologiesFingerprint());
+    writeDictionary(out, regions);
+    writeDictionary(out, sectors);
+    writeDictionary(out, categories);
+    out.writeInt(size);
+    for (int i = 0; i < size; i++) {
+      out.writeLong(uuidHigh[i]);
+      out.writeLong(uuidLow[i]);
+      out.writeInt(publishedDays[i]);
+      out.writeInt(expiresDays[i]);
+      out.writeLong(technologies[i]);
+      out.writeInt(regionIds[i]);
+      out.writeInt(sectorIds[i]);
+      out.writeInt(categoryIds[i]);
+    }
+    history.writeTo(out);
+  }
+
+  /**
+   * Reads a snapshot written by {@link #writeTo}.
+   *
+   * @param in The input to read from
+   * @return The snapshot
+   * @throws IOException If the snapshot cannot be read, or was written in another format
+   *     or for another list of technologies
+   */
+  static JobAdSnapshot readFrom(DataInput in) throws IOException {
+    if (in.readInt() != MAGIC) {
+      throw new IOException("Not a statistics snapshot");
+    }
+    int formatVersion = in.readInt();
+    if (formatVersion != FORMAT_VERSION) {
+      throw new IOException(
+        "Unsupported snapshot format version " + formatVersion
+      );
+    }
+    String technologies = in.readUTF();
+    if (!technologies.equals(technologiesFingerprint())) {
+      throw new IOException(
+        "Snapshot was written for the technologies " + technologies
+      );
+    }
+    Builder builder = new Builder(0);
+    readDictionary(in, builder.regions);
+    readDictionary(in, builder.sectors);
+    readDictionary(in, builder.categories);
+    int size = in.readInt();
+    builder.ensureCapacity(size);
+    for (int i = 0; i < size; i++) {
+      builder.add(
+        in.readLong(),
+        in.readLong(),
+        in.readInt(),
+        in.readInt(),
+        in.readLong(),
+        in.readInt(),
+        in.readInt(),
+        in.readInt()
+      );
+    }
+    builder.history(WeeklyHistory.readFrom(in));
+    return builder.build();
+  }
+
+  private static void writeDictionary(
+    DataOutput out,
+    DimensionDictionary dictionary
+  ) throws IOException {
+    out.writeInt(dictionary.size());
+    for (int id = 1; id < dictionary.size(); id++) {
+      out.writeUTF(dictionary.value(id));
+    }
+  }
+
+  private static void readDictionary(
+    DataInput in,
+    DimensionDictionary dictionary
+  ) throws IOException {
+    int size = in.readInt();
+    for (int id = 1; id < size; id++) {
+      dictionary.id(in.readUTF());
+    }
+  }
+
+  private static String technologiesFingerprint() {
+    return Arrays.toString(Technology.values());
+  }
+
+  /**
+   * Converts a job ad UUID to the key of its row.
+   * UUIDs that are not in the standard format are hashed to a name-based UUID.
+   *
+   * @param uuid The UUID of the job ad
+   * @return The key of the job ad
+   */
+  static UUID key(String uuid) {
+    try {
+      return UUID.fromString(uuid);
+    } catch (IllegalArgumentException e) {
+      return UUID.nameUUIDFromBytes(uuid.getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  static int epochDay(LocalDateTime dateTime) {
+    return dateTime == null
+      ? NO_DATE
+      : (int) dateTime.toLocalDate().toEpochDay();
+  }
+
+  /**
+   * A job ad in the compact form of the snapshot.
+   */
+  record Row(
+    UUID uuid,
+    int publishedDay,
+    int expiresDay,
+    long technologies,
+    String region,
+    String sector,
+    String category
+  ) {
+    static Row of(JobAd jobAd) {
+      return of(
+        jobAd.getUuid(),
+        jobAd.getPublished(),
+        jobAd.getExpires(),
+        jobAd.getTechnologies(),
+        jobAd.getDescription(),
+        jobAd.getRegion(),
+        jobAd.getSector(),
+        jobAd.getCategory()
+      );
+    }
+
+    /**
+     * Creates a row without a region, sector and category.
+     */
+    static Row of(
+      String uuid,
+      LocalDateTime published,
+      LocalDateTime expires,
+      Long technologies,
+      String description
+    ) {
+      return of(
+        uuid,
+        published,
+        expires,
+        technologies,
+        description,
+        null,
+        null,
+        null
+      );
+    }
+
+    /**
+     * Creates a row without a category.
+     */
+    static Row of(
+      String uuid,
+      LocalDateTime published,
+      LocalDateTime expires,
+      Long technologies,
+      String description,
+      String region,
+      String sector
+    ) {
+      return of(
+        uuid,
+        published,
+        expires,
+        technologies,
+        description,
+        region,
+        sector,
+        null
+      );
+    }
+
+    /**
+     * Creates a row, classifying the description if the technology flags are not stored.
+     */
+    static Row of(
+      String uuid,
+      LocalDateTime published,
+      LocalDateTime expires,
+      Long technologies,
+      String description,
+      String region,
+      String sector,
+      String category
+    ) {
+      return new Row(
+        key(uuid),
+        epochDay(published),
+        epochDay(expires),
+        technologies != null ? technologies : Technology.flagsOf(description),
+        region,
+        sector,
+        category
+      );
+    }
+  }
+
+  /**
+   * Collects the rows of a new snapshot.
+   */
+  static class Builder {
+
+    private int size;
+    private long[] uuidHigh;
+    private long[] uuidLow;
+    private int[] publishedDays;
+    private int[] expiresDays;
+    private long[] technologies;
+    private int[] regionIds;
+    private int[] sectorIds;
+    private int[] categoryIds;
+    private final DimensionDictionary regions;
+    private final DimensionDictionary sectors;
+    private final DimensionDictionary categories;
+    private WeeklyHistory history = WeeklyHistory.EMPTY;
+
+    Builder(int expectedSize) {
+      this(
+        expectedSize,
+        new DimensionDictionary(),
+        new DimensionDictionary(),
+        new DimensionDictionary()
+      );
+    }
+
+    /**
+     * Creates a builder that keeps the dictionary ids of a snapshot.
+     */
+    private Builder(int expectedSize, JobAdSnapshot base) {
+      this(
+        expectedSize,
+        new DimensionDictionary(base.regions),
+        new DimensionDictionary(base.sectors),
+        new DimensionDictionary(base.categories)
+      );
+    }
+
+    private Builder(
+      int expectedSize,
+      DimensionDictionary regions,
+      DimensionDictionary sectors,
+      DimensionDictionary categories
+    ) {
+      int capacity = Math.max(16, expectedSize);
+      uuidHigh = new long[capacity];
+      uuidLow = new long[capacity];
+      publishedDays = new int[capacity];
+      expiresDays = new int[capacity];
+      technologies = new long[capacity];
+      regionIds = new int[capacity];
+      sectorIds = new int[capacity];
+      categoryIds = new int[capacity];
+      this.regions = regions;
+      this.sectors = sectors;
+      this.categories = categories;
+    }
+
+    Builder history(WeeklyHistory weeklyHistory) {
+      this.history = weeklyHistory;
+      return this;
+    }
+
+    Builder add(Row row) {
+      return add(
+        row.uuid().getMostSignificantBits(),
+        row.uuid().getLeastSignificantBits(),
+        row.publishedDay(),
+        row.expiresDay(),
+        row.technologies(),
+        regions.id(row.region()),
+        sectors.id(row.sector()),
+        categories.id(row.category())
+      );
+    }
+
+    private Builder add(
+      long high,
+      long low,
+      int publishedDay,
+      int expiresDay,
+      long technologyFlags,
+      int regionId,
+      int sectorId,
+      int categoryId
+    ) {
+      if (size == uuidHigh.length) {
+        ensureCapacity(size + (size >> 1));
+      }
+      uuidHigh[size] = high;
+      uuidLow[size] = low;
+      publishedDays[size] = publishedDay;
+      expiresDays[size] = expiresDay;
+      technologies[size] = technologyFlags;
+      regionIds[size] = regionId;
+      sectorIds[size] = sectorId;
+      categoryIds[size] = categoryId;
+      size++;
+      return this;
+    }
+
+    private void ensureCapacity(int capacity) {
+      if (capacity > uuidHigh.length) {
+        uuidHigh = Arrays.copyOf(uuidHigh, capacity);
+        uuidLow = Arrays.copyOf(uuidLow, capacity);
+        publishedDays = Arrays.copyOf(publishedDays, capacity);
+        expiresDays = Arrays.copyOf(expiresDays, capacity);
+        technologies = Arrays.copyOf(technologies, capacity);
+        regionIds = Arrays.copyOf(regionIds, capacity);
+        sectorIds = Arrays.copyOf(sectorIds, capacity);
+        categoryIds = Arrays.copyOf(categoryIds, capacity);
+      }
+    }
+
+    JobAdSnapshot build() {
+      return new JobAdSnapshot(this);
+    }
+  }
+}
@@ -0,0 +1,358 @@
+package no.nav.jobsearch.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import no.nav.jobsearch.model.PeriodStatistics;
+import no.nav.jobsearch.repository.DataRevisionRepository;
+import no.nav.jobsearch.repository.JobAdRepository;
+import no.nav.jobsearch.repository.JobAdWeeklyHistoryRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Holds the current {@link JobAdSnapshot}.
+ * The snapshot is loaded from the database when first needed, with the weekly history of the purged job ads,
+ * and patched with the changes of every committed ingest run, so the statistics never query the database.
+ * Readers get the current snapshot without locking, the loading and patching swap in a new snapshot.
+ * If {@code stats.snapshot.file} is set, the snapshot is written to that file after it is loaded or patched
+ * and on shutdown, and read back on startup, so the statistics are served without loading the database
+ * right after a restart. The startup refresh then patches the restored snapshot like any other ingest run.
+ * The file is written with the {@link no.nav.jobsearch.model.DataRevision} the snapshot includes all changes up to,
+ * and only restored if the database is still at that revision, so changes committed without being written to the file,
+ * like those of an ingest run whose patch was lost in a crash, or of a reclassification, are never missed.
+ */
+@Service
+public class JobAdSnapshotService {
+
+  private static final Logger logger = LoggerFactory.getLogger(
+    JobAdSnapshotService.class
+  );
+
+  private final JobAdRepository jobAdRepository;
+
+  private final JobAdWeeklyHistoryRepository historyRepository;
+
+  private final DataRevisionRepository revisionRepository;
+
+  /**
+   * Loads from the primary rather than the replica, as a lagging replica would miss committed changes
+   * that are never patched in again, so the transaction isn't marked read-only.
+   */
+  private final TransactionTemplate loadTransaction;
+
+  private final Timer rebuildTimer;
+
+  private final Path snapshotFile;
+
+  /**
+   * Serializes the loading and patching, so that no committed changes are lost.
+   * A lock is used rather than synchronized, as the loading waits for the database.
+   */
+  private final ReentrantLock writeLock = new ReentrantLock();
+
+  private volatile JobAdSnapshot snapshot;
+
+  /**
+   * The data revision the snapshot includes the changes of all revisions up to.
+   * Guarded by the write lock.
+   */
+  private long revision;
+
+  /**
+   * The later revisions whose changes the snapshot includes,
+   * as the listeners of transactions that commit one after the other may run in another order.
+   * Guarded by the write lock.
+   */
+  private final NavigableSet<Long> laterRevisions = new TreeSet<>();
+
+  public JobAdSnapshotService(
+    JobAdRepository jobAdRepository,
+    JobAdWeeklyHistoryRepository historyRepository,
+    DataRevisionRepository revisionRepository,
+    PlatformTransactionManager transactionManager,
+    MeterRegistry meterRegistry,
+    @Value("${stats.snapshot.file:}") String snapshotFile
+  ) {
+    this.jobAdRepository = jobAdRepository;
+    this.historyRepository = historyRepository;
+    this.revisionRepository = revisionRepository;
+    this.snapshotFile = snapshotFile.isBlank() ? null : Path.of(snapshotFile);
+    this.loadTransaction = new TransactionTemplate(transactionManager);
+    this.loadTransaction.setIsolationLevel(
+      TransactionDefinition.ISOLATION_REPEATABLE_READ
+    );
+    this.rebuildTimer =
+      Timer
+        .builder("stats.snapshot.rebuild")
+        .description("Duration of loading the statistics snapshot from the database")
+        .register(meterRegistry);
+    Gauge
+      .builder("stats.snapshot.ads", this, service -> service.currentSize())
+      .description("Number of job ads in the statistics snapshot")
+      .register(meterRegistry);
+    Gauge
+      .builder(
+        "stats.snapshot.active.ads",
+        this,
+        service -> service.currentActiveCount()
+      )
+      .description("Number of job ads in the statistics snapshot that have not expired")
+      .register(meterRegistry);
+  }
+
+  /**
+   * Returns the current snapshot, loading it from the database if it has not been loaded yet.
+   *
+   * @return The current snapshot
+   */
+  JobAdSnapshot getSnapshot() {
+    JobAdSnapshot current = snapshot;
+    if (current != null) {
+      return current;
+    }
+    writeLock.lock();
+    try {
+      if (snapshot == null) {
+        rebuildTimer.record(this::load);
+        persist(snapshot);
+      }
+      return snapshot;
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * Applies the changes of an ingest run once they are committed.
+   * If the snapshot has not been loaded yet, the changes are included when it is loaded.
+   * Changes the snapshot already includes, as it was loaded after they were committed, are skipped,
+   * as patching the weekly history adds their counts again.
+   * Runs before the other listeners, so they see the patched statistics.
+   *
+   * @param event The changes of the ingest run
+   */
+  @Order(Ordered.HIGHEST_PRECEDENCE)
+  @TransactionalEventListener
+  public void onJobAdsChanged(JobAdsChangedEvent event) {
+    long committedRevision = event.changes().getRevision();
+    writeLock.lock();
+    try {
+      if (snapshot != null && !includes(committedRevision)) {
+        snapshot = snapshot.patch(event.changes());
+        applied(committedRevision);
+        persist(snapshot);
+      }
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * Restores the snapshot from the snapshot file, if there is one.
+   * A file that cannot be read, was written in another format,
+   * or was built from another revision of the data than the database has, is ignored,
+   * and the snapshot is loaded from the database when first needed.
+   */
+  @PostConstruct
+  void restore() {
+    if (snapshotFile == null || !Files.exists(snapshotFile)) {
+      return;
+    }
+    long start = System.nanoTime();
+    try (
+      DataInputStream in = new DataInputStream(
+        new BufferedInputStream(Files.newInputStream(snapshotFile))
+      )
+    ) {
+      JobAdSnapshot restored = JobAdSnapshot.readFrom(in);
+      long restoredRevision = in.readLong();
+      long currentRevision = revisionRepository.findCurrent();
+      if (restoredRevision != currentRevision) {
+        logger.info(
+          "Ignoring statistics snapshot file {} of revision {}, as the database is at revision {}",
+          snapshotFile,
+          restoredRevision,
+          currentRevision
+        );
+        return;
+      }
+      writeLock.lock();
+      try {
+        if (snapshot == null) {
+          snapshot = restored;
+          revision = restoredRevision;
+          laterRevisions.clear();
+        }
+      } finally {
+        writeLock.unlock();
+      }
+      logger.info(
+        "Restored statistics snapshot of {} job ads from {} in {} ms",
+        restored.size(),
+        snapshotFile,
+        (System.nanoTime() - start) / 1_000_000
+      );
+    } catch (IOException | DataAccessException e) {
+      logger.warn(
+        "Ignoring statistics snapshot file {}: {}",
+        snapshotFile,
+        e.getMessage()
+      );
+    }
+  }
+
+  /**
+   * Writes the current snapshot to the snapshot file on shutdown.
+   */
+  @PreDestroy
+  void persist() {
+    writeLock.lock();
+    try {
+      if (snapshot != null) {
+        persist(snapshot);
+      }
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * Writes a snapshot to the snapshot file, if one is configured.
+   * The snapshot is written to a temporary file that then replaces the snapshot file,
+   * so a crash while writing never leaves a partial snapshot file behind.
+   * Failures are logged, as the snapshot in memory is still up to date.
+   */
+  private void persist(JobAdSnapshot toPersist) {
+    if (snapshotFile == null) {
+      return;
+    }
+    Path tempFile = snapshotFile.resolveSibling(
+      snapshotFile.getFileName() + ".tmp"
+    );
+    try {
+      Path directory = snapshotFile.toAbsolutePath().getParent();
+      if (directory != null) {
+        Files.createDirectories(directory);
+      }
+      try (
+        DataOutputStream out = new DataOutputStream(
+          new BufferedOutputStream(Files.newOutputStream(tempFile))
+        )
+      ) {
+        toPersist.writeTo(out);
+        out.writeLong(revision);
+      }
+      Files.move(
+        tempFile,
+        snapshotFile,
+        StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE
+      );
+      logger.debug(
+        "Wrote statistics snapshot of {} job ads to {}",
+        toPersist.size(),
+        snapshotFile
+      );
+    } catch (IOException e) {
+      logger.warn(
+        "Failed to write statistics snapshot file {}",
+        snapshotFile,
+        e
+      );
+    }
+  }
+
+  private boolean includes(long committedRevision) {
+    return (
+      committedRevision <= revision ||
+      laterRevisions.contains(committedRevision)
+    );
+  }
+
+  /**
+   * Records that the snapshot includes the changes committed as a revision.
+   */
+  private void applied(long committedRevision) {
+    if (committedRevision > revision) {
+      laterRevisions.add(committedRevision);
+    }
+    while (laterRevisions.remove(revision + 1)) {
+      revision++;
+    }
+  }
+
+  /**
+   * Loads the snapshot and the revision of its data in one consistent read of the database.
+   */
+  private void load() {
+    JobAdSnapshot loaded = loadTransaction.execute(status -> {
+      JobAdSnapshot.Builder builder = new JobAdSnapshot.Builder(1024);
+      try (Stream<Object[]> rows = jobAdRepository.streamSnapshotRows()) {
+        rows.forEach(row ->
+          builder.add(
+            JobAdSnapshot.Row.of(
+              (String) row[0],
+              (LocalDateTime) row[1],
+              (LocalDateTime) row[2],
+              (Long) row[3],
+              (String) row[4],
+              (String) row[5],
+              (String) row[6],
+              (String) row[7]
+            )
+          )
+        );
+      }
+      List<PeriodStatistics> history = new ArrayList<>();
+      historyRepository
+        .findAll()
+        .forEach(week -> history.add(week.toPeriodStatistics()));
+      revision = revisionRepository.findCurrent();
+      laterRevisions.clear();
+      return builder.history(WeeklyHistory.of(history)).build();
+    });
+    snapshot = loaded;
+    logger.info("Loaded statistics snapshot of {} job ads", loaded.size());
+  }
+
+  private int currentSize() {
+    JobAdSnapshot current = snapshot;
+    return current == null ? 0 : current.size();
+  }
+
+  private int currentActiveCount() {
+    JobAdSnapshot current = snapshot;
+    return current == null
+      ? 0
+      : current.countActive(LocalDate.now(ZoneOffset.UTC));
+  }
+}
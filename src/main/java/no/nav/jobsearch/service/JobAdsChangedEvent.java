@@ -0,0 +1,9 @@
+package no.nav.jobsearch.service;
+
+/**
+ * Published by {@link FeedService} when an ingest run has stored or removed job ads.
+ * Listeners that should only see committed changes use a transactional event listener.
+ *
+ * @param changes The stored and removed job ads
+ */
+public record JobAdsChangedEvent(JobAdChanges changes) {}
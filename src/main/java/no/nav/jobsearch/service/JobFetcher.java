@@ -1,42 +1,276 @@
 package no.nav.jobsearch.service;
 
+import jakarta.annotation.PreDestroy;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
 import no.nav.jobsearch.model.JobAdDto;
 import no.nav.jobsearch.model.JobFeedResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 
 @Component
-public class JobFetcher {
+@ConditionalOnProperty(
+  name = "feed.client",
+  havingValue = "blocking",
+  matchIfMissing = true
+)
+public class JobFetcher implements FeedFetcher {
 
   private static final Logger logger = LoggerFactory.getLogger(
     JobFetcher.class
   );
 
+  /**
+   * Marks the end of a time slice in the queue of fetched pages, compared by identity.
+   */
+  private static final List<JobAdDto> END_OF_SLICE = new ArrayList<>();
+
   private final JobFetcherWithRetry jobFetcherWithRetry;
 
-  public JobFetcher(JobFetcherWithRetry jobFetcherWithRetry) {
+  private final FeedCircuitBreaker circuitBreaker;
+
+  private final int fetchConcurrency;
+
+  private final ExecutorService fetchExecutor;
+
+  private final int fetchShards;
+
+  private final ExecutorService shardExecutor;
+
+  public JobFetcher(
+    JobFetcherWithRetry jobFetcherWithRetry,
+    FeedCircuitBreaker circuitBreaker,
+    int fetchConcurrency,
+    boolean virtualThreads
+  ) {
+    this(
+      jobFetcherWithRetry,
+      circuitBreaker,
+      fetchConcurrency,
+      1,
+      virtualThreads
+    );
+  }
+
+  /**
+   * Creates a job fetcher.
+   * With a fetch concurrency of 1 (the default) all pages are fetched one by one on the calling thread.
+   * With a higher fetch concurrency, up to that many pages of the same date range are requested concurrently,
+   * on virtual threads if virtual threads are enabled, and on a fixed pool of platform threads otherwise.
+   * The fetched pages are always handed to the data batch handler in page order on the calling thread.
+   * With more than one fetch shard, a full refresh fetches that many time slices concurrently,
+   * each on a thread of its own, and each slice with up to the fetch concurrency of pages in flight.
+   *
+   * @param jobFetcherWithRetry The fetcher for single pages
+   * @param circuitBreaker The circuit breaker guarding the feed
+   * @param fetchConcurrency The maximum number of pages of a date range requested concurrently
+   * @param fetchShards The number of time slices a full refresh is split into
+   * @param virtualThreads Whether to fetch pages on virtual threads
+   */
+  @Autowired
+  public JobFetcher(
+    JobFetcherWithRetry jobFetcherWithRetry,
+    FeedCircuitBreaker circuitBreaker,
+    @Value("${feed.fetch.concurrency:1}") int fetchConcurrency,
+    @Value("${feed.fetch.shards:1}") int fetchShards,
+    @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads
+  ) {
     this.jobFetcherWithRetry = jobFetcherWithRetry;
+    this.circuitBreaker = circuitBreaker;
+    this.fetchConcurrency = fetchConcurrency;
+    this.fetchShards = fetchShards;
+    this.fetchExecutor =
+      fetchConcurrency <= 1
+        ? null
+        : virtualThreads
+          ? Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("feed-fetch-", 0).factory()
+          )
+          : Executors.newFixedThreadPool(
+            fetchConcurrency,
+            Thread.ofPlatform().name("feed-fetch-", 0).daemon().factory()
+          );
+    // The slices get their own threads, as they wait for the pages they request from the fetch executor
+    this.shardExecutor =
+      fetchShards <= 1
+        ? null
+        : virtualThreads
+          ? Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("feed-shard-", 0).factory()
+          )
+          : Executors.newFixedThreadPool(
+            fetchShards,
+            Thread.ofPlatform().name("feed-shard-", 0).daemon().factory()
+          );
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    if (fetchExecutor != null) {
+      fetchExecutor.shutdownNow();
+    }
+    if (shardExecutor != null) {
+      shardExecutor.shutdownNow();
+    }
+  }
+
+  /**
+   * Fetches all jobs of a full refresh.
+   * With more than one fetch shard, the date range is split into that many time slices,
+   * which are fetched concurrently, each with its own cursor.
+   * The pages of all slices are handed to the data batch handler on the calling thread, in page order within each slice,
+   * through a bounded queue, so the slices wait for the handler rather than buffering the feed in memory.
+   * If a slice fails, the other slices are cancelled and the failure is rethrown, so the caller
+   * never sees a partial refresh as complete.
+   *
+   * @param category The feed category, or {@link FeedFetcher#ALL_CATEGORIES} for the whole feed
+   * @param now The current date and time
+   * @param oldestUpdatedDate The oldest updated date to fetch jobs from
+   * @param newestUpdatedDate The newest updated date to fetch jobs from
+   * @param dataBatchHandler The handler for processing the fetched data batch
+   */
+  @Override
+  public void fetchAllJobs(
+    String category,
+    LocalDateTime now,
+    LocalDateTime oldestUpdatedDate,
+    LocalDateTime newestUpdatedDate,
+    Consumer<List<JobAdDto>> dataBatchHandler
+  ) {
+    List<TimeSlice> slices = TimeSlice.split(
+      oldestUpdatedDate,
+      newestUpdatedDate,
+      fetchShards
+    );
+    if (shardExecutor == null || slices.size() <= 1) {
+      fetchJobs(
+        category,
+        now,
+        oldestUpdatedDate,
+        newestUpdatedDate,
+        dataBatchHandler
+      );
+      return;
+    }
+
+    BlockingQueue<List<JobAdDto>> pages = new ArrayBlockingQueue<>(
+      2 * slices.size()
+    );
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    List<Future<?>> shards = new ArrayList<>();
+    for (TimeSlice slice : slices) {
+      shards.add(
+        shardExecutor.submit(() -> {
+          try {
+            fetchJobs(
+              category,
+              now,
+              slice.oldest(),
+              slice.newest(),
+              page -> put(pages, page)
+            );
+          } catch (CancellationException e) {
+            return;
+          } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+          } finally {
+            // Also ends a failed slice, so the handler thread never waits for it.
+            // A cancelled slice is interrupted, and gives up on a full queue right away
+            put(pages, END_OF_SLICE);
+          }
+        })
+      );
+    }
+
+    try {
+      int remainingSlices = slices.size();
+      while (remainingSlices > 0) {
+        List<JobAdDto> page = take(pages);
+        if (failure.get() != null) {
+          throw rethrow(failure.get());
+        }
+        if (page == END_OF_SLICE) {
+          remainingSlices--;
+        } else {
+          dataBatchHandler.accept(page);
+        }
+      }
+    } finally {
+      shards.forEach(shard -> shard.cancel(true));
+    }
+  }
+
+  private static RuntimeException rethrow(Throwable failure) {
+    if (failure instanceof Error error) {
+      throw error;
+    }
+    if (failure instanceof RuntimeException e) {
+      return e;
+    }
+    return new IllegalStateException("Fetching of time slice failed", failure);
+  }
+
+  private static void put(
+    BlockingQueue<List<JobAdDto>> pages,
+    List<JobAdDto> page
+  ) {
+    try {
+      pages.put(page);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CancellationException("Fetching of time slice cancelled");
+    }
+  }
+
+  private static List<JobAdDto> take(BlockingQueue<List<JobAdDto>> pages) {
+    try {
+      return pages.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(
+        "Interrupted while waiting for the feed",
+        e
+      );
+    }
   }
 
   /**
    * Fetches jobs from the API and processes them in batches.
    * The method fetches jobs from the API until no more jobs are found
    * or the newest updated date is before the oldest updated date.
+   * Fails fast with a {@link FeedUnavailableException} while the feed circuit breaker is open.
    *
+   * @param category The feed category, or {@link FeedFetcher#ALL_CATEGORIES} for the whole feed
    * @param now The current date and time
    * @param oldestUpdatedDate The oldest updated date to fetch jobs from
    * @param newestUpdatedDate The newest updated date to fetch jobs from
    * @param dataBatchHandler The handler for processing the fetched data batch
    */
+  @Override
   public void fetchJobs(
+    String category,
     LocalDateTime now,
     LocalDateTime oldestUpdatedDate,
     LocalDateTime newestUpdatedDate,
@@ -45,13 +279,14 @@ public class JobFetcher {
     while (
       newestUpdatedDate == null || newestUpdatedDate.isAfter(oldestUpdatedDate)
     ) {
-      ResponseEntity<JobFeedResponse> response =
-        jobFetcherWithRetry.fetchDataWithRetry(
-          now,
-          oldestUpdatedDate,
-          newestUpdatedDate,
-          0
-        );
+      LocalDateTime rangeNewestUpdatedDate = newestUpdatedDate;
+      ResponseEntity<JobFeedResponse> response = fetchPage(
+        category,
+        now,
+        oldestUpdatedDate,
+        rangeNewestUpdatedDate,
+        0
+      );
 
       if (!isValidResponse(response)) {
         logger.error(
@@ -73,26 +308,29 @@ public class JobFetcher {
       int totalPages = jobFeedResponse.getTotalPages();
       int currentPage = jobFeedResponse.getPageNumber();
 
-      LocalDateTime finalNewestUpdatedDate = newestUpdatedDate;
-      newestUpdatedDate =
-        IntStream
-          .range(currentPage + 1, totalPages)
-          .mapToObj(pageNumber ->
-            jobFetcherWithRetry.fetchDataWithRetry(
-              now,
-              oldestUpdatedDate,
-              finalNewestUpdatedDate,
-              pageNumber
+      // The remaining pages are requested with the same date range as the first page,
+      // as narrowing the range to the cursor would shift the pages by the ads already fetched
+      try (
+        Stream<ResponseEntity<JobFeedResponse>> pages = fetchPages(
+          category,
+          now,
+          oldestUpdatedDate,
+          rangeNewestUpdatedDate,
+          currentPage + 1,
+          totalPages
+        )
+      ) {
+        newestUpdatedDate =
+          pages
+            .filter(this::isValidResponse)
+            .map(ResponseEntity::getBody)
+            .map(pageJobFeedResponse ->
+              handleResponse(pageJobFeedResponse, dataBatchHandler)
             )
-          )
-          .filter(this::isValidResponse)
-          .map(ResponseEntity::getBody)
-          .map(pageJobFeedResponse ->
-            handleResponse(pageJobFeedResponse, dataBatchHandler)
-          )
-          .takeWhile(Objects::nonNull)
-          .reduce((a, b) -> b) // Get the last non-null newestUpdatedDate
-          .orElse(null);
+            .takeWhile(Objects::nonNull)
+            .reduce((a, b) -> b) // Get the last non-null newestUpdatedDate
+            .orElse(null);
+      }
 
       if (
         newestUpdatedDate == null ||
@@ -108,6 +346,123 @@ public class JobFetcher {
     }
   }
 
+  /**
+   * Lazily fetches the given range of pages, in page order.
+   * If the fetch concurrency is higher than 1, the following pages are requested ahead
+   * while the current page is being handled. Pages requested ahead are cancelled when the stream is closed.
+   *
+   * @param category The feed category
+   * @param now The current date and time
+   * @param oldestUpdatedDate The oldest updated date
+   * @param newestUpdatedDate The newest updated date
+   * @param fromPage The first page number, inclusive
+   * @param toPage The last page number, exclusive
+   * @return The stream of responses, which must be closed after use
+   */
+  private Stream<ResponseEntity<JobFeedResponse>> fetchPages(
+    String category,
+    LocalDateTime now,
+    LocalDateTime oldestUpdatedDate,
+    LocalDateTime newestUpdatedDate,
+    int fromPage,
+    int toPage
+  ) {
+    if (fetchExecutor == null) {
+      return IntStream
+        .range(fromPage, toPage)
+        .mapToObj(pageNumber ->
+          fetchPage(
+            category,
+            now,
+            oldestUpdatedDate,
+            newestUpdatedDate,
+            pageNumber
+          )
+        );
+    }
+
+    Deque<CompletableFuture<ResponseEntity<JobFeedResponse>>> inFlight =
+      new ArrayDeque<>();
+    int[] nextPage = { fromPage };
+    return IntStream
+      .range(fromPage, toPage)
+      .mapToObj(pageNumber -> {
+        while (inFlight.size() < fetchConcurrency && nextPage[0] < toPage) {
+          int page = nextPage[0]++;
+          inFlight.add(
+            CompletableFuture.supplyAsync(
+              () ->
+                fetchPage(
+                  category,
+                  now,
+                  oldestUpdatedDate,
+                  newestUpdatedDate,
+                  page
+                ),
+              fetchExecutor
+            )
+          );
+        }
+        return join(inFlight.poll());
+      })
+      .onClose(() -> inFlight.forEach(future -> future.cancel(true)));
+  }
+
+  private static <T> T join(CompletableFuture<T> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Fetches a page through the feed circuit breaker.
+   * While the breaker is half-open the page is fetched with a single attempt,
+   * so that probing a feed that is still down does not wait for the retry backoff.
+   *
+   * @param category The feed category
+   * @param now The current date and time
+   * @param oldestUpdatedDate The oldest updated date
+   * @param newestUpdatedDate The newest updated date
+   * @param pageNumber The page number
+   * @return The response entity containing the fetched data
+   */
+  private ResponseEntity<JobFeedResponse> fetchPage(
+    String category,
+    LocalDateTime now,
+    LocalDateTime oldestUpdatedDate,
+    LocalDateTime newestUpdatedDate,
+    int pageNumber
+  ) {
+    circuitBreaker.acquirePermission();
+    try {
+      ResponseEntity<JobFeedResponse> response = circuitBreaker.isHalfOpen()
+        ? jobFetcherWithRetry.fetchData(
+          category,
+          now,
+          oldestUpdatedDate,
+          newestUpdatedDate,
+          pageNumber
+        )
+        : jobFetcherWithRetry.fetchDataWithRetry(
+          category,
+          now,
+          oldestUpdatedDate,
+          newestUpdatedDate,
+          pageNumber
+        );
+      circuitBreaker.onSuccess();
+      return response;
+    } catch (RuntimeException e) {
+      circuitBreaker.onFailure();
+      throw e;
+    }
+  }
+
   private boolean isValidResponse(ResponseEntity<JobFeedResponse> response) {
     return (
       response.getStatusCode().is2xxSuccessful() && response.getBody() != null
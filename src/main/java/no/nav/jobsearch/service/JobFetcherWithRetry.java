@@ -1,17 +1,24 @@
 package no.nav.jobsearch.service;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
 import no.nav.jobsearch.model.JobFeedResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 import org.springframework.retry.annotation.Backoff;
+import org.springframework.retry.RetryContext;
 import org.springframework.retry.annotation.Retryable;
+import org.springframework.retry.support.RetrySynchronizationManager;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.ResourceAccessException;
@@ -35,8 +42,72 @@ public class JobFetcherWithRetry {
 
   private final RestTemplate restTemplate;
 
-  public JobFetcherWithRetry(RestTemplate restTemplate) {
+  private final FeedPageArchive pageArchive;
+
+  private final FeedRateLimiter rateLimiter;
+
+  private final Timer pageFetchSuccessTimer;
+
+  private final Timer pageFetchFailureTimer;
+
+  private final Counter retryCounter;
+
+  public JobFetcherWithRetry(
+    RestTemplate restTemplate,
+    MeterRegistry meterRegistry
+  ) {
+    this(restTemplate, meterRegistry, null);
+  }
+
+  public JobFetcherWithRetry(
+    RestTemplate restTemplate,
+    MeterRegistry meterRegistry,
+    FeedPageArchive pageArchive
+  ) {
+    this(restTemplate, meterRegistry, pageArchive, null);
+  }
+
+  /**
+   * Creates a fetcher that appends every fetched page to the page archive,
+   * and paces its requests with the global rate limit of the feed.
+   *
+   * @param restTemplate The client of the feed
+   * @param meterRegistry The registry of the fetch metrics
+   * @param pageArchive The page archive, or {@code null} to not archive the pages
+   * @param rateLimiter The rate limit of the feed, or {@code null} to not limit the requests
+   */
+  @Autowired
+  public JobFetcherWithRetry(
+    RestTemplate restTemplate,
+    MeterRegistry meterRegistry,
+    FeedPageArchive pageArchive,
+    FeedRateLimiter rateLimiter
+  ) {
     this.restTemplate = restTemplate;
+    this.pageArchive = pageArchive;
+    this.rateLimiter = rateLimiter;
+    this.pageFetchSuccessTimer = pageFetchTimer(meterRegistry, "success");
+    this.pageFetchFailureTimer = pageFetchTimer(meterRegistry, "failure");
+    this.retryCounter = retryCounter(meterRegistry);
+  }
+
+  static Counter retryCounter(MeterRegistry meterRegistry) {
+    return Counter
+      .builder("feed.fetch.retries")
+      .description("Number of retried page fetches from the job feed")
+      .register(meterRegistry);
+  }
+
+  static Timer pageFetchTimer(
+    MeterRegistry meterRegistry,
+    String outcome
+  ) {
+    return Timer
+      .builder("feed.fetch.page")
+      .description("Latency of fetching a single page from the job feed")
+      .tag("outcome", outcome)
+      .publishPercentileHistogram()
+      .register(meterRegistry);
   }
 
   /**
@@ -45,6 +116,7 @@ public class JobFetcherWithRetry {
    * The method retries fetching data up to the maximum number of attempts defined by the configuration.
    * The method uses exponential backoff with a multiplier to delay retries.
    *
+   * @param category The feed category, or {@link FeedFetcher#ALL_CATEGORIES} for the whole feed
    * @param now The current date and time
    * @param oldestUpdatedDate The oldest updated date
    * @param newestUpdatedDate The newest updated date
@@ -62,26 +134,68 @@ public class JobFetcherWithRetry {
     )
   )
   public ResponseEntity<JobFeedResponse> fetchDataWithRetry(
+    String category,
+    LocalDateTime now,
+    LocalDateTime oldestUpdatedDate,
+    LocalDateTime newestUpdatedDate,
+    int pageNumber
+  ) {
+    return fetchData(
+      category,
+      now,
+      oldestUpdatedDate,
+      newestUpdatedDate,
+      pageNumber
+    );
+  }
+
+  /**
+   * Fetches data from the API with a single attempt, after waiting for the rate limit of the feed.
+   * Used for the probe calls of a half-open circuit breaker, which should not wait for retries.
+   *
+   * @param category The feed category, or {@link FeedFetcher#ALL_CATEGORIES} for the whole feed
+   * @param now The current date and time
+   * @param oldestUpdatedDate The oldest updated date
+   * @param newestUpdatedDate The newest updated date
+   * @param pageNumber The page number
+   * @return The response entity containing the fetched data
+   */
+  public ResponseEntity<JobFeedResponse> fetchData(
+    String category,
     LocalDateTime now,
     LocalDateTime oldestUpdatedDate,
     LocalDateTime newestUpdatedDate,
     int pageNumber
   ) {
     String url = buildApiUrl(
+      category,
       now,
       oldestUpdatedDate,
       newestUpdatedDate,
       pageNumber
     );
 
+    RetryContext retryContext = RetrySynchronizationManager.getContext();
+    if (retryContext != null && retryContext.getRetryCount() > 0) {
+      retryCounter.increment();
+    }
+    if (rateLimiter != null) {
+      rateLimiter.acquire();
+    }
+
+    long start = System.nanoTime();
+    Timer timer = pageFetchFailureTimer;
     try {
-      logger.info("Fetching data from URL: {}", url);
-      return restTemplate.exchange(
+      logger.debug("Fetching data from URL: {}", url);
+      ResponseEntity<JobFeedResponse> response = restTemplate.exchange(
         url,
         HttpMethod.GET,
         getHttpEntity(),
         JobFeedResponse.class
       );
+      timer = pageFetchSuccessTimer;
+      archive(response.getBody());
+      return response;
     } catch (ResourceAccessException e) {
       logger.error("Timeout occurred while fetching data from URL: {}", url, e);
       throw e;
@@ -99,9 +213,31 @@ public class JobFetcherWithRetry {
         e
       );
       throw new RuntimeException("Failed to fetch data after retries", e);
+    } finally {
+      timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
     }
   }
 
+  /**
+   * Appends a fetched page to the page archive, if there is one, also for a page fetched without this fetcher.
+   *
+   * @param page The page
+   */
+  void archive(JobFeedResponse page) {
+    if (pageArchive != null) {
+      pageArchive.append(page);
+    }
+  }
+
+  /**
+   * Reserves a request slot of the rate limit of the feed, for a request made without this fetcher.
+   *
+   * @return The number of nanoseconds to wait before making the request
+   */
+  long reserveRequest() {
+    return rateLimiter != null ? rateLimiter.reserve() : 0;
+  }
+
   /**
    * Creates an HTTP entity with the authorization header.
    *
@@ -115,15 +251,17 @@ public class JobFetcherWithRetry {
   }
 
   /**
-   * Builds the API URL with the date range appended.
+   * Builds the API URL with the category and date range appended.
    *
+   * @param category The feed category, or {@link FeedFetcher#ALL_CATEGORIES} to not filter by category
    * @param now The current date and time
    * @param oldestUpdatedDate The oldest updated date
    * @param newestUpdatedDate The newest updated date
    * @param pageNumber The page number
-   * @return The API URL with the date range appended
+   * @return The API URL with the category and date range appended
    */
   public String buildApiUrl(
+    String category,
     LocalDateTime now,
     LocalDateTime oldestUpdatedDate,
     LocalDateTime newestUpdatedDate,
@@ -133,7 +271,9 @@ public class JobFetcherWithRetry {
       "yyyy-MM-dd'T'HH:mm:ss"
     );
 
-    String category = "IT";
+    String categoryArg = FeedFetcher.ALL_CATEGORIES.equals(category)
+      ? ""
+      : "category=" + category + "&";
     String size = String.valueOf(batchSize);
     String published =
       "(" +
@@ -152,9 +292,9 @@ public class JobFetcherWithRetry {
 
     return (
       apiUrl +
-      "?category=" +
-      category +
-      "&size=" +
+      "?" +
+      categoryArg +
+      "size=" +
       size +
       "&published=" +
       published +
@@ -0,0 +1,261 @@
+package no.nav.jobsearch.service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.regex.Pattern;
+import no.nav.jobsearch.model.Granularity;
+import no.nav.jobsearch.model.KeywordStatistics;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.roaringbitmap.RoaringBitmapWriter;
+
+/**
+ * Inverted index of the terms in the titles and descriptions of the job ads, for ad-hoc keyword queries.
+ * Every job ad gets a dense int ordinal, and every term maps to a compressed bitmap of the ordinals of the job ads
+ * containing it. The job ads published in each week have a bitmap too, so a query is answered by intersecting bitmaps.
+ * <p>
+ * Changes are applied by {@link #apply}: a stored job ad gets a new ordinal, and the ordinal of its previous version
+ * is only dropped from the bitmap of the live job ads, so the term bitmaps are only ever added to.
+ * Once there are more dead than live ordinals, the index is compacted by renumbering the live ordinals.
+ * The index is not thread-safe; {@link KeywordIndexService} guards it with a read-write lock.
+ */
+class KeywordIndex {
+
+  private static final Pattern TAG = Pattern.compile("<[^>]*>");
+
+  // Keeps the + and # of terms like c++ and c#
+  private static final Pattern SEPARATOR = Pattern.compile(
+    "[^\\p{L}\\p{N}+#]+"
+  );
+
+  private static final RoaringBitmap NONE = new RoaringBitmap();
+
+  private final Map<String, RoaringBitmap> postings = new HashMap<>();
+
+  // The ordinals of the job ads published in each week, by the epoch day of the Monday
+  private final NavigableMap<Integer, RoaringBitmap> weeks = new TreeMap<>();
+
+  private final Map<UUID, Integer> ordinals = new HashMap<>();
+
+  private RoaringBitmap live = new RoaringBitmap();
+
+  private int nextOrdinal;
+
+  /**
+   * Splits a text into its distinct terms: runs of letters and digits, in lower case.
+   * HTML tags are left out.
+   *
+   * @param text The text, may be {@code null}
+   * @return The terms of the text
+   */
+  static Set<String> terms(String text) {
+    if (text == null) {
+      return Set.of();
+    }
+    Set<String> terms = new HashSet<>();
+    String plainText = TAG.matcher(text).replaceAll(" ");
+    for (String term : SEPARATOR.split(plainText.toLowerCase(Locale.ROOT))) {
+      if (!term.isEmpty()) {
+        terms.add(term);
+      }
+    }
+    return terms;
+  }
+
+  /**
+   * The number of live job ads in the index.
+   */
+  int size() {
+    return ordinals.size();
+  }
+
+  /**
+   * The number of distinct terms in the index, including terms only found in removed job ads.
+   */
+  int termCount() {
+    return postings.size();
+  }
+
+  /**
+   * The ordinals of the job ads containing a term, including removed job ads. Must not be modified.
+   *
+   * @param term A term in lower case
+   * @return The ordinals
+   */
+  RoaringBitmap postings(String term) {
+    return postings.getOrDefault(term, NONE);
+  }
+
+  /**
+   * The ordinals of the live job ads. Must not be modified.
+   */
+  RoaringBitmap live() {
+    return live;
+  }
+
+  /**
+   * Counts the job ads among some ordinals per week of publication. Weeks without job ads are left out.
+   *
+   * @param ordinals The ordinals of the job ads to count
+   * @param from The first day of the window, a Monday
+   * @param end The first day after the window, a Monday
+   * @return The counts per week, ordered by week
+   */
+  List<KeywordStatistics> weekly(
+    RoaringBitmap ordinals,
+    LocalDate from,
+    LocalDate end
+  ) {
+    List<KeywordStatistics> statistics = new ArrayList<>();
+    weeks
+      .subMap((int) from.toEpochDay(), (int) end.toEpochDay())
+      .forEach((weekDay, week) -> {
+        int count = RoaringBitmap.andCardinality(ordinals, week);
+        if (count > 0) {
+          LocalDate weekStart = LocalDate.ofEpochDay(weekDay);
+          statistics.add(
+            new KeywordStatistics(weekStart, weekStart.plusWeeks(1), count)
+          );
+        }
+      });
+    return statistics;
+  }
+
+  /**
+   * Applies the job ads stored and removed during an ingest run.
+   *
+   * @param delta The changes
+   */
+  void apply(Delta delta) {
+    int base = nextOrdinal;
+    delta.postings.forEach((term, positions) ->
+      postings.merge(
+        term,
+        RoaringBitmap.addOffset(positions, base),
+        (current, added) -> {
+          current.or(added);
+          return current;
+        }
+      )
+    );
+    delta.removed.forEach(uuid -> kill(ordinals.remove(uuid)));
+    delta.stored.forEach((uuid, position) -> {
+      int ordinal = base + position;
+      kill(ordinals.put(uuid, ordinal));
+      live.add(ordinal);
+      int publishedDay = delta.publishedDays[position];
+      if (publishedDay != JobAdSnapshot.NO_DATE) {
+        weeks
+          .computeIfAbsent(weekStart(publishedDay), day -> new RoaringBitmap())
+          .add(ordinal);
+      }
+    });
+    nextOrdinal = base + delta.size;
+
+    if (nextOrdinal - ordinals.size() > ordinals.size()) {
+      compact();
+    }
+  }
+
+  private void kill(Integer ordinal) {
+    if (ordinal != null) {
+      live.remove(ordinal);
+    }
+  }
+
+  /**
+   * Renumbers the live ordinals from 0, dropping the ordinals of removed job ads and terms only they contained.
+   * The renumbering keeps the order of the ordinals, so the bitmaps are rewritten in a single ordered pass.
+   */
+  private void compact() {
+    int[] renumbered = new int[nextOrdinal];
+    int next = 0;
+    IntIterator liveOrdinals = live.getIntIterator();
+    while (liveOrdinals.hasNext()) {
+      renumbered[liveOrdinals.next()] = next++;
+    }
+
+    postings.replaceAll((term, bitmap) -> renumber(bitmap, renumbered));
+    postings.values().removeIf(RoaringBitmap::isEmpty);
+    weeks.replaceAll((weekDay, bitmap) -> renumber(bitmap, renumbered));
+    weeks.values().removeIf(RoaringBitmap::isEmpty);
+    ordinals.replaceAll((uuid, ordinal) -> renumbered[ordinal]);
+    live = RoaringBitmap.bitmapOfRange(0, next);
+    nextOrdinal = next;
+  }
+
+  private RoaringBitmap renumber(RoaringBitmap bitmap, int[] renumbered) {
+    RoaringBitmapWriter<RoaringBitmap> writer = RoaringBitmapWriter
+      .writer()
+      .get();
+    IntIterator liveOrdinals = RoaringBitmap.and(bitmap, live).getIntIterator();
+    while (liveOrdinals.hasNext()) {
+      writer.add(renumbered[liveOrdinals.next()]);
+    }
+    RoaringBitmap result = writer.get();
+    result.runOptimize();
+    return result;
+  }
+
+  private static int weekStart(int epochDay) {
+    return (int) Granularity.WEEK
+      .periodStart(LocalDate.ofEpochDay(epochDay))
+      .toEpochDay();
+  }
+
+  /**
+   * The terms of the job ads stored and removed during an ingest run, collected before they are applied to the index.
+   * The stored job ads are numbered by their position in the run, and each term maps to a bitmap of positions,
+   * which the index shifts to new ordinals.
+   * If a job ad is both stored and removed during the run, the last change wins.
+   */
+  static class Delta {
+
+    private final Map<String, RoaringBitmap> postings = new HashMap<>();
+    private final Map<UUID, Integer> stored = new LinkedHashMap<>();
+    private final Set<UUID> removed = new HashSet<>();
+    private int[] publishedDays = new int[16];
+    private int size;
+
+    /**
+     * Adds a stored job ad.
+     *
+     * @param uuid The key of the job ad
+     * @param publishedDay The published epoch day, or {@link JobAdSnapshot#NO_DATE}
+     * @param texts The texts to index, e.g. the title and the description; may contain {@code null}
+     */
+    void stored(UUID uuid, int publishedDay, String... texts) {
+      int position = size++;
+      if (position == publishedDays.length) {
+        publishedDays =
+          Arrays.copyOf(publishedDays, position + (position >> 1));
+      }
+      publishedDays[position] = publishedDay;
+      for (String text : texts) {
+        for (String term : terms(text)) {
+          postings
+            .computeIfAbsent(term, t -> new RoaringBitmap())
+            .add(position);
+        }
+      }
+      removed.remove(uuid);
+      stored.put(uuid, position);
+    }
+
+    void removed(UUID uuid) {
+      stored.remove(uuid);
+      removed.add(uuid);
+    }
+  }
+}
@@ -0,0 +1,144 @@
+package no.nav.jobsearch.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.LocalDateTime;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import no.nav.jobsearch.repository.JobAdRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Holds the {@link KeywordIndex}.
+ * The index is loaded from the titles and descriptions in the database when first queried,
+ * and updated with the changes of every committed ingest run, like the {@link JobAdSnapshot}.
+ * Unlike the snapshot, the index is updated in place, so queries take a read lock and the updates a write lock.
+ * Job ads stored with {@code description.storage=drop} are only indexed by their title, as of the next restart.
+ */
+@Service
+public class KeywordIndexService {
+
+  private static final Logger logger = LoggerFactory.getLogger(
+    KeywordIndexService.class
+  );
+
+  private final JobAdRepository jobAdRepository;
+
+  /**
+   * Loads from the primary rather than the replica, like the statistics snapshot,
+   * so the index holds every change committed before the events that patch it.
+   */
+  private final TransactionTemplate loadTransaction;
+
+  private final Timer loadTimer;
+
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+  private volatile KeywordIndex index;
+
+  public KeywordIndexService(
+    JobAdRepository jobAdRepository,
+    PlatformTransactionManager transactionManager,
+    MeterRegistry meterRegistry
+  ) {
+    this.jobAdRepository = jobAdRepository;
+    this.loadTransaction = new TransactionTemplate(transactionManager);
+    this.loadTimer =
+      Timer
+        .builder("stats.keywords.load")
+        .description("Duration of loading the keyword index from the database")
+        .register(meterRegistry);
+    Gauge
+      .builder("stats.keywords.terms", this, service -> service.termCount())
+      .description("Number of distinct terms in the keyword index")
+      .register(meterRegistry);
+  }
+
+  /**
+   * Runs a query against the index, loading the index from the database if it has not been loaded yet.
+   *
+   * @param query The query, which must not keep or modify the bitmaps of the index
+   * @return The result of the query
+   */
+  <T> T query(Function<KeywordIndex, T> query) {
+    if (index == null) {
+      load();
+    }
+    lock.readLock().lock();
+    try {
+      return query.apply(index);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Applies the changes of an ingest run once they are committed.
+   * If the index has not been loaded yet, the changes are included when it is loaded.
+   *
+   * @param event The changes of the ingest run
+   */
+  @TransactionalEventListener
+  public void onJobAdsChanged(JobAdsChangedEvent event) {
+    lock.writeLock().lock();
+    try {
+      if (index != null) {
+        index.apply(event.changes().getKeywords());
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private void load() {
+    lock.writeLock().lock();
+    try {
+      if (index == null) {
+        index = loadTimer.record(this::loadIndex);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private KeywordIndex loadIndex() {
+    KeywordIndex.Delta delta = loadTransaction.execute(status -> {
+      KeywordIndex.Delta rows = new KeywordIndex.Delta();
+      try (Stream<Object[]> stream = jobAdRepository.streamKeywordRows()) {
+        stream.forEach(row ->
+          rows.stored(
+            JobAdSnapshot.key((String) row[0]),
+            JobAdSnapshot.epochDay((LocalDateTime) row[1]),
+            (String) row[2],
+            (String) (row[3] != null ? row[3] : row[4])
+          )
+        );
+      }
+      return rows;
+    });
+    KeywordIndex loaded = new KeywordIndex();
+    loaded.apply(delta);
+    logger.info(
+      "Loaded keyword index of {} job ads with {} terms",
+      loaded.size(),
+      loaded.termCount()
+    );
+    return loaded;
+  }
+
+  private int termCount() {
+    lock.readLock().lock();
+    try {
+      return index == null ? 0 : index.termCount();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+}
@@ -0,0 +1,199 @@
+package no.nav.jobsearch.service;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.roaringbitmap.RoaringBitmap;
+
+/**
+ * A boolean keyword query, like {@code kotlin AND spring AND NOT android}, evaluated against a {@link KeywordIndex}.
+ * Keywords are matched as whole terms, ignoring case. The operators are {@code AND}, {@code OR} and {@code NOT}
+ * in upper case, and can be grouped with parentheses. Keywords without an operator between them must all match,
+ * and {@code AND} binds tighter than {@code OR}.
+ */
+sealed interface KeywordQuery {
+  /**
+   * Evaluates the query. The result may be a bitmap of the index, and must not be modified.
+   *
+   * @param index The index
+   * @return The ordinals of the matching job ads, which may include removed job ads
+   */
+  RoaringBitmap evaluate(KeywordIndex index);
+
+  /**
+   * Finds the live job ads matching the query.
+   *
+   * @param index The index
+   * @return The ordinals of the matching job ads
+   */
+  default RoaringBitmap matches(KeywordIndex index) {
+    return RoaringBitmap.and(evaluate(index), index.live());
+  }
+
+  /**
+   * Parses a query.
+   *
+   * @param query The query
+   * @return The parsed query
+   * @throws IllegalArgumentException if the query is empty or not well-formed
+   */
+  static KeywordQuery parse(String query) {
+    Parser parser = new Parser(query);
+    KeywordQuery parsed = parser.or();
+    if (parser.peek() != null) {
+      throw new IllegalArgumentException(
+        "Unexpected '" + parser.peek() + "' in query: " + query
+      );
+    }
+    return parsed;
+  }
+
+  record Term(String term) implements KeywordQuery {
+    @Override
+    public RoaringBitmap evaluate(KeywordIndex index) {
+      return index.postings(term);
+    }
+  }
+
+  record Not(KeywordQuery operand) implements KeywordQuery {
+    @Override
+    public RoaringBitmap evaluate(KeywordIndex index) {
+      return RoaringBitmap.andNot(index.live(), operand.evaluate(index));
+    }
+  }
+
+  record And(KeywordQuery left, KeywordQuery right) implements KeywordQuery {
+    @Override
+    public RoaringBitmap evaluate(KeywordIndex index) {
+      // Subtract a negated operand, rather than intersecting with its complement
+      if (right instanceof Not not) {
+        return RoaringBitmap.andNot(
+          left.evaluate(index),
+          not.operand().evaluate(index)
+        );
+      }
+      if (left instanceof Not not) {
+        return RoaringBitmap.andNot(
+          right.evaluate(index),
+          not.operand().evaluate(index)
+        );
+      }
+      return RoaringBitmap.and(left.evaluate(index), right.evaluate(index));
+    }
+  }
+
+  record Or(KeywordQuery left, KeywordQuery right) implements KeywordQuery {
+    @Override
+    public RoaringBitmap evaluate(KeywordIndex index) {
+      return RoaringBitmap.or(left.evaluate(index), right.evaluate(index));
+    }
+  }
+
+  /**
+   * Recursive descent parser of the query grammar:
+   * <pre>
+   * or   = and { "OR" and }
+   * and  = not { ["AND"] not }
+   * not  = "NOT" not | "(" or ")" | keyword
+   * </pre>
+   */
+  final class Parser {
+
+    private static final Pattern TOKEN = Pattern.compile("[()]|[^\\s()]+");
+
+    private final String query;
+    private final Iterator<String> tokens;
+    private String next;
+
+    private Parser(String query) {
+      this.query = query;
+      List<String> tokenList = new ArrayList<>();
+      Matcher matcher = TOKEN.matcher(query);
+      while (matcher.find()) {
+        tokenList.add(matcher.group());
+      }
+      this.tokens = tokenList.iterator();
+      this.next = tokens.hasNext() ? tokens.next() : null;
+    }
+
+    private String peek() {
+      return next;
+    }
+
+    private String take() {
+      String token = next;
+      next = tokens.hasNext() ? tokens.next() : null;
+      return token;
+    }
+
+    private KeywordQuery or() {
+      KeywordQuery query = and();
+      while ("OR".equals(peek())) {
+        take();
+        query = new Or(query, and());
+      }
+      return query;
+    }
+
+    private KeywordQuery and() {
+      KeywordQuery query = not();
+      while (peek() != null && !"OR".equals(peek()) && !")".equals(peek())) {
+        if ("AND".equals(peek())) {
+          take();
+        }
+        query = new And(query, not());
+      }
+      return query;
+    }
+
+    private KeywordQuery not() {
+      String token = take();
+      if (token == null) {
+        throw new IllegalArgumentException(
+          "Incomplete query: '" + query + "'"
+        );
+      }
+      switch (token) {
+        case "NOT" -> {
+          return new Not(not());
+        }
+        case "(" -> {
+          KeywordQuery query = or();
+          if (!")".equals(take())) {
+            throw new IllegalArgumentException(
+              "Missing ')' in query: " + this.query
+            );
+          }
+          return query;
+        }
+        case ")", "AND", "OR" -> throw new IllegalArgumentException(
+          "Expected a keyword but found '" + token + "' in query: " + query
+        );
+        default -> {
+          return keyword(token);
+        }
+      }
+    }
+
+    /**
+     * A keyword that the index splits into several terms, like {@code spring-boot}, matches job ads with all of them.
+     */
+    private KeywordQuery keyword(String keyword) {
+      Set<String> terms = KeywordIndex.terms(keyword);
+      if (terms.isEmpty()) {
+        throw new IllegalArgumentException(
+          "'" + keyword + "' is not a searchable keyword"
+        );
+      }
+      return terms
+        .stream()
+        .sorted()
+        .<KeywordQuery>map(Term::new)
+        .reduce(And::new)
+        .orElseThrow();
+    }
+  }
+}
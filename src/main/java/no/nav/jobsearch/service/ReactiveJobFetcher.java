@@ -0,0 +1,352 @@
+package no.nav.jobsearch.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.net.URI;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import no.nav.jobsearch.model.JobAdDto;
+import no.nav.jobsearch.model.JobFeedResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+/**
+ * Non-blocking alternative to {@link JobFetcher}, selected with {@code feed.client=reactive}.
+ * The pages of the feed are fetched with a {@link WebClient} and streamed as a {@link Flux},
+ * keeping up to {@code feed.fetch.concurrency} page requests in flight.
+ * The pages are handed to the data batch handler in page order on the calling thread,
+ * and new pages are only requested as the handler consumes them,
+ * so a slow database holds back the fetching instead of buffering the feed in memory.
+ * Follows the same cursor logic, retry configuration, circuit breaker, rate limit and page archive as {@link JobFetcher}.
+ */
+@Component
+@ConditionalOnProperty(name = "feed.client", havingValue = "reactive")
+public class ReactiveJobFetcher implements FeedFetcher {
+
+  private static final Logger logger = LoggerFactory.getLogger(
+    ReactiveJobFetcher.class
+  );
+
+  private final JobFetcherWithRetry jobFetcherWithRetry;
+
+  private final FeedCircuitBreaker circuitBreaker;
+
+  private final WebClient webClient;
+
+  private final int fetchConcurrency;
+
+  private final int fetchShards;
+
+  private final Retry retrySpec;
+
+  private final Timer pageFetchSuccessTimer;
+
+  private final Timer pageFetchFailureTimer;
+
+  public ReactiveJobFetcher(
+    JobFetcherWithRetry jobFetcherWithRetry,
+    FeedCircuitBreaker circuitBreaker,
+    WebClient feedWebClient,
+    MeterRegistry meterRegistry,
+    int fetchConcurrency,
+    int maxAttempts,
+    long retryDelay
+  ) {
+    this(
+      jobFetcherWithRetry,
+      circuitBreaker,
+      feedWebClient,
+      meterRegistry,
+      fetchConcurrency,
+      1,
+      maxAttempts,
+      retryDelay
+    );
+  }
+
+  @Autowired
+  public ReactiveJobFetcher(
+    JobFetcherWithRetry jobFetcherWithRetry,
+    FeedCircuitBreaker circuitBreaker,
+    WebClient feedWebClient,
+    MeterRegistry meterRegistry,
+    @Value("${feed.fetch.concurrency:1}") int fetchConcurrency,
+    @Value("${feed.fetch.shards:1}") int fetchShards,
+    @Value("${retry.maxAttempts:3}") int maxAttempts,
+    @Value("${retry.maxDelay:5000}") long retryDelay
+  ) {
+    this.jobFetcherWithRetry = jobFetcherWithRetry;
+    this.circuitBreaker = circuitBreaker;
+    this.webClient = feedWebClient;
+    this.fetchConcurrency = Math.max(1, fetchConcurrency);
+    this.fetchShards = Math.max(1, fetchShards);
+    this.pageFetchSuccessTimer =
+      JobFetcherWithRetry.pageFetchTimer(meterRegistry, "success");
+    this.pageFetchFailureTimer =
+      JobFetcherWithRetry.pageFetchTimer(meterRegistry, "failure");
+
+    Counter retryCounter = JobFetcherWithRetry.retryCounter(meterRegistry);
+    this.retrySpec =
+      Retry
+        .backoff(maxAttempts - 1, Duration.ofMillis(retryDelay))
+        .filter(ReactiveJobFetcher::isRetryable)
+        .doBeforeRetry(signal -> retryCounter.increment())
+        .onRetryExhaustedThrow((spec, signal) -> signal.failure());
+  }
+
+  /**
+   * Fetches jobs from the API and processes them in batches.
+   * Fails fast with a {@link FeedUnavailableException} while the feed circuit breaker is open.
+   *
+   * @param category The feed category, or {@link FeedFetcher#ALL_CATEGORIES} for the whole feed
+   * @param now The current date and time
+   * @param oldestUpdatedDate The oldest updated date to fetch jobs from
+   * @param newestUpdatedDate The newest updated date to fetch jobs from
+   * @param dataBatchHandler The handler for processing the fetched data batch
+   */
+  @Override
+  public void fetchJobs(
+    String category,
+    LocalDateTime now,
+    LocalDateTime oldestUpdatedDate,
+    LocalDateTime newestUpdatedDate,
+    Consumer<List<JobAdDto>> dataBatchHandler
+  ) {
+    // Request one page at a time, the concurrent requests are made by fetchPages.
+    // Closing the stream cancels the requests in flight if the handler fails.
+    try (
+      Stream<JobFeedResponse> pages = fetchPages(
+        category,
+        now,
+        oldestUpdatedDate,
+        newestUpdatedDate
+      )
+        .toStream(1)
+    ) {
+      pages.forEach(page -> handle(page, dataBatchHandler));
+    }
+  }
+
+  /**
+   * Fetches all jobs of a full refresh.
+   * With more than one fetch shard, the date range is split into that many time slices,
+   * whose pages are fetched concurrently, each slice with its own cursor,
+   * and handed to the data batch handler on the calling thread as they arrive.
+   * A failing slice cancels the other slices and fails the fetch.
+   *
+   * @param category The feed category, or {@link FeedFetcher#ALL_CATEGORIES} for the whole feed
+   * @param now The current date and time
+   * @param oldestUpdatedDate The oldest updated date to fetch jobs from
+   * @param newestUpdatedDate The newest updated date to fetch jobs from
+   * @param dataBatchHandler The handler for processing the fetched data batch
+   */
+  @Override
+  public void fetchAllJobs(
+    String category,
+    LocalDateTime now,
+    LocalDateTime oldestUpdatedDate,
+    LocalDateTime newestUpdatedDate,
+    Consumer<List<JobAdDto>> dataBatchHandler
+  ) {
+    List<TimeSlice> slices = TimeSlice.split(
+      oldestUpdatedDate,
+      newestUpdatedDate,
+      fetchShards
+    );
+    try (
+      Stream<JobFeedResponse> pages = Flux
+        .merge(
+          Flux
+            .fromIterable(slices)
+            .map(slice ->
+              fetchPages(category, now, slice.oldest(), slice.newest())
+            ),
+          slices.size(),
+          1
+        )
+        .toStream(1)
+    ) {
+      pages.forEach(page -> handle(page, dataBatchHandler));
+    }
+  }
+
+  /**
+   * Archives a page and hands its job ads to the data batch handler.
+   * The page is archived on the calling thread, so writing the archive never blocks the event loop of the client.
+   */
+  private void handle(
+    JobFeedResponse page,
+    Consumer<List<JobAdDto>> dataBatchHandler
+  ) {
+    jobFetcherWithRetry.archive(page);
+    dataBatchHandler.accept(page.getContent());
+  }
+
+  /**
+   * Streams the pages of the feed, starting with the given date range.
+   * All pages of a date range are fetched with that date range, after which the fetching continues with
+   * the date range ending at the published date of the last fetched job ad, like in {@link JobFetcher}.
+   *
+   * @param category The feed category
+   * @param now The current date and time
+   * @param oldestUpdatedDate The oldest updated date
+   * @param newestUpdatedDate The newest updated date
+   * @return The pages with content, in page order
+   */
+  Flux<JobFeedResponse> fetchPages(
+    String category,
+    LocalDateTime now,
+    LocalDateTime oldestUpdatedDate,
+    LocalDateTime newestUpdatedDate
+  ) {
+    if (!newestUpdatedDate.isAfter(oldestUpdatedDate)) {
+      logger.info(
+        "No more jobs found within the date range. Stopping fetch process."
+      );
+      return Flux.empty();
+    }
+
+    return fetchPage(category, now, oldestUpdatedDate, newestUpdatedDate, 0)
+      .filter(ReactiveJobFetcher::hasContent)
+      .flatMapMany(firstPage -> {
+        AtomicReference<LocalDateTime> cursor = new AtomicReference<>();
+        int nextPage = firstPage.getPageNumber() + 1;
+
+        Flux<JobFeedResponse> remainingPages = Flux
+          .range(nextPage, Math.max(0, firstPage.getTotalPages() - nextPage))
+          .flatMapSequential(
+            pageNumber ->
+              fetchPage(
+                category,
+                now,
+                oldestUpdatedDate,
+                newestUpdatedDate,
+                pageNumber
+              ),
+            fetchConcurrency,
+            1
+          )
+          .takeWhile(ReactiveJobFetcher::hasContent)
+          .doOnNext(page -> cursor.set(lastPublished(page)));
+
+        Flux<JobFeedResponse> nextDateRange = Flux.defer(() ->
+          cursor.get() == null
+            ? Flux.empty()
+            : fetchPages(category, now, oldestUpdatedDate, cursor.get())
+        );
+
+        return Flux.concat(Mono.just(firstPage), remainingPages, nextDateRange);
+      });
+  }
+
+  /**
+   * Fetches a page through the feed circuit breaker, with retries unless the breaker is half-open.
+   * Every attempt first waits for the rate limit of the feed, without blocking a thread.
+   *
+   * @param category The feed category
+   * @param now The current date and time
+   * @param oldestUpdatedDate The oldest updated date
+   * @param newestUpdatedDate The newest updated date
+   * @param pageNumber The page number
+   * @return The page, or an empty Mono if the response has no body
+   */
+  private Mono<JobFeedResponse> fetchPage(
+    String category,
+    LocalDateTime now,
+    LocalDateTime oldestUpdatedDate,
+    LocalDateTime newestUpdatedDate,
+    int pageNumber
+  ) {
+    URI uri = URI.create(
+      jobFetcherWithRetry
+        .buildApiUrl(
+          category,
+          now,
+          oldestUpdatedDate,
+          newestUpdatedDate,
+          pageNumber
+        )
+        .replace("+", "%2B")
+        .replace(" ", "%20")
+    );
+
+    Mono<JobFeedResponse> request = Mono.defer(() -> {
+      long waitNanos = jobFetcherWithRetry.reserveRequest();
+      return waitNanos > 0
+        ? Mono.delay(Duration.ofNanos(waitNanos)).then(send(uri))
+        : send(uri);
+    });
+
+    return Mono.defer(() -> {
+      circuitBreaker.acquirePermission();
+      Mono<JobFeedResponse> attempts = circuitBreaker.isHalfOpen()
+        ? request
+        : request.retryWhen(retrySpec);
+      return attempts
+        .doOnSuccess(response -> circuitBreaker.onSuccess())
+        .doOnError(e -> {
+          logger.error("Failed to fetch data from URL: {}", uri, e);
+          circuitBreaker.onFailure();
+        });
+    });
+  }
+
+  /**
+   * Sends a single request for a page, timing it from the moment it is sent.
+   */
+  private Mono<JobFeedResponse> send(URI uri) {
+    return Mono.defer(() -> {
+      logger.debug("Fetching data from URL: {}", uri);
+      long start = System.nanoTime();
+      return webClient
+        .get()
+        .uri(uri)
+        .headers(headers ->
+          headers.addAll(jobFetcherWithRetry.getHttpEntity().getHeaders())
+        )
+        .retrieve()
+        .bodyToMono(JobFeedResponse.class)
+        .doOnSuccess(response -> record(pageFetchSuccessTimer, start))
+        .doOnError(e -> record(pageFetchFailureTimer, start));
+    });
+  }
+
+  /**
+   * Retries the same failures as {@link JobFetcherWithRetry}: I/O errors and 4xx responses.
+   */
+  private static boolean isRetryable(Throwable e) {
+    return (
+      e instanceof WebClientRequestException ||
+      (e instanceof WebClientResponseException responseException &&
+        responseException.getStatusCode().is4xxClientError())
+    );
+  }
+
+  private static boolean hasContent(JobFeedResponse response) {
+    return response.getContent() != null && !response.getContent().isEmpty();
+  }
+
+  private static LocalDateTime lastPublished(JobFeedResponse response) {
+    return response.getContent().getLast().getPublishedAsLocalDateTime();
+  }
+
+  private static void record(Timer timer, long start) {
+    timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+  }
+}
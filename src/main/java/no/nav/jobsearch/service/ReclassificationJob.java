@@ -0,0 +1,370 @@
+package no.nav.jobsearch.service;
+
+import jakarta.annotation.PreDestroy;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import no.nav.jobsearch.model.Technology;
+import no.nav.jobsearch.repository.JobAdRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Backfill that reclassifies all stored job ads, after the {@link Technology} keywords have changed.
+ * The table is split into chunks of {@code reclassify.chunk.size} consecutive UUIDs, read by UUID range,
+ * so no chunk is ever loaded as a whole table. The chunks are processed by {@code reclassify.parallelism} workers,
+ * each chunk in its own transaction, and only the job ads whose technology flags change are updated.
+ * With {@code reclassify.max.ads.per.second} set, the workers are throttled to that many job ads per second,
+ * so the backfill doesn't take the database from the ingest and the requests.
+ * Job ads stored without a description keep their technology flags.
+ * The reclassified job ads of each chunk are published as a {@link JobAdsChangedEvent} in the transaction of the chunk,
+ * so the listeners receive them as they are committed, read together with the rows they are published with.
+ * The backfill is run by a guard that keeps the ingest from writing the job ads meanwhile,
+ * as a chunk would otherwise overwrite the technology flags of job ads stored since the chunk was read.
+ */
+@Service
+public class ReclassificationJob {
+
+  private static final Logger logger = LoggerFactory.getLogger(
+    ReclassificationJob.class
+  );
+
+  private final JobAdRepository jobAdRepository;
+
+  private final ApplicationEventPublisher eventPublisher;
+
+  private final TransactionTemplate transaction;
+
+  private final TransactionTemplate readOnlyTransaction;
+
+  private final int chunkSize;
+
+  private final int parallelism;
+
+  private final int maxAdsPerSecond;
+
+  private final ExecutorService coordinator = Executors.newSingleThreadExecutor(
+    Thread.ofPlatform().name("reclassify").daemon().factory()
+  );
+
+  private final AtomicBoolean running = new AtomicBoolean();
+
+  private final AtomicBoolean cancelled = new AtomicBoolean();
+
+  private final ReentrantLock throttleLock = new ReentrantLock();
+
+  private long nextPermitNanos;
+
+  private volatile Progress progress = Progress.NOT_STARTED;
+
+  public ReclassificationJob(
+    JobAdRepository jobAdRepository,
+    ApplicationEventPublisher eventPublisher,
+    PlatformTransactionManager transactionManager,
+    @Value("${reclassify.chunk.size:1000}") int chunkSize,
+    @Value("${reclassify.parallelism:2}") int parallelism,
+    @Value("${reclassify.max.ads.per.second:0}") int maxAdsPerSecond
+  ) {
+    this.jobAdRepository = jobAdRepository;
+    this.eventPublisher = eventPublisher;
+    this.transaction = new TransactionTemplate(transactionManager);
+    this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+    this.readOnlyTransaction.setReadOnly(true);
+    this.chunkSize = chunkSize;
+    this.parallelism = parallelism;
+    this.maxAdsPerSecond = maxAdsPerSecond;
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    cancelled.set(true);
+    coordinator.shutdownNow();
+  }
+
+  /**
+   * Starts the backfill in the background, unless it is already running.
+   *
+   * @param guard Runs the backfill on the calling thread, while no other writer of the job ads is running
+   * @return {@code true} if the backfill was started
+   */
+  public boolean start(Executor guard) {
+    if (!running.compareAndSet(false, true)) {
+      return false;
+    }
+    cancelled.set(false);
+    coordinator.execute(() -> {
+      try {
+        guard.execute(this::run);
+      } catch (RuntimeException e) {
+        logger.error("Reclassification failed", e);
+      } finally {
+        running.set(false);
+      }
+    });
+    return true;
+  }
+
+  /**
+   * Cancels a running backfill. Chunks already started are completed, and their changes published.
+   */
+  public void cancel() {
+    cancelled.set(true);
+  }
+
+  /**
+   * The progress of the running or last backfill.
+   */
+  public Progress getProgress() {
+    return progress;
+  }
+
+  /**
+   * Runs the backfill on the calling thread, and waits for all chunks to be processed.
+   */
+  void run() {
+    Instant startedAt = Instant.now();
+    List<Chunk> chunks = readOnlyTransaction.execute(status -> chunks());
+    Tracker tracker = new Tracker(startedAt, chunks.size());
+    progress = tracker.progress(Status.RUNNING);
+    logger.info(
+      "Reclassifying job ads in {} chunks with {} workers",
+      chunks.size(),
+      parallelism
+    );
+
+    ExecutorService workers = Executors.newFixedThreadPool(
+      Math.max(1, parallelism),
+      Thread.ofPlatform().name("reclassify-", 0).daemon().factory()
+    );
+    try {
+      List<Future<?>> results = new ArrayList<>();
+      for (Chunk chunk : chunks) {
+        results.add(
+          workers.submit(() -> {
+            if (cancelled.get()) {
+              return;
+            }
+            try {
+              throttle(chunkSize);
+              transaction.executeWithoutResult(status ->
+                publish(reclassify(chunk, tracker))
+              );
+              tracker.completedChunks.incrementAndGet();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+              tracker.failedChunks.incrementAndGet();
+              logger.warn("Failed to reclassify job ads in {}", chunk, e);
+            }
+            progress = tracker.progress(Status.RUNNING);
+          })
+        );
+      }
+      for (Future<?> result : results) {
+        result.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(e);
+    } finally {
+      workers.shutdownNow();
+      progress =
+        tracker.progress(cancelled.get() ? Status.CANCELLED : Status.FINISHED);
+      logger.info("Reclassification finished: {}", progress);
+    }
+  }
+
+  /**
+   * Splits the table into chunks of consecutive UUIDs, by reading the UUIDs from the index in order.
+   */
+  private List<Chunk> chunks() {
+    List<Chunk> chunks = new ArrayList<>();
+    String[] previous = { "" };
+    String[] last = { null };
+    int[] count = { 0 };
+    try (Stream<String> uuids = jobAdRepository.streamUuidsInOrder()) {
+      uuids.forEach(uuid -> {
+        last[0] = uuid;
+        if (++count[0] == chunkSize) {
+          chunks.add(new Chunk(previous[0], uuid));
+          previous[0] = uuid;
+          count[0] = 0;
+        }
+      });
+    }
+    if (count[0] > 0) {
+      chunks.add(new Chunk(previous[0], last[0]));
+    }
+    return chunks;
+  }
+
+  /**
+   * Reclassifies the job ads of a chunk, updating the flags that changed with one statement per set of flags.
+   *
+   * @return The snapshot rows of the reclassified job ads
+   */
+  private List<JobAdSnapshot.Row> reclassify(Chunk chunk, Tracker tracker) {
+    List<Object[]> rows = jobAdRepository.findReclassificationRows(
+      chunk.after(),
+      chunk.last()
+    );
+    Map<Long, List<String>> uuidsByTechnologies = new HashMap<>();
+    List<JobAdSnapshot.Row> reclassified = new ArrayList<>();
+    for (Object[] row : rows) {
+      String description = (String) (row[4] != null ? row[4] : row[5]);
+      if (description == null) {
+        continue;
+      }
+      long technologies = Technology.flagsOf(description);
+      Long storedTechnologies = (Long) row[3];
+      if (storedTechnologies == null || storedTechnologies != technologies) {
+        uuidsByTechnologies
+          .computeIfAbsent(technologies, flags -> new ArrayList<>())
+          .add((String) row[0]);
+        reclassified.add(
+          JobAdSnapshot.Row.of(
+            (String) row[0],
+            (LocalDateTime) row[1],
+            (LocalDateTime) row[2],
+            technologies,
+            null,
+            (String) row[6],
+            (String) row[7],
+            (String) row[8]
+          )
+        );
+      }
+    }
+    uuidsByTechnologies.forEach(jobAdRepository::updateTechnologies);
+    tracker.scannedAds.addAndGet(rows.size());
+    tracker.reclassifiedAds.addAndGet(reclassified.size());
+    return reclassified;
+  }
+
+  /**
+   * Waits until the workers may process the given number of job ads, to stay within the maximum rate.
+   */
+  private void throttle(int ads) throws InterruptedException {
+    if (maxAdsPerSecond <= 0) {
+      return;
+    }
+    long waitNanos;
+    throttleLock.lock();
+    try {
+      long now = System.nanoTime();
+      long permitNanos = Math.max(nextPermitNanos, now);
+      nextPermitNanos = permitNanos + ads * 1_000_000_000L / maxAdsPerSecond;
+      waitNanos = permitNanos - now;
+    } finally {
+      throttleLock.unlock();
+    }
+    TimeUnit.NANOSECONDS.sleep(waitNanos);
+  }
+
+  /**
+   * Publishes the reclassified job ads of a chunk, which the listeners receive once the chunk is committed.
+   */
+  private void publish(List<JobAdSnapshot.Row> reclassified) {
+    if (!reclassified.isEmpty()) {
+      JobAdChanges changes = new JobAdChanges();
+      reclassified.forEach(changes::reclassified);
+      eventPublisher.publishEvent(new JobAdsChangedEvent(changes));
+    }
+  }
+
+  /**
+   * A range of consecutive UUIDs.
+   *
+   * @param after The UUID before the chunk, exclusive
+   * @param last The last UUID of the chunk, inclusive
+   */
+  private record Chunk(String after, String last) {}
+
+  public enum Status {
+    NOT_STARTED,
+    RUNNING,
+    FINISHED,
+    CANCELLED,
+  }
+
+  /**
+   * The progress of a backfill.
+   *
+   * @param status Whether the backfill is running, or how it ended
+   * @param totalChunks The number of chunks
+   * @param completedChunks The number of reclassified chunks
+   * @param failedChunks The number of chunks that failed, and were rolled back
+   * @param scannedAds The number of job ads read
+   * @param reclassifiedAds The number of job ads whose technology flags changed
+   * @param startedAt When the backfill was started
+   */
+  public record Progress(
+    Status status,
+    int totalChunks,
+    int completedChunks,
+    int failedChunks,
+    long scannedAds,
+    long reclassifiedAds,
+    Instant startedAt
+  ) {
+    static final Progress NOT_STARTED = new Progress(
+      Status.NOT_STARTED,
+      0,
+      0,
+      0,
+      0,
+      0,
+      null
+    );
+  }
+
+  /**
+   * The counters of a running backfill, updated by the workers.
+   */
+  private static class Tracker {
+
+    private final Instant startedAt;
+    private final int totalChunks;
+    private final AtomicInteger completedChunks = new AtomicInteger();
+    private final AtomicInteger failedChunks = new AtomicInteger();
+    private final AtomicLong scannedAds = new AtomicLong();
+    private final AtomicLong reclassifiedAds = new AtomicLong();
+
+    Tracker(Instant startedAt, int totalChunks) {
+      this.startedAt = startedAt;
+      this.totalChunks = totalChunks;
+    }
+
+    Progress progress(Status status) {
+      return new Progress(
+        status,
+        totalChunks,
+        completedChunks.get(),
+        failedChunks.get(),
+        scannedAds.get(),
+        reclassifiedAds.get(),
+        startedAt
+      );
+    }
+  }
+}
@@ -0,0 +1,321 @@
+package no.nav.jobsearch.service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import no.nav.jobsearch.model.Dimension;
+import no.nav.jobsearch.model.DimensionStatistics;
+import no.nav.jobsearch.model.Granularity;
+import no.nav.jobsearch.model.PeriodStatistics;
+import no.nav.jobsearch.model.Technology;
+
+/**
+ * Pre-aggregated weekly job ad counts per feed category, region and sector:
+ * a cube of week × category × region × sector cells, each holding the Kotlin, Java and total counts.
+ * The categories, regions and sectors are indexed by the dictionary ids of the {@link JobAdSnapshot},
+ * so a cell is found by index arithmetic, and drilling down into a window only sums the cells of its weeks,
+ * regardless of the number of job ads. The cells of a category are contiguous within each week,
+ * so the statistics of a category never read the counts of the other categories.
+ */
+class StatsCube {
+
+  private static final int KOTLIN = 0;
+  private static final int JAVA = 1;
+  private static final int TOTAL = 2;
+  private static final int MEASURES = 3;
+
+  private final LocalDate firstWeek;
+  private final int weeks;
+  private final DimensionDictionary regions;
+  private final DimensionDictionary sectors;
+  private final DimensionDictionary categories;
+
+  // The measures of week w, category c, region r and sector s start at
+  // (((w * categories + c) * regions + r) * sectors + s) * MEASURES
+  private final int[] counts;
+
+  private StatsCube(
+    LocalDate firstWeek,
+    int weeks,
+    DimensionDictionary regions,
+    DimensionDictionary sectors,
+    DimensionDictionary categories,
+    int[] counts
+  ) {
+    this.firstWeek = firstWeek;
+    this.weeks = weeks;
+    this.regions = regions;
+    this.sectors = sectors;
+    this.categories = categories;
+    this.counts = counts;
+  }
+
+  /**
+   * Counts the job ads of a {@link JobAdSnapshot} per week of publication, feed category, region and sector.
+   * Job ads without a published date are left out.
+   *
+   * @param publishedDays The published epoch day of each job ad
+   * @param technologies The technology bitset of each job ad
+   * @param regionIds The region id of each job ad
+   * @param sectorIds The sector id of each job ad
+   * @param categoryIds The category id of each job ad
+   * @param size The number of job ads
+   * @param regions The dictionary of the region ids
+   * @param sectors The dictionary of the sector ids
+   * @param categories The dictionary of the category ids
+   * @return The cube
+   */
+  static StatsCube of(
+    int[] publishedDays,
+    long[] technologies,
+    int[] regionIds,
+    int[] sectorIds,
+    int[] categoryIds,
+    int size,
+    DimensionDictionary regions,
+    DimensionDictionary sectors,
+    DimensionDictionary categories
+  ) {
+    int firstDay = Integer.MAX_VALUE;
+    int lastDay = Integer.MIN_VALUE;
+    for (int i = 0; i < size; i++) {
+      if (publishedDays[i] != JobAdSnapshot.NO_DATE) {
+        firstDay = Math.min(firstDay, publishedDays[i]);
+        lastDay = Math.max(lastDay, publishedDays[i]);
+      }
+    }
+    if (firstDay > lastDay) {
+      return new StatsCube(
+        LocalDate.EPOCH,
+        0,
+        regions,
+        sectors,
+        categories,
+        new int[0]
+      );
+    }
+
+    LocalDate firstWeek = Granularity.WEEK.periodStart(
+      LocalDate.ofEpochDay(firstDay)
+    );
+    int firstWeekDay = (int) firstWeek.toEpochDay();
+    int weeks = (lastDay - firstWeekDay) / 7 + 1;
+    int[] counts = new int[
+      weeks * categories.size() * regions.size() * sectors.size() * MEASURES
+    ];
+
+    for (int i = 0; i < size; i++) {
+      if (publishedDays[i] == JobAdSnapshot.NO_DATE) {
+        continue;
+      }
+      int week = (publishedDays[i] - firstWeekDay) / 7;
+      int cell = cell(
+        week,
+        categoryIds[i],
+        regionIds[i],
+        sectorIds[i],
+        categories,
+        regions,
+        sectors
+      );
+      if (Technology.KOTLIN.isIn(technologies[i])) {
+        counts[cell + KOTLIN]++;
+      }
+      if (Technology.JAVA.isIn(technologies[i])) {
+        counts[cell + JAVA]++;
+      }
+      counts[cell + TOTAL]++;
+    }
+    return new StatsCube(
+      firstWeek,
+      weeks,
+      regions,
+      sectors,
+      categories,
+      counts
+    );
+  }
+
+  /**
+   * Sums the counts of the weeks starting within a window, grouped by the values of a dimension.
+   * Values without job ads are left out.
+   *
+   * @param from The first day of the window, a Monday
+   * @param end The first day after the window, a Monday
+   * @param by The dimension to group by
+   * @param region The region to count, ignoring case, or {@code null} for all regions
+   * @param sector The sector to count, ignoring case, or {@code null} for all sectors
+   * @param category The feed category to count, ignoring case, or {@code null} for all categories
+   * @return The statistics per value, with the most job ads first and then by value, missing last
+   */
+  List<DimensionStatistics> breakdown(
+    LocalDate from,
+    LocalDate end,
+    Dimension by,
+    String region,
+    String sector,
+    String category
+  ) {
+    Slice slice = slice(from, end, region, sector, category);
+    DimensionDictionary groups = switch (by) {
+      case REGION -> regions;
+      case SECTOR -> sectors;
+      case CATEGORY -> categories;
+    };
+    long[] sums = new long[groups.size() * MEASURES];
+    for (int week = slice.firstWeek; week < slice.endWeek; week++) {
+      for (int c = slice.firstCategory; c < slice.endCategory; c++) {
+        for (int r = slice.firstRegion; r < slice.endRegion; r++) {
+          for (int s = slice.firstSector; s < slice.endSector; s++) {
+            int group = switch (by) {
+              case REGION -> r;
+              case SECTOR -> s;
+              case CATEGORY -> c;
+            };
+            add(sums, group * MEASURES, cell(week, c, r, s));
+          }
+        }
+      }
+    }
+
+    List<DimensionStatistics> statistics = new ArrayList<>();
+    for (int group = 0; group < groups.size(); group++) {
+      int offset = group * MEASURES;
+      if (sums[offset + TOTAL] > 0) {
+        statistics.add(
+          new DimensionStatistics(
+            groups.value(group),
+            sums[offset + KOTLIN],
+            sums[offset + JAVA],
+            sums[offset + TOTAL]
+          )
+        );
+      }
+    }
+    statistics.sort(
+      Comparator.comparingLong(DimensionStatistics::totalCount)
+        .reversed()
+        .thenComparing(
+          DimensionStatistics::value,
+          Comparator.nullsLast(Comparator.naturalOrder())
+        )
+    );
+    return statistics;
+  }
+
+  /**
+   * Sums the counts of each week starting within a window. Weeks without job ads are left out.
+   *
+   * @param from The first day of the window, a Monday
+   * @param end The first day after the window, a Monday
+   * @param region The region to count, ignoring case, or {@code null} for all regions
+   * @param sector The sector to count, ignoring case, or {@code null} for all sectors
+   * @param category The feed category to count, ignoring case, or {@code null} for all categories
+   * @return The statistics per week, ordered by week
+   */
+  List<PeriodStatistics> weekly(
+    LocalDate from,
+    LocalDate end,
+    String region,
+    String sector,
+    String category
+  ) {
+    Slice slice = slice(from, end, region, sector, category);
+    List<PeriodStatistics> statistics = new ArrayList<>();
+    for (int week = slice.firstWeek; week < slice.endWeek; week++) {
+      long[] sums = new long[MEASURES];
+      for (int c = slice.firstCategory; c < slice.endCategory; c++) {
+        for (int r = slice.firstRegion; r < slice.endRegion; r++) {
+          for (int s = slice.firstSector; s < slice.endSector; s++) {
+            add(sums, 0, cell(week, c, r, s));
+          }
+        }
+      }
+      if (sums[TOTAL] > 0) {
+        LocalDate weekStart = firstWeek.plusWeeks(week);
+        statistics.add(
+          new PeriodStatistics(
+            weekStart,
+            weekStart.plusWeeks(1),
+            sums[KOTLIN],
+            sums[JAVA],
+            sums[TOTAL]
+          )
+        );
+      }
+    }
+    return statistics;
+  }
+
+  private int cell(int week, int category, int region, int sector) {
+    return cell(week, category, region, sector, categories, regions, sectors);
+  }
+
+  private static int cell(
+    int week,
+    int category,
+    int region,
+    int sector,
+    DimensionDictionary categories,
+    DimensionDictionary regions,
+    DimensionDictionary sectors
+  ) {
+    return (
+      (((week * categories.size() + category) * regions.size() + region) *
+          sectors.size() +
+        sector) *
+      MEASURES
+    );
+  }
+
+  private void add(long[] sums, int offset, int cell) {
+    sums[offset + KOTLIN] += counts[cell + KOTLIN];
+    sums[offset + JAVA] += counts[cell + JAVA];
+    sums[offset + TOTAL] += counts[cell + TOTAL];
+  }
+
+  /**
+   * Resolves a window and filters to ranges of week indexes and dictionary ids.
+   * A filter value that no job ad has gives an empty range.
+   */
+  private Slice slice(
+    LocalDate from,
+    LocalDate end,
+    String region,
+    String sector,
+    String category
+  ) {
+    int firstWeekIndex = weekIndex(from);
+    int endWeekIndex = weekIndex(end);
+    int regionId = region == null ? -1 : regions.find(region);
+    int sectorId = sector == null ? -1 : sectors.find(sector);
+    int categoryId = category == null ? -1 : categories.find(category);
+    return new Slice(
+      firstWeekIndex,
+      endWeekIndex,
+      region == null ? 0 : Math.max(regionId, 0),
+      region == null ? regions.size() : Math.max(regionId + 1, 0),
+      sector == null ? 0 : Math.max(sectorId, 0),
+      sector == null ? sectors.size() : Math.max(sectorId + 1, 0),
+      category == null ? 0 : Math.max(categoryId, 0),
+      category == null ? categories.size() : Math.max(categoryId + 1, 0)
+    );
+  }
+
+  private int weekIndex(LocalDate weekStart) {
+    long index = (weekStart.toEpochDay() - firstWeek.toEpochDay()) / 7;
+    return (int) Math.clamp(index, 0, weeks);
+  }
+
+  private record Slice(
+    int firstWeek,
+    int endWeek,
+    int firstRegion,
+    int endRegion,
+    int firstSector,
+    int endSector,
+    int firstCategory,
+    int endCategory
+  ) {}
+}
@@ -0,0 +1,192 @@
+package no.nav.jobsearch.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+import no.nav.jobsearch.model.Granularity;
+import no.nav.jobsearch.model.JobStatistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+/**
+ * Serves the weekly Kotlin vs Java statistics as pre-encoded JSON.
+ * The statistics of a window are serialized and gzip-compressed once per {@link JobAdSnapshot},
+ * and the bytes are served as they are until the snapshot is patched, so a request costs neither
+ * serialization nor compression. The ETag is derived from the JSON, so it only changes when the numbers do,
+ * and clients revalidating with {@code If-None-Match} get a 304 across snapshot patches that didn't change them.
+ */
+@Service
+public class StatsResponseCache {
+
+  /**
+   * The maximum number of cached windows. The cache is cleared when it is exceeded,
+   * as almost all requests are for the default window and the few windows of the dashboards.
+   */
+  private static final int MAX_ENTRIES = 256;
+
+  private final StatsService statsService;
+
+  private final JobAdSnapshotService snapshotService;
+
+  private final ObjectMapper objectMapper;
+
+  private final Clock clock;
+
+  private final Counter hitCounter;
+
+  private final Counter missCounter;
+
+  private final Map<Key, EncodedStatistics> cache = new ConcurrentHashMap<>();
+
+  @Autowired
+  public StatsResponseCache(
+    StatsService statsService,
+    JobAdSnapshotService snapshotService,
+    ObjectMapper objectMapper,
+    MeterRegistry meterRegistry
+  ) {
+    this(
+      statsService,
+      snapshotService,
+      objectMapper,
+      meterRegistry,
+      Clock.systemUTC()
+    );
+  }
+
+  StatsResponseCache(
+    StatsService statsService,
+    JobAdSnapshotService snapshotService,
+    ObjectMapper objectMapper,
+    MeterRegistry meterRegistry,
+    Clock clock
+  ) {
+    this.statsService = statsService;
+    this.snapshotService = snapshotService;
+    this.objectMapper = objectMapper;
+    this.clock = clock;
+    this.hitCounter = cacheCounter(meterRegistry, "hit");
+    this.missCounter = cacheCounter(meterRegistry, "miss");
+  }
+
+  private static Counter cacheCounter(
+    MeterRegistry meterRegistry,
+    String result
+  ) {
+    return Counter
+      .builder("stats.response.cache")
+      .description("Number of statistics responses served from or added to the pre-encoded response cache")
+      .tag("result", result)
+      .register(meterRegistry);
+  }
+
+  /**
+   * Get the weekly statistics for Kotlin vs Java job ads as pre-encoded JSON,
+   * see {@link StatsService#getKotlinVsJavaStats(LocalDate, LocalDate, Granularity)}.
+   *
+   * @param from The first day of the window, or {@code null} for six months before today
+   * @param to The last day of the window, or {@code null} for today
+   * @return The encoded statistics per week
+   * @throws IllegalArgumentException if {@code from} is after {@code to}
+   */
+  public EncodedStatistics getKotlinVsJavaStats(LocalDate from, LocalDate to) {
+    // The default window moves with the date, so the date is part of the key
+    Key key = new Key(from, to, LocalDate.now(clock));
+    JobAdSnapshot snapshot = snapshotService.getSnapshot();
+    EncodedStatistics cached = cache.get(key);
+    if (cached != null && cached.snapshotVersion == snapshot.getVersion()) {
+      hitCounter.increment();
+      return cached;
+    }
+
+    missCounter.increment();
+    List<JobStatistics> statistics = statsService
+      .getKotlinVsJavaStats(from, to, Granularity.WEEK)
+      .stream()
+      .map(JobStatistics::of)
+      .toList();
+    EncodedStatistics encoded = encode(snapshot, statistics);
+    if (cache.size() >= MAX_ENTRIES) {
+      cache.clear();
+    }
+    cache.put(key, encoded);
+    return encoded;
+  }
+
+  private EncodedStatistics encode(JobAdSnapshot snapshot, Object statistics) {
+    try {
+      byte[] json = objectMapper.writeValueAsBytes(statistics);
+      ByteArrayOutputStream gzip = new ByteArrayOutputStream(json.length / 4);
+      try (GZIPOutputStream out = new GZIPOutputStream(gzip)) {
+        out.write(json);
+      }
+      return new EncodedStatistics(
+        snapshot.getVersion(),
+        json,
+        gzip.toByteArray(),
+        DigestUtils.md5DigestAsHex(json)
+      );
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Failed to serialize statistics", e);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private record Key(LocalDate from, LocalDate to, LocalDate today) {}
+
+  /**
+   * Statistics encoded as JSON, as is and gzip-compressed. The arrays must not be modified.
+   * Only the version of the snapshot is kept, so cached windows that aren't requested again
+   * don't keep replaced snapshots in memory.
+   */
+  public static final class EncodedStatistics {
+
+    private final long snapshotVersion;
+    private final byte[] json;
+    private final byte[] gzip;
+    private final String hash;
+
+    private EncodedStatistics(
+      long snapshotVersion,
+      byte[] json,
+      byte[] gzip,
+      String hash
+    ) {
+      this.snapshotVersion = snapshotVersion;
+      this.json = json;
+      this.gzip = gzip;
+      this.hash = hash;
+    }
+
+    public byte[] getJson() {
+      return json;
+    }
+
+    public byte[] getGzip() {
+      return gzip;
+    }
+
+    /**
+     * The ETag of the JSON, without quotes.
+     * The compressed representation gets its own ETag, with a {@code -gzip} suffix.
+     *
+     * @param gzipped Whether the ETag is for the gzip-compressed JSON
+     * @return The ETag
+     */
+    public String getETag(boolean gzipped) {
+      return gzipped ? hash + "-gzip" : hash;
+    }
+  }
+}
@@ -0,0 +1,295 @@
+package no.nav.jobsearch.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import no.nav.jobsearch.model.Dimension;
+import no.nav.jobsearch.model.DimensionStatistics;
+import no.nav.jobsearch.model.Granularity;
+import no.nav.jobsearch.model.KeywordStatistics;
+import no.nav.jobsearch.model.PeriodStatistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Serves the Kotlin vs Java statistics from the daily counts and the weekly {@link StatsCube}
+ * of the in-memory {@link JobAdSnapshot}, and the keyword statistics from the in-memory {@link KeywordIndex},
+ * without querying the database.
+ * The weekly statistics also count the job ads purged from the database, from the {@link WeeklyHistory},
+ * so they can be served over windows of any number of years.
+ */
+@Service
+public class StatsService {
+
+  private final JobAdSnapshotService snapshotService;
+
+  private final KeywordIndexService keywordIndexService;
+
+  private final Timer statsQueryTimer;
+
+  private final Timer breakdownQueryTimer;
+
+  private final Timer keywordQueryTimer;
+
+  private final Clock clock;
+
+  @Autowired
+  public StatsService(
+    JobAdSnapshotService snapshotService,
+    KeywordIndexService keywordIndexService,
+    MeterRegistry meterRegistry
+  ) {
+    this(
+      snapshotService,
+      keywordIndexService,
+      meterRegistry,
+      Clock.systemUTC()
+    );
+  }
+
+  StatsService(
+    JobAdSnapshotService snapshotService,
+    KeywordIndexService keywordIndexService,
+    MeterRegistry meterRegistry,
+    Clock clock
+  ) {
+    this.snapshotService = snapshotService;
+    this.keywordIndexService = keywordIndexService;
+    this.clock = clock;
+    this.statsQueryTimer = queryTimer(meterRegistry, "kotlin-vs-java");
+    this.breakdownQueryTimer = queryTimer(meterRegistry, "breakdown");
+    this.keywordQueryTimer = queryTimer(meterRegistry, "keywords");
+  }
+
+  private static Timer queryTimer(MeterRegistry meterRegistry, String stats) {
+    return Timer
+      .builder("stats.query")
+      .description("Latency of a statistics query")
+      .tag("stats", stats)
+      .publishPercentileHistogram()
+      .register(meterRegistry);
+  }
+
+  /**
+   * Get statistics for Kotlin vs Java job ads published within a window, grouped by period.
+   * The window is widened to whole periods: it starts at the first day of the period containing {@code from},
+   * and ends with the period containing {@code to}. Periods without job ads are left out.
+   * Only the statistics grouped by week include the job ads purged from the database,
+   * as their history is kept per week.
+   *
+   * @param from The first day of the window, or {@code null} for six months before today
+   * @param to The last day of the window, or {@code null} for today
+   * @param granularity The size of the periods
+   * @return The statistics per period, ordered by period
+   * @throws IllegalArgumentException if {@code from} is after {@code to}
+   */
+  public List<PeriodStatistics> getKotlinVsJavaStats(
+    LocalDate from,
+    LocalDate to,
+    Granularity granularity
+  ) {
+    return getKotlinVsJavaStats(from, to, granularity, null, null, null);
+  }
+
+  /**
+   * Get statistics for Kotlin vs Java job ads published within a window, grouped by period,
+   * counting only the job ads of a region, sector and/or feed category. The filtered statistics are answered
+   * from the weekly cube, so they can only be grouped by week.
+   *
+   * @param from The first day of the window, or {@code null} for six months before today
+   * @param to The last day of the window, or {@code null} for today
+   * @param granularity The size of the periods
+   * @param region The region to count, ignoring case, or {@code null} for all regions
+   * @param sector The sector to count, ignoring case, or {@code null} for all sectors
+   * @param category The feed category to count, ignoring case, or {@code null} for all categories
+   * @return The statistics per period, ordered by period
+   * @throws IllegalArgumentException if {@code from} is after {@code to},
+   *     or a filter is given with another granularity than week
+   */
+  public List<PeriodStatistics> getKotlinVsJavaStats(
+    LocalDate from,
+    LocalDate to,
+    Granularity granularity,
+    String region,
+    String sector,
+    String category
+  ) {
+    Window window = window(from, to);
+    if (region == null && sector == null && category == null) {
+      return statsQueryTimer.record(() ->
+        getKotlinVsJavaStats(
+          window.firstDay(),
+          window.lastDay(),
+          granularity,
+          snapshotService.getSnapshot()
+        )
+      );
+    }
+    if (granularity != Granularity.WEEK) {
+      throw new IllegalArgumentException(
+        "Statistics filtered by region, sector or category can only be grouped by week"
+      );
+    }
+    return statsQueryTimer.record(() ->
+      snapshotService
+        .getSnapshot()
+        .getCube()
+        .weekly(window.weekStart(), window.weekEnd(), region, sector, category)
+    );
+  }
+
+  /**
+   * Get statistics for Kotlin vs Java job ads published within a window, broken down by the values of a dimension,
+   * e.g. the number of job ads per region, optionally counting only the job ads of a region, sector and/or
+   * feed category. The window is widened to whole weeks, and answered from the weekly cube.
+   *
+   * @param from The first day of the window, or {@code null} for six months before today
+   * @param to The last day of the window, or {@code null} for today
+   * @param by The dimension to break the statistics down by
+   * @param region The region to count, ignoring case, or {@code null} for all regions
+   * @param sector The sector to count, ignoring case, or {@code null} for all sectors
+   * @param category The feed category to count, ignoring case, or {@code null} for all categories
+   * @return The statistics per value of the dimension, with the most job ads first
+   * @throws IllegalArgumentException if {@code from} is after {@code to}
+   */
+  public List<DimensionStatistics> getKotlinVsJavaBreakdown(
+    LocalDate from,
+    LocalDate to,
+    Dimension by,
+    String region,
+    String sector,
+    String category
+  ) {
+    Window window = window(from, to);
+    return breakdownQueryTimer.record(() ->
+      snapshotService
+        .getSnapshot()
+        .getCube()
+        .breakdown(
+          window.weekStart(),
+          window.weekEnd(),
+          by,
+          region,
+          sector,
+          category
+        )
+    );
+  }
+
+  /**
+   * Get the number of job ads matching a boolean keyword query per week of publication,
+   * e.g. {@code kotlin AND spring AND NOT android}. The window is widened to whole weeks.
+   * The keywords are matched as whole terms of the title and description, unlike the technologies,
+   * so {@code java} does not match job ads only mentioning JavaScript.
+   *
+   * @param query The query, see {@link KeywordQuery} for the syntax
+   * @param from The first day of the window, or {@code null} for six months before today
+   * @param to The last day of the window, or {@code null} for today
+   * @return The number of matching job ads per week, ordered by week. Weeks without matching job ads are left out.
+   * @throws IllegalArgumentException if {@code from} is after {@code to}, or the query is not well-formed
+   */
+  public List<KeywordStatistics> getKeywordStats(
+    String query,
+    LocalDate from,
+    LocalDate to
+  ) {
+    KeywordQuery keywordQuery = KeywordQuery.parse(query);
+    Window window = window(from, to);
+    return keywordQueryTimer.record(() ->
+      keywordIndexService.query(index ->
+        index.weekly(
+          keywordQuery.matches(index),
+          window.weekStart(),
+          window.weekEnd()
+        )
+      )
+    );
+  }
+
+  private Window window(LocalDate from, LocalDate to) {
+    LocalDate today = LocalDate.now(clock);
+    LocalDate lastDay = to != null ? to : today;
+    LocalDate firstDay = from != null ? from : today.minusMonths(6);
+    if (firstDay.isAfter(lastDay)) {
+      throw new IllegalArgumentException(
+        "from " + firstDay + " is after to " + lastDay
+      );
+    }
+    return new Window(firstDay, lastDay);
+  }
+
+  private static List<PeriodStatistics> getKotlinVsJavaStats(
+    LocalDate firstDay,
+    LocalDate lastDay,
+    Granularity granularity,
+    JobAdSnapshot snapshot
+  ) {
+    DailyStatistics daily = snapshot.getDailyStatistics();
+    WeeklyHistory history = granularity == Granularity.WEEK
+      ? snapshot.getHistory()
+      : WeeklyHistory.EMPTY;
+    // Only the periods overlapping the days with job ads can have counts
+    LocalDate firstDayWithAds = history.isEmpty()
+      ? daily.getFirstDay()
+      : min(daily.getFirstDay(), history.getFirstWeek());
+    LocalDate endDayWithAds = history.isEmpty()
+      ? daily.getEndDay()
+      : max(daily.getEndDay(), history.getEndWeek());
+    LocalDate windowStart = granularity.periodStart(
+      max(firstDay, firstDayWithAds)
+    );
+    LocalDate windowEnd = min(
+      granularity.nextPeriodStart(granularity.periodStart(lastDay)),
+      endDayWithAds
+    );
+
+    List<PeriodStatistics> statistics = new ArrayList<>();
+    for (
+      LocalDate periodStart = windowStart;
+      periodStart.isBefore(windowEnd);
+      periodStart = granularity.nextPeriodStart(periodStart)
+    ) {
+      PeriodStatistics period = daily.sum(
+        periodStart,
+        granularity.nextPeriodStart(periodStart)
+      );
+      PeriodStatistics purged = history.week(periodStart);
+      if (purged != null) {
+        period = WeeklyHistory.sum(period, purged);
+      }
+      if (period.totalCount() > 0) {
+        statistics.add(period);
+      }
+    }
+    return statistics;
+  }
+
+  /**
+   * The days of a statistics query.
+   *
+   * @param firstDay The first day
+   * @param lastDay The last day
+   */
+  private record Window(LocalDate firstDay, LocalDate lastDay) {
+    LocalDate weekStart() {
+      return Granularity.WEEK.periodStart(firstDay);
+    }
+
+    LocalDate weekEnd() {
+      return Granularity.WEEK.nextPeriodStart(
+        Granularity.WEEK.periodStart(lastDay)
+      );
+    }
+  }
+
+  private static LocalDate max(LocalDate a, LocalDate b) {
+    return a.isAfter(b) ? a : b;
+  }
+
+  private static LocalDate min(LocalDate a, LocalDate b) {
+    return a.isBefore(b) ? a : b;
+  }
+}
@@ -0,0 +1,213 @@
+package no.nav.jobsearch.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import no.nav.jobsearch.service.StatsResponseCache.EncodedStatistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Pushes the weekly Kotlin vs Java statistics to subscribers as Server-Sent Events.
+ * A subscriber gets the statistics of its window when it subscribes, and again whenever a committed ingest run
+ * changes them, so dashboards don't have to poll. The events carry the pre-encoded JSON of the
+ * {@link StatsResponseCache}, with its ETag as event id, so a reconnecting client that sends its
+ * {@code Last-Event-ID} is only sent the statistics if they changed while it was disconnected.
+ * The connections are held as async requests, without a thread each, and are kept open through proxies
+ * with a comment every {@code stats.stream.heartbeat} milliseconds.
+ * The updates are sent on a thread of their own, so slow subscribers don't hold up the ingest run.
+ */
+@Service
+public class StatsStreamService {
+
+  private static final Logger logger = LoggerFactory.getLogger(
+    StatsStreamService.class
+  );
+
+  private static final String EVENT_NAME = "stats";
+
+  private final StatsResponseCache statsResponseCache;
+
+  private final long timeout;
+
+  private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+
+  private final ExecutorService sender = Executors.newSingleThreadExecutor(
+    Thread.ofPlatform().name("stats-stream").daemon().factory()
+  );
+
+  public StatsStreamService(
+    StatsResponseCache statsResponseCache,
+    MeterRegistry meterRegistry,
+    @Value("${stats.stream.timeout:3600000}") long timeout
+  ) {
+    this.statsResponseCache = statsResponseCache;
+    this.timeout = timeout;
+    Gauge
+      .builder("stats.stream.subscribers", subscriptions, Set::size)
+      .description("Number of open statistics update streams")
+      .register(meterRegistry);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    sender.shutdownNow();
+    subscriptions.forEach(subscription -> subscription.emitter.complete());
+    subscriptions.clear();
+  }
+
+  /**
+   * Subscribes to the weekly statistics of a window,
+   * see {@link StatsResponseCache#getKotlinVsJavaStats(LocalDate, LocalDate)}.
+   * The stream is completed after {@code stats.stream.timeout} milliseconds, and the client reconnects.
+   *
+   * @param from The first day of the window, or {@code null} for six months before today
+   * @param to The last day of the window, or {@code null} for today
+   * @param lastEventId The id of the last event the client received, or {@code null}
+   * @return The stream of statistics
+   * @throws IllegalArgumentException if {@code from} is after {@code to}
+   */
+  public SseEmitter subscribe(
+    LocalDate from,
+    LocalDate to,
+    String lastEventId
+  ) {
+    // Validates the window before the stream is opened
+    EncodedStatistics statistics = statsResponseCache.getKotlinVsJavaStats(
+      from,
+      to
+    );
+    Subscription subscription = new Subscription(
+      from,
+      to,
+      new SseEmitter(timeout)
+    );
+    subscription.emitter.onCompletion(() ->
+      subscriptions.remove(subscription)
+    );
+    subscription.emitter.onTimeout(subscription.emitter::complete);
+    subscription.emitter.onError(error -> subscriptions.remove(subscription));
+    subscription.lastETag = lastEventId;
+    subscriptions.add(subscription);
+    send(subscription, statistics);
+    return subscription.emitter;
+  }
+
+  /**
+   * Sends the statistics to the subscribers whose statistics changed, once the changes of an ingest run
+   * are committed and applied to the snapshot.
+   *
+   * @param event The changes of the ingest run
+   */
+  @TransactionalEventListener
+  public void onJobAdsChanged(JobAdsChangedEvent event) {
+    if (!subscriptions.isEmpty()) {
+      sender.execute(this::sendUpdates);
+    }
+  }
+
+  /**
+   * Sends a comment to all subscribers, so that idle streams are not closed by proxies,
+   * and closed streams are noticed.
+   */
+  @Scheduled(fixedDelayString = "${stats.stream.heartbeat:30000}")
+  public void sendHeartbeat() {
+    if (!subscriptions.isEmpty()) {
+      sender.execute(this::sendComments);
+    }
+  }
+
+  int getSubscriberCount() {
+    return subscriptions.size();
+  }
+
+  private void sendComments() {
+    for (Subscription subscription : subscriptions) {
+      try {
+        subscription.emitter.send(SseEmitter.event().comment(""));
+      } catch (IOException | IllegalStateException e) {
+        close(subscription, e);
+      }
+    }
+  }
+
+  /**
+   * Sends the current statistics to every subscriber that hasn't received them yet.
+   * Subscribers to the same window share the encoded statistics of the {@link StatsResponseCache}.
+   */
+  void sendUpdates() {
+    for (Subscription subscription : subscriptions) {
+      try {
+        send(
+          subscription,
+          statsResponseCache.getKotlinVsJavaStats(
+            subscription.from,
+            subscription.to
+          )
+        );
+      } catch (RuntimeException e) {
+        logger.warn("Failed to send statistics update", e);
+      }
+    }
+  }
+
+  private void send(
+    Subscription subscription,
+    EncodedStatistics statistics
+  ) {
+    String eTag = statistics.getETag(false);
+    if (eTag.equals(subscription.lastETag)) {
+      return;
+    }
+    try {
+      subscription.emitter.send(
+        SseEmitter
+          .event()
+          .id(eTag)
+          .name(EVENT_NAME)
+          .data(statistics.getJson(), MediaType.APPLICATION_JSON)
+      );
+      subscription.lastETag = eTag;
+    } catch (IOException | IllegalStateException e) {
+      close(subscription, e);
+    }
+  }
+
+  /**
+   * Drops a subscription whose stream failed. The container completes the failed request.
+   */
+  private void close(Subscription subscription, Exception e) {
+    subscriptions.remove(subscription);
+    logger.debug("Closed statistics update stream: {}", e.getMessage());
+  }
+
+  private static class Subscription {
+
+    private final LocalDate from;
+    private final LocalDate to;
+    private final SseEmitter emitter;
+
+    /**
+     * The ETag of the statistics last sent to the subscriber.
+     */
+    private volatile String lastETag;
+
+    Subscription(LocalDate from, LocalDate to, SseEmitter emitter) {
+      this.from = from;
+      this.to = to;
+      this.emitter = emitter;
+    }
+  }
+}
@@ -0,0 +1,43 @@
+package no.nav.jobsearch.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A slice of the updated date range of a fetch, fetched with its own cursor.
+ *
+ * @param oldest The oldest updated date of the slice
+ * @param newest The newest updated date of the slice, which is the oldest updated date of the next newer slice
+ */
+record TimeSlice(LocalDateTime oldest, LocalDateTime newest) {
+  /**
+   * Splits a date range into adjacent slices of equal length, newest first.
+   * The slices are at least a second long, as the feed only takes whole seconds,
+   * so a short range is split into fewer slices.
+   *
+   * @param oldest The oldest updated date of the range
+   * @param newest The newest updated date of the range
+   * @param count The number of slices
+   * @return The slices, covering the whole range
+   */
+  static List<TimeSlice> split(
+    LocalDateTime oldest,
+    LocalDateTime newest,
+    int count
+  ) {
+    long seconds = Duration.between(oldest, newest).toSeconds();
+    int slices = (int) Math.max(1, Math.min(count, seconds));
+    List<TimeSlice> result = new ArrayList<>(slices);
+    LocalDateTime sliceNewest = newest;
+    for (int slice = slices - 1; slice >= 0; slice--) {
+      LocalDateTime sliceOldest = slice == 0
+        ? oldest
+        : oldest.plusSeconds(seconds * slice / slices);
+      result.add(new TimeSlice(sliceOldest, sliceNewest));
+      sliceNewest = sliceOldest;
+    }
+    return result;
+  }
+}
@@ -0,0 +1,129 @@
+package no.nav.jobsearch.service;
+
+import java.util.UUID;
+
+/**
+ * Set of job ad UUIDs for the duration of an ingest run, like the UUIDs of the job ads already seen.
+ * The UUIDs are stored as two longs each, in open-addressed arrays with linear probing,
+ * so a UUID takes 32 to 64 bytes instead of the 150 or so of a {@code String} in a {@code HashSet}.
+ * UUIDs that are not in the standard format are hashed to a name-based UUID, like in the {@link JobAdSnapshot}.
+ * Not thread-safe, like the ingest runs that use it.
+ */
+final class UuidSet {
+
+  private static final int INITIAL_CAPACITY = 1024;
+
+  /**
+   * An empty slot has both halves zero, so the zero UUID is tracked on its own.
+   */
+  private long[] high = new long[INITIAL_CAPACITY];
+  private long[] low = new long[INITIAL_CAPACITY];
+  private boolean containsZero;
+  private int size;
+
+  static UuidSet of(String... uuids) {
+    UuidSet set = new UuidSet();
+    for (String uuid : uuids) {
+      set.add(uuid);
+    }
+    return set;
+  }
+
+  /**
+   * Adds a job ad UUID.
+   *
+   * @param uuid The UUID of the job ad
+   * @return {@code true} if the UUID was not in the set
+   */
+  boolean add(String uuid) {
+    return add(JobAdSnapshot.key(uuid));
+  }
+
+  boolean add(UUID uuid) {
+    long uuidHigh = uuid.getMostSignificantBits();
+    long uuidLow = uuid.getLeastSignificantBits();
+    if (uuidHigh == 0 && uuidLow == 0) {
+      if (containsZero) {
+        return false;
+      }
+      containsZero = true;
+      size++;
+      return true;
+    }
+    int slot = find(high, low, uuidHigh, uuidLow);
+    if (high[slot] != 0 || low[slot] != 0) {
+      return false;
+    }
+    high[slot] = uuidHigh;
+    low[slot] = uuidLow;
+    size++;
+    // Keep the table at most half full, so the probe sequences stay short
+    if (2 * size > high.length) {
+      grow();
+    }
+    return true;
+  }
+
+  boolean contains(String uuid) {
+    return contains(JobAdSnapshot.key(uuid));
+  }
+
+  boolean contains(UUID uuid) {
+    long uuidHigh = uuid.getMostSignificantBits();
+    long uuidLow = uuid.getLeastSignificantBits();
+    if (uuidHigh == 0 && uuidLow == 0) {
+      return containsZero;
+    }
+    int slot = find(high, low, uuidHigh, uuidLow);
+    return high[slot] != 0 || low[slot] != 0;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * Finds the slot of a UUID, or the empty slot it would be stored in.
+   */
+  private static int find(
+    long[] high,
+    long[] low,
+    long uuidHigh,
+    long uuidLow
+  ) {
+    int mask = high.length - 1;
+    int slot = hash(uuidHigh, uuidLow) & mask;
+    while (
+      (high[slot] != 0 || low[slot] != 0) &&
+      (high[slot] != uuidHigh || low[slot] != uuidLow)
+    ) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private void grow() {
+    long[] newHigh = new long[2 * high.length];
+    long[] newLow = new long[2 * low.length];
+    for (int slot = 0; slot < high.length; slot++) {
+      if (high[slot] != 0 || low[slot] != 0) {
+        int newSlot = find(newHigh, newLow, high[slot], low[slot]);
+        newHigh[newSlot] = high[slot];
+        newLow[newSlot] = low[slot];
+      }
+    }
+    high = newHigh;
+    low = newLow;
+  }
+
+  /**
+   * Mixes both halves, as name-based UUIDs and UUIDs of other versions differ in different bits.
+   */
+  private static int hash(long uuidHigh, long uuidLow) {
+    long hash = uuidHigh * 0x9e3779b97f4a7c15L ^ uuidLow;
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    return (int) hash;
+  }
+}
@@ -0,0 +1,203 @@
+package no.nav.jobsearch.service;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import no.nav.jobsearch.model.Granularity;
+import no.nav.jobsearch.model.PeriodStatistics;
+import no.nav.jobsearch.model.Technology;
+
+/**
+ * The long-term tier of the statistics: the weekly counts of the job ads that have been purged from the database.
+ * Before the ingest deletes expired and unpublished job ads, they are folded into these counts,
+ * so the weekly statistics keep their history over any number of years at one row per week,
+ * while the {@link JobAdSnapshot} and the job ads table only hold the job ads of the feed.
+ * Immutable, like the snapshot it is part of.
+ */
+class WeeklyHistory {
+
+  static final WeeklyHistory EMPTY = new WeeklyHistory(new TreeMap<>());
+
+  private final NavigableMap<LocalDate, PeriodStatistics> weeks;
+
+  private WeeklyHistory(NavigableMap<LocalDate, PeriodStatistics> weeks) {
+    this.weeks = Collections.unmodifiableNavigableMap(weeks);
+  }
+
+  /**
+   * Creates the history of the stored weekly counts.
+   *
+   * @param weeks The counts of each week, starting on the first day of the week
+   * @return The history
+   */
+  static WeeklyHistory of(Iterable<PeriodStatistics> weeks) {
+    NavigableMap<LocalDate, PeriodStatistics> history = new TreeMap<>();
+    weeks.forEach(week ->
+      history.merge(week.periodStart(), week, WeeklyHistory::sum)
+    );
+    return new WeeklyHistory(history);
+  }
+
+  /**
+   * Counts job ads per week of publication. Job ads without a published date are left out.
+   *
+   * @param rows The job ads
+   * @return The weekly counts of the job ads
+   */
+  static WeeklyHistory count(Collection<JobAdSnapshot.Row> rows) {
+    NavigableMap<LocalDate, PeriodStatistics> history = new TreeMap<>();
+    for (JobAdSnapshot.Row row : rows) {
+      LocalDate week = weekOf(row);
+      if (week == null) {
+        continue;
+      }
+      history.merge(
+        week,
+        new PeriodStatistics(
+          week,
+          Granularity.WEEK.nextPeriodStart(week),
+          Technology.KOTLIN.isIn(row.technologies()) ? 1 : 0,
+          Technology.JAVA.isIn(row.technologies()) ? 1 : 0,
+          1
+        ),
+        WeeklyHistory::sum
+      );
+    }
+    return new WeeklyHistory(history);
+  }
+
+  /**
+   * The week of publication a job ad is counted in.
+   *
+   * @param row The job ad
+   * @return The first day of the week, or {@code null} if the job ad has no published date
+   */
+  static LocalDate weekOf(JobAdSnapshot.Row row) {
+    return row.publishedDay() == JobAdSnapshot.NO_DATE
+      ? null
+      : Granularity.WEEK.periodStart(LocalDate.ofEpochDay(row.publishedDay()));
+  }
+
+  /**
+   * Adds the counts of another history, like the job ads purged by an ingest run.
+   *
+   * @param other The counts to add
+   * @return The history with the counts of both
+   */
+  WeeklyHistory plus(WeeklyHistory other) {
+    if (other.isEmpty()) {
+      return this;
+    }
+    NavigableMap<LocalDate, PeriodStatistics> history = new TreeMap<>(weeks);
+    other.weeks.forEach((week, statistics) ->
+      history.merge(week, statistics, WeeklyHistory::sum)
+    );
+    return new WeeklyHistory(history);
+  }
+
+  /**
+   * Subtracts the counts of another history, like the purged job ads that came back to the feed.
+   *
+   * @param other The counts to subtract
+   * @return The history without the counts of the other
+   */
+  WeeklyHistory minus(WeeklyHistory other) {
+    if (other.isEmpty()) {
+      return this;
+    }
+    NavigableMap<LocalDate, PeriodStatistics> history = new TreeMap<>(weeks);
+    other.weeks.forEach((week, statistics) ->
+      history.merge(week, negate(statistics), WeeklyHistory::sum)
+    );
+    return new WeeklyHistory(history);
+  }
+
+  boolean isEmpty() {
+    return weeks.isEmpty();
+  }
+
+  /**
+   * The weeks with counts, ordered by week.
+   */
+  Collection<PeriodStatistics> getWeeks() {
+    return weeks.values();
+  }
+
+  /**
+   * The first day of the first week with counts. Must not be called on an empty history.
+   */
+  LocalDate getFirstWeek() {
+    return weeks.firstKey();
+  }
+
+  /**
+   * The first day after the last week with counts. Must not be called on an empty history.
+   */
+  LocalDate getEndWeek() {
+    return weeks.lastEntry().getValue().periodEnd();
+  }
+
+  /**
+   * The counts of a week.
+   *
+   * @param weekStart The first day of the week
+   * @return The counts, or {@code null} if no job ads published in the week have been purged
+   */
+  PeriodStatistics week(LocalDate weekStart) {
+    return weeks.get(weekStart);
+  }
+
+  void writeTo(DataOutput out) throws IOException {
+    out.writeInt(weeks.size());
+    for (PeriodStatistics week : weeks.values()) {
+      out.writeLong(week.periodStart().toEpochDay());
+      out.writeLong(week.kotlinCount());
+      out.writeLong(week.javaCount());
+      out.writeLong(week.totalCount());
+    }
+  }
+
+  static WeeklyHistory readFrom(DataInput in) throws IOException {
+    NavigableMap<LocalDate, PeriodStatistics> history = new TreeMap<>();
+    int size = in.readInt();
+    for (int i = 0; i < size; i++) {
+      LocalDate week = LocalDate.ofEpochDay(in.readLong());
+      history.put(
+        week,
+        new PeriodStatistics(
+          week,
+          Granularity.WEEK.nextPeriodStart(week),
+          in.readLong(),
+          in.readLong(),
+          in.readLong()
+        )
+      );
+    }
+    return new WeeklyHistory(history);
+  }
+
+  private static PeriodStatistics negate(PeriodStatistics week) {
+    return new PeriodStatistics(
+      week.periodStart(),
+      week.periodEnd(),
+      -week.kotlinCount(),
+      -week.javaCount(),
+      -week.totalCount()
+    );
+  }
+
+  static PeriodStatistics sum(PeriodStatistics a, PeriodStatistics b) {
+    return new PeriodStatistics(
+      a.periodStart(),
+      a.periodEnd(),
+      a.kotlinCount() + b.kotlinCount(),
+      a.javaCount() + b.javaCount(),
+      a.totalCount() + b.totalCount()
+    );
+  }
+}
@@ -0,0 +1,157 @@
+package no.nav.jobsearch;
+
+import static org.mockito.Mockito.*;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.function.Supplier;
+import javax.sql.DataSource;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.resource.jdbc.spi.PhysicalConnectionHandlingMode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.vendor.HibernateJpaDialect;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@ExtendWith(MockitoExtension.class)
+class DataSourceConfigTest {
+
+  @Mock
+  private DataSource primaryDataSource;
+
+  @Mock
+  private DataSource replicaDataSource;
+
+  @Mock
+  private Connection connection;
+
+  @Mock
+  private EntityManagerFactory entityManagerFactory;
+
+  @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+  private EntityManager entityManager;
+
+  @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+  private SessionImplementor session;
+
+  private DataSource dataSource;
+
+  @BeforeEach
+  void setUp() {
+    dataSource =
+      new DataSourceConfig().dataSource(primaryDataSource, replicaDataSource);
+  }
+
+  @Test
+  void testReadOnlyTransactionUsesReplica() throws SQLException {
+    when(replicaDataSource.getConnection()).thenReturn(connection);
+
+    executeQuery(true);
+
+    verify(replicaDataSource).getConnection();
+    verifyNoInteractions(primaryDataSource);
+  }
+
+  @Test
+  void testReadWriteTransactionUsesPrimary() throws SQLException {
+    when(primaryDataSource.getConnection()).thenReturn(connection);
+
+    executeQuery(false);
+
+    verify(primaryDataSource).getConnection();
+    verifyNoInteractions(replicaDataSource);
+  }
+
+  @Test
+  void testReadOnlyJpaTransactionUsesReplica() throws SQLException {
+    Connection sessionConnection = givenHibernateSession();
+    when(replicaDataSource.getConnection()).thenReturn(connection);
+
+    executeQuery(jpaTransactionManager(), true, () -> sessionConnection);
+
+    verify(replicaDataSource).getConnection();
+    verifyNoInteractions(primaryDataSource);
+  }
+
+  @Test
+  void testReadWriteJpaTransactionUsesPrimary() throws SQLException {
+    Connection sessionConnection = givenHibernateSession();
+    when(primaryDataSource.getConnection()).thenReturn(connection);
+
+    executeQuery(jpaTransactionManager(), false, () -> sessionConnection);
+
+    verify(primaryDataSource).getConnection();
+    verifyNoInteractions(replicaDataSource);
+  }
+
+  /**
+   * Mocks a Hibernate session that holds its connection of the datasource from the first use to the end of the session,
+   * as Spring Boot configures it, so the JPA dialect prepares the connection before it is fetched from a pool.
+   *
+   * @return The connection of the session
+   */
+  private Connection givenHibernateSession() throws SQLException {
+    Connection sessionConnection = dataSource.getConnection();
+    when(entityManagerFactory.createEntityManager()).thenReturn(entityManager);
+    when(entityManager.unwrap(SessionImplementor.class)).thenReturn(session);
+    when(
+      session
+        .getJdbcCoordinator()
+        .getLogicalConnection()
+        .getConnectionHandlingMode()
+    )
+      .thenReturn(PhysicalConnectionHandlingMode.DELAYED_ACQUISITION_AND_HOLD);
+    when(
+      session
+        .getJdbcCoordinator()
+        .getLogicalConnection()
+        .getPhysicalConnection()
+    )
+      .thenReturn(sessionConnection);
+    return sessionConnection;
+  }
+
+  private JpaTransactionManager jpaTransactionManager() {
+    JpaTransactionManager transactionManager = new JpaTransactionManager(
+      entityManagerFactory
+    );
+    transactionManager.setJpaDialect(new HibernateJpaDialect());
+    return transactionManager;
+  }
+
+  private void executeQuery(boolean readOnly) {
+    executeQuery(
+      new DataSourceTransactionManager(dataSource),
+      readOnly,
+      () -> DataSourceUtils.getConnection(dataSource)
+    );
+  }
+
+  private void executeQuery(
+    PlatformTransactionManager transactionManager,
+    boolean readOnly,
+    Supplier<Connection> transactionConnection
+  ) {
+    TransactionTemplate transaction = new TransactionTemplate(
+      transactionManager
+    );
+    transaction.setReadOnly(readOnly);
+    transaction.executeWithoutResult(status -> {
+      try {
+        transactionConnection.get().createStatement();
+      } catch (SQLException e) {
+        throw new IllegalStateException(e);
+      }
+    });
+  }
+}
@@ -0,0 +1,61 @@
+package no.nav.jobsearch;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import no.nav.jobsearch.service.FeedService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.springframework.core.env.Environment;
+
+@Timeout(10)
+class JobFetchSchedulerTest {
+
+  private final FeedService feedService = mock(FeedService.class);
+
+  private final JobFetchScheduler scheduler = new JobFetchScheduler(
+    feedService,
+    mock(Environment.class),
+    List.of("IT", "Bygg og anlegg"),
+    true
+  );
+
+  @AfterEach
+  void tearDown() {
+    scheduler.shutdown();
+  }
+
+  @Test
+  void testRunsAreSkippedWhileATaskRunsExclusively() {
+    scheduler.runExclusively(() -> {
+      // The runs are made on other threads, as the locks are reentrant
+      CompletableFuture
+        .runAsync(() -> {
+          scheduler.updateAllJobs("IT");
+          scheduler.fetchUpdatedJobs("Bygg og anlegg");
+        })
+        .orTimeout(5, TimeUnit.SECONDS)
+        .join();
+    });
+
+    verifyNoInteractions(feedService);
+  }
+
+  @Test
+  void testFullRefreshIsSkippedWhileAnotherRunOfTheCategoryIsInProgress() {
+    doAnswer(invocation ->
+        CompletableFuture.runAsync(() -> scheduler.updateAllJobs("IT")).join()
+      )
+      .when(feedService)
+      .fetchAndSaveUpdatedJobs(eq("IT"), any());
+
+    scheduler.fetchUpdatedJobs("IT");
+
+    verify(feedService).fetchAndSaveUpdatedJobs(eq("IT"), any());
+    verify(feedService, never()).fetchAndUpdateAllJobs(any(), any());
+  }
+}
@@ -0,0 +1,24 @@
+package no.nav.jobsearch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class UtilTest {
+
+  @Test
+  void testGzipIsAcceptedWhenListed() {
+    assertThat(Util.acceptsGzip("gzip")).isTrue();
+    assertThat(Util.acceptsGzip("deflate, GZIP;q=0.5, br")).isTrue();
+    assertThat(Util.acceptsGzip("br;q=1.0, *;q=0.1")).isTrue();
+  }
+
+  @Test
+  void testGzipIsRefusedWithQualityZero() {
+    assertThat(Util.acceptsGzip(null)).isFalse();
+    assertThat(Util.acceptsGzip("identity")).isFalse();
+    assertThat(Util.acceptsGzip("gzip;q=0")).isFalse();
+    assertThat(Util.acceptsGzip("br, gzip; q=0.0")).isFalse();
+    assertThat(Util.acceptsGzip("*, gzip;q=0")).isFalse();
+  }
+}
@@ -0,0 +1,213 @@
+package no.nav.jobsearch.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import no.nav.jobsearch.model.JobAdDto;
+import no.nav.jobsearch.model.JobFeedResponse;
+
+/**
+ * Local stand-in for the arbeidsplassen public feed, serving generated job ads in pages.
+ * Honours the {@code updated}, {@code size} and {@code page} query parameters of the real feed,
+ * and returns the ads sorted by updated date, newest first.
+ * A share of the requests can be failed with {@code 503 Service Unavailable}
+ * or throttled with {@code 429 Too Many Requests}. The fetcher only retries client errors like the 429s,
+ * while a 503 fails the fetch right away and counts towards opening the circuit breaker.
+ */
+public class FeedSimulator implements AutoCloseable {
+
+  private static final ObjectMapper objectMapper = new ObjectMapper()
+    .findAndRegisterModules();
+
+  private final List<JobAdDto> ads;
+  private final List<LocalDateTime> updatedDates;
+  private final Duration latency;
+  private final double errorRate;
+  private final double throttleRate;
+  private final HttpServer server;
+  private final AtomicInteger requestCount = new AtomicInteger();
+  private final AtomicInteger errorCount = new AtomicInteger();
+  private final AtomicInteger throttleCount = new AtomicInteger();
+
+  /**
+   * Starts a simulator on a random local port.
+   *
+   * @param adCount The number of generated job ads
+   * @param newest The updated date of the newest generated job ad
+   * @param latency The latency added to every response
+   */
+  public FeedSimulator(int adCount, LocalDateTime newest, Duration latency)
+    throws IOException {
+    this(adCount, newest, latency, 0, 0);
+  }
+
+  /**
+   * Starts a simulator on a random local port, failing a share of the requests.
+   *
+   * @param adCount The number of generated job ads
+   * @param newest The updated date of the newest generated job ad
+   * @param latency The latency added to every response
+   * @param errorRate The share of requests answered with {@code 503 Service Unavailable}, which are not retried
+   * @param throttleRate The share of requests answered with {@code 429 Too Many Requests}, which are retried
+   */
+  public FeedSimulator(
+    int adCount,
+    LocalDateTime newest,
+    Duration latency,
+    double errorRate,
+    double throttleRate
+  ) throws IOException {
+    this.ads = generateAds(adCount, newest);
+    this.updatedDates =
+      ads.stream().map(JobAdDto::getPublishedAsLocalDateTime).toList();
+    this.latency = latency;
+    this.errorRate = errorRate;
+    this.throttleRate = throttleRate;
+    this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    server.createContext("/ads", this::handle);
+    server.start();
+  }
+
+  public String getUrl() {
+    return "http://localhost:" + server.getAddress().getPort() + "/ads";
+  }
+
+  public int getRequestCount() {
+    return requestCount.get();
+  }
+
+  public int getErrorCount() {
+    return errorCount.get();
+  }
+
+  public int getThrottleCount() {
+    return throttleCount.get();
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    requestCount.incrementAndGet();
+    try {
+      Thread.sleep(latency);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    double failure = ThreadLocalRandom.current().nextDouble();
+    if (failure < errorRate) {
+      errorCount.incrementAndGet();
+      exchange.sendResponseHeaders(503, -1);
+      exchange.close();
+      return;
+    }
+    if (failure < errorRate + throttleRate) {
+      throttleCount.incrementAndGet();
+      exchange.getResponseHeaders().set("Retry-After", "1");
+      exchange.sendResponseHeaders(429, -1);
+      exchange.close();
+      return;
+    }
+
+    Map<String, String> query = parseQuery(
+      exchange.getRequestURI().getRawQuery()
+    );
+    String[] updated = query
+      .get("updated")
+      .replaceAll("[()]", "")
+      .split(",");
+    LocalDateTime from = LocalDateTime.parse(updated[0]);
+    LocalDateTime to = LocalDateTime.parse(updated[1]);
+    int size = Integer.parseInt(query.get("size"));
+    int page = Integer.parseInt(query.getOrDefault("page", "0"));
+
+    // The ads are sorted newest first, so the matching ads are a contiguous range
+    int first = 0;
+    while (first < ads.size() && !updatedDates.get(first).isBefore(to)) {
+      first++;
+    }
+    int last = first;
+    while (last < ads.size() && !updatedDates.get(last).isBefore(from)) {
+      last++;
+    }
+    List<JobAdDto> matching = ads.subList(first, last);
+    int totalPages = (matching.size() + size - 1) / size;
+    List<JobAdDto> content = matching.subList(
+      Math.min(page * size, matching.size()),
+      Math.min((page + 1) * size, matching.size())
+    );
+
+    byte[] body = objectMapper.writeValueAsBytes(
+      new JobFeedResponse(content, page, totalPages)
+    );
+    exchange.getResponseHeaders().set("Content-Type", "application/json");
+    exchange.sendResponseHeaders(200, body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+  }
+
+  private static Map<String, String> parseQuery(String rawQuery) {
+    Map<String, String> query = new HashMap<>();
+    for (String parameter : rawQuery.split("&")) {
+      String[] keyValue = parameter.split("=", 2);
+      query.put(
+        keyValue[0],
+        URLDecoder.decode(keyValue[1], StandardCharsets.UTF_8)
+      );
+    }
+    return query;
+  }
+
+  /**
+   * Generates job ads updated one minute apart, newest first.
+   * The published and updated dates are equal, as the fetcher uses the published date
+   * of the last ad on a page as the upper bound of the updated range of the next request.
+   */
+  private static List<JobAdDto> generateAds(int adCount, LocalDateTime newest) {
+    List<JobAdDto> ads = new ArrayList<>(adCount);
+    for (int i = 0; i < adCount; i++) {
+      String timestamp = newest
+        .minusMinutes(i)
+        .atOffset(ZoneOffset.UTC)
+        .toString();
+      JobAdDto ad = new JobAdDto();
+      ad.setUuid(UUID.randomUUID().toString());
+      ad.setTitle("Utvikler " + i);
+      ad.setDescription(
+        i % 3 == 0 ? "Vi søker en Kotlin-utvikler" : "Vi søker en Java-utvikler"
+      );
+      ad.setPublished(timestamp);
+      ad.setUpdated(timestamp);
+      ad.setExpires(
+        newest.plusMonths(1).atOffset(ZoneOffset.UTC).toString()
+      );
+      ads.add(ad);
+    }
+    ads.sort(
+      Comparator.comparing(JobAdDto::getPublishedAsLocalDateTime).reversed()
+    );
+    return ads;
+  }
+}
@@ -0,0 +1,54 @@
+package no.nav.jobsearch.loadtest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import no.nav.jobsearch.service.FeedCircuitBreaker;
+import no.nav.jobsearch.service.FeedUnavailableException;
+import no.nav.jobsearch.service.JobFetcher;
+import org.junit.jupiter.api.Test;
+
+class FeedSimulatorTest {
+
+  @Test
+  void testInjectedErrorsOpenTheCircuitBreaker() throws Exception {
+    LocalDateTime now = LocalDateTime.now().withNano(0);
+    FeedCircuitBreaker circuitBreaker = new FeedCircuitBreaker(3, 600_000, 1);
+
+    try (
+      FeedSimulator feed = new FeedSimulator(100, now, Duration.ZERO, 1, 0)
+    ) {
+      JobFetcher jobFetcher = FetchThreadingLoadTest.jobFetcher(
+        feed.getUrl(),
+        false,
+        1,
+        circuitBreaker
+      );
+      for (int i = 0; i < 3; i++) {
+        assertThatThrownBy(() -> fetch(jobFetcher, now))
+          .isInstanceOf(RuntimeException.class);
+      }
+
+      assertThat(circuitBreaker.getState())
+        .isEqualTo(FeedCircuitBreaker.State.OPEN);
+      assertThatThrownBy(() -> fetch(jobFetcher, now))
+        .isInstanceOf(FeedUnavailableException.class);
+      // Every run failed on its first request, and the open breaker kept the last run from the feed
+      assertThat(feed.getErrorCount()).isEqualTo(3);
+      assertThat(feed.getRequestCount()).isEqualTo(3);
+      jobFetcher.shutdown();
+    }
+  }
+
+  private static void fetch(JobFetcher jobFetcher, LocalDateTime now) {
+    jobFetcher.fetchJobs(
+      "IT",
+      now,
+      now.minusMonths(6),
+      now.plusSeconds(1),
+      jobAdDtos -> {}
+    );
+  }
+}
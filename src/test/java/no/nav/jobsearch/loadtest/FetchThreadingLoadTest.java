@@ -0,0 +1,110 @@
+package no.nav.jobsearch.loadtest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+import no.nav.jobsearch.AppConfig;
+import no.nav.jobsearch.service.FeedCircuitBreaker;
+import no.nav.jobsearch.service.JobFetcher;
+import no.nav.jobsearch.service.JobFetcherWithRetry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Compares the throughput and the number of platform threads of a full fetch
+ * with platform threads and with virtual threads, against a simulated feed with a fixed latency.
+ * Run with: mvn test -Dgroups=load -DexcludedGroups= -Dtest=FetchThreadingLoadTest
+ */
+@Tag("load")
+class FetchThreadingLoadTest {
+
+  private static final int AD_COUNT = 20_000;
+  private static final int PAGE_SIZE = 100;
+  private static final Duration LATENCY = Duration.ofMillis(50);
+
+  @ParameterizedTest(name = "virtualThreads={0}, fetchConcurrency={1}")
+  @CsvSource({ "false, 1", "false, 32", "true, 32", "true, 200" })
+  void fetchAllPages(boolean virtualThreads, int fetchConcurrency)
+    throws Exception {
+    LocalDateTime now = LocalDateTime.now().withNano(0);
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    try (FeedSimulator feed = new FeedSimulator(AD_COUNT, now, LATENCY)) {
+      JobFetcher jobFetcher = jobFetcher(
+        feed.getUrl(),
+        virtualThreads,
+        fetchConcurrency
+      );
+      AtomicInteger fetchedAds = new AtomicInteger();
+
+      threads.resetPeakThreadCount();
+      long start = System.nanoTime();
+      jobFetcher.fetchJobs(
+        "IT",
+        now,
+        now.minusMonths(6),
+        now.plusSeconds(1),
+        jobAdDtos -> fetchedAds.addAndGet(jobAdDtos.size())
+      );
+      Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+      jobFetcher.shutdown();
+
+      System.out.printf(
+        "virtualThreads=%s fetchConcurrency=%d pages=%d ads=%d wallMs=%d pagesPerSecond=%.1f peakPlatformThreads=%d%n",
+        virtualThreads,
+        fetchConcurrency,
+        feed.getRequestCount(),
+        fetchedAds.get(),
+        elapsed.toMillis(),
+        feed.getRequestCount() * 1000.0 / elapsed.toMillis(),
+        threads.getPeakThreadCount()
+      );
+      assertThat(fetchedAds.get()).isPositive();
+    }
+  }
+
+  private static JobFetcher jobFetcher(
+    String url,
+    boolean virtualThreads,
+    int fetchConcurrency
+  ) {
+    return jobFetcher(
+      url,
+      virtualThreads,
+      fetchConcurrency,
+      new FeedCircuitBreaker(3, 600_000, 1)
+    );
+  }
+
+  /**
+   * Creates a fetcher of the simulated feed without a Spring context, and so without the retries of {@code @Retryable}.
+   */
+  static JobFetcher jobFetcher(
+    String url,
+    boolean virtualThreads,
+    int fetchConcurrency,
+    FeedCircuitBreaker circuitBreaker
+  ) {
+    JobFetcherWithRetry jobFetcherWithRetry = new JobFetcherWithRetry(
+      new AppConfig().restTemplate(virtualThreads),
+      new SimpleMeterRegistry()
+    );
+    ReflectionTestUtils.setField(jobFetcherWithRetry, "apiUrl", url);
+    ReflectionTestUtils.setField(jobFetcherWithRetry, "token", "token");
+    ReflectionTestUtils.setField(jobFetcherWithRetry, "batchSize", PAGE_SIZE);
+
+    return new JobFetcher(
+      jobFetcherWithRetry,
+      circuitBreaker,
+      fetchConcurrency,
+      virtualThreads
+    );
+  }
+}
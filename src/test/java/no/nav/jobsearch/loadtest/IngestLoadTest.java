@@ -0,0 +1,136 @@
+package no.nav.jobsearch.loadtest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import jakarta.persistence.EntityManagerFactory;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import no.nav.jobsearch.repository.JobAdRepository;
+import no.nav.jobsearch.service.FeedService;
+import no.nav.jobsearch.service.JobFetcherWithRetry;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Runs a full refresh with {@link FeedService#fetchAndUpdateAllJobs} end to end,
+ * against a simulated feed and the load test database of the local Postgres from docker-compose.yaml,
+ * and reports the wall time, the heap peak, the number of database statements and the throughput.
+ * The job ad table is emptied before every run, so the test runs against a database of its own,
+ * {@code jobdb_loadtest} by default (override with {@code -Dloadtest.datasource.url=<url>}).
+ * Run with: mvn test -Dgroups=load -DexcludedGroups= -Dtest=IngestLoadTest
+ */
+@Tag("load")
+@SpringBootTest(
+  properties = {
+    "spring.jpa.properties.hibernate.generate_statistics=true",
+    "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN",
+    "retry.maxDelay=10",
+    "retry.backoff.multiplier=2",
+  }
+)
+@TestPropertySource(locations = "classpath:loadtest.properties")
+@ActiveProfiles("test")
+class IngestLoadTest {
+
+  private static final Duration LATENCY = Duration.ofMillis(5);
+
+  @Autowired
+  private FeedService feedService;
+
+  @Autowired
+  private JobFetcherWithRetry jobFetcherWithRetry;
+
+  @Autowired
+  private JobAdRepository jobAdRepository;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  private EntityManagerFactory entityManagerFactory;
+
+  @ParameterizedTest(name = "ads={0}, throttleRate={1}")
+  @CsvSource({ "10000, 0", "100000, 0", "100000, 0.01" })
+  void fetchAndUpdateAllJobs(int adCount, double throttleRate)
+    throws Exception {
+    LocalDateTime now = LocalDateTime.now().withNano(0);
+    jdbcTemplate.update("DELETE FROM job_ad");
+
+    try (
+      FeedSimulator feed = new FeedSimulator(
+        adCount,
+        now.minusSeconds(1),
+        LATENCY,
+        0,
+        throttleRate
+      )
+    ) {
+      ReflectionTestUtils.setField(
+        jobFetcherWithRetry,
+        "apiUrl",
+        feed.getUrl()
+      );
+      Statistics statistics = entityManagerFactory
+        .unwrap(SessionFactory.class)
+        .getStatistics();
+      statistics.clear();
+      List<MemoryPoolMXBean> heapPools = heapPools();
+      heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+
+      long start = System.nanoTime();
+      feedService.fetchAndUpdateAllJobs("IT", now);
+      Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+      long storedAds = jobAdRepository.count();
+      System.out.printf(
+        "ads=%d throttleRate=%.2f requests=%d throttled=%d storedAds=%d wallMs=%d adsPerSecond=%.1f heapPeakMb=%d statements=%d inserts=%d updates=%d deletes=%d queries=%d%n",
+        adCount,
+        throttleRate,
+        feed.getRequestCount(),
+        feed.getThrottleCount(),
+        storedAds,
+        elapsed.toMillis(),
+        storedAds * 1000.0 / Math.max(1, elapsed.toMillis()),
+        heapPeak(heapPools) / (1024 * 1024),
+        statistics.getPrepareStatementCount(),
+        statistics.getEntityInsertCount(),
+        statistics.getEntityUpdateCount(),
+        statistics.getEntityDeleteCount(),
+        statistics.getQueryExecutionCount()
+      );
+      assertThat(storedAds).isPositive();
+    }
+  }
+
+  private static List<MemoryPoolMXBean> heapPools() {
+    return ManagementFactory
+      .getMemoryPoolMXBeans()
+      .stream()
+      .filter(pool -> pool.getType() == MemoryType.HEAP)
+      .toList();
+  }
+
+  /**
+   * Sums the peak usage of the heap pools since they were reset.
+   * The pools peak at different times, so this is an upper bound of the heap peak.
+   */
+  private static long heapPeak(List<MemoryPoolMXBean> heapPools) {
+    return heapPools
+      .stream()
+      .mapToLong(pool -> pool.getPeakUsage().getUsed())
+      .sum();
+  }
+}
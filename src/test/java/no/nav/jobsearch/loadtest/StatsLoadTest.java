@@ -0,0 +1,235 @@
+package no.nav.jobsearch.loadtest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import no.nav.jobsearch.model.Technology;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+/**
+ * Drives the statistics endpoints at fixed request rates against the load test database of the local Postgres
+ * from docker-compose.yaml,
+ * after seeding the job ad table with synthetic job ads at several scales.
+ * The requests are sent on schedule whether or not earlier requests have completed,
+ * and the latency is measured from the scheduled send time, so a slow server is not hidden
+ * by the load generator backing off.
+ * The latencies are printed as percentiles and written as HdrHistogram logs to {@code loadtest.output}
+ * (default {@code target/stats-load}), so that the runs of different commits can be compared
+ * with the HdrHistogram log tools.
+ * The job ad table is emptied before every run, and every scale runs in a fresh application context
+ * without a snapshot file, so the statistics snapshot is loaded from the seeded table.
+ * The test runs against a database of its own, {@code jobdb_loadtest} by default
+ * (override with {@code -Dloadtest.datasource.url=<url>}).
+ * Run with: mvn test -Dgroups=load -DexcludedGroups= -Dtest=StatsLoadTest
+ */
+@Tag("load")
+@SpringBootTest(
+  webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+  properties = "stats.snapshot.file="
+)
+@TestPropertySource(locations = "classpath:loadtest.properties")
+@ActiveProfiles("test")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class StatsLoadTest {
+
+  private static final List<Endpoint> ENDPOINTS = List.of(
+    new Endpoint("weekly", "/stats/kotlin-vs-java"),
+    new Endpoint("daily", "/stats/kotlin-vs-java/periods?granularity=day")
+  );
+  private static final int[] RATES = { 100, 500, 2000 };
+  private static final Duration WARMUP = Duration.ofSeconds(5);
+  private static final Duration DURATION = Duration.ofSeconds(20);
+  private static final int SEED_BATCH_SIZE = 5000;
+
+  @LocalServerPort
+  private int port;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  private final HttpClient httpClient = HttpClient
+    .newBuilder()
+    .version(HttpClient.Version.HTTP_1_1)
+    .build();
+
+  @ParameterizedTest(name = "ads={0}")
+  @ValueSource(ints = { 10_000, 100_000, 1_000_000 })
+  void driveStatsEndpoints(int adCount) throws Exception {
+    seed(jdbcTemplate, adCount);
+    Path output = Path.of(
+      System.getProperty("loadtest.output", "target/stats-load")
+    );
+    Files.createDirectories(output);
+
+    for (Endpoint endpoint : ENDPOINTS) {
+      URI uri = URI.create("http://localhost:" + port + endpoint.path());
+      long coldStart = System.nanoTime();
+      assertThat(send(uri)).isEqualTo(200);
+      Duration cold = Duration.ofNanos(System.nanoTime() - coldStart);
+
+      drive(uri, RATES[0], WARMUP);
+      for (int rate : RATES) {
+        Result result = drive(uri, rate, DURATION);
+        Histogram histogram = result.histogram();
+        System.out.printf(
+          "ads=%d endpoint=%s rate=%d requests=%d failures=%d coldMs=%d p50Ms=%.2f p90Ms=%.2f p99Ms=%.2f p999Ms=%.2f maxMs=%.2f%n",
+          adCount,
+          endpoint.name(),
+          rate,
+          histogram.getTotalCount(),
+          result.failures(),
+          cold.toMillis(),
+          millis(histogram.getValueAtPercentile(50)),
+          millis(histogram.getValueAtPercentile(90)),
+          millis(histogram.getValueAtPercentile(99)),
+          millis(histogram.getValueAtPercentile(99.9)),
+          millis(histogram.getMaxValue())
+        );
+        write(
+          histogram,
+          output.resolve(
+            "ads-%d-%s-%drps.hlog".formatted(adCount, endpoint.name(), rate)
+          )
+        );
+        assertThat(result.failures()).isZero();
+      }
+    }
+  }
+
+  /**
+   * Replaces the job ads with synthetic job ads, published in the last six months
+   * and mentioning Kotlin, Java, both or neither. The same seed gives the same job ads.
+   */
+  static void seed(JdbcTemplate jdbcTemplate, int adCount) {
+    jdbcTemplate.update("DELETE FROM job_ad");
+    Random random = new Random(adCount);
+    LocalDateTime now = LocalDateTime.now().withNano(0);
+    long kotlin = Technology.KOTLIN.flag();
+    long java = Technology.JAVA.flag();
+    long[] technologies = { kotlin, java, java, kotlin | java, 0 };
+
+    List<Object[]> batch = new ArrayList<>(SEED_BATCH_SIZE);
+    for (int i = 0; i < adCount; i++) {
+      LocalDateTime published = now.minusMinutes(
+        random.nextInt(6 * 30 * 24 * 60)
+      );
+      batch.add(
+        new Object[] {
+          new UUID(random.nextLong(), random.nextLong()).toString(),
+          "Utvikler " + i,
+          technologies[random.nextInt(technologies.length)],
+          published,
+          published,
+          published.plusDays(1 + random.nextInt(60)),
+        }
+      );
+      if (batch.size() == SEED_BATCH_SIZE || i == adCount - 1) {
+        jdbcTemplate.batchUpdate(
+          "INSERT INTO job_ad (uuid, title, technologies, published, updated, expires) VALUES (?, ?, ?, ?, ?, ?)",
+          batch
+        );
+        batch.clear();
+      }
+    }
+  }
+
+  /**
+   * Sends requests at a fixed rate for the given duration, and records the latency
+   * of every request from the time it was scheduled to be sent.
+   */
+  private Result drive(URI uri, int rate, Duration duration) {
+    Histogram histogram = new ConcurrentHistogram(
+      TimeUnit.MINUTES.toNanos(1),
+      3
+    );
+    AtomicInteger failures = new AtomicInteger();
+    long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+    long requests = duration.toNanos() / interval;
+
+    try (
+      ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()
+    ) {
+      long start = System.nanoTime();
+      for (long i = 0; i < requests; i++) {
+        long scheduled = start + i * interval;
+        LockSupport.parkNanos(scheduled - System.nanoTime());
+        executor.execute(() -> {
+          if (send(uri) != 200) {
+            failures.incrementAndGet();
+          }
+          histogram.recordValue(
+            Math.min(
+              System.nanoTime() - scheduled,
+              histogram.getHighestTrackableValue()
+            )
+          );
+        });
+      }
+    }
+    return new Result(histogram, failures.get());
+  }
+
+  private int send(URI uri) {
+    try {
+      return httpClient
+        .send(
+          HttpRequest.newBuilder(uri).GET().build(),
+          HttpResponse.BodyHandlers.discarding()
+        )
+        .statusCode();
+    } catch (IOException e) {
+      return -1;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return -1;
+    }
+  }
+
+  private static void write(Histogram histogram, Path path)
+    throws IOException {
+    try (PrintStream out = new PrintStream(Files.newOutputStream(path))) {
+      HistogramLogWriter writer = new HistogramLogWriter(out);
+      writer.outputLogFormatVersion();
+      writer.outputLegend();
+      writer.outputIntervalHistogram(histogram);
+    }
+  }
+
+  private static double millis(long nanos) {
+    return nanos / 1_000_000.0;
+  }
+
+  private record Endpoint(String name, String path) {}
+
+  private record Result(Histogram histogram, int failures) {}
+}
@@ -0,0 +1,174 @@
+package no.nav.jobsearch.loadtest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import no.nav.jobsearch.JobsearchApplication;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Compares the throughput and the number of platform threads of the statistics endpoints
+ * served by Tomcat with platform threads and with virtual threads.
+ * Every mode runs the application in a context of its own, with {@code spring.threads.virtual.enabled} set or not,
+ * against the load test database of the local Postgres from docker-compose.yaml, seeded with synthetic job ads.
+ * A fixed number of clients send requests back to back, so the throughput is what the server sustains,
+ * and the platform threads of the server's connector are sampled while they do:
+ * with platform threads Tomcat grows its worker pool with the concurrent requests,
+ * and with virtual threads it runs every request on a virtual thread of its own.
+ * Run with: mvn test -Dgroups=load -DexcludedGroups= -Dtest=StatsThreadingLoadTest
+ */
+@Tag("load")
+class StatsThreadingLoadTest {
+
+  private static final int AD_COUNT = 100_000;
+  private static final int CLIENTS = 400;
+  private static final Duration WARMUP = Duration.ofSeconds(5);
+  private static final Duration DURATION = Duration.ofSeconds(20);
+  private static final String PATH = "/stats/kotlin-vs-java";
+
+  private final HttpClient httpClient = HttpClient
+    .newBuilder()
+    .version(HttpClient.Version.HTTP_1_1)
+    .build();
+
+  @ParameterizedTest(name = "virtualThreads={0}")
+  @ValueSource(booleans = { false, true })
+  void serveStats(boolean virtualThreads) {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    // The connector threads of the previous mode may not have ended yet
+    Set<Thread> earlierThreads = Thread.getAllStackTraces().keySet();
+
+    try (ConfigurableApplicationContext context = application(virtualThreads)) {
+      StatsLoadTest.seed(context.getBean(JdbcTemplate.class), AD_COUNT);
+      String port = context.getEnvironment().getProperty("local.server.port");
+      URI uri = URI.create("http://localhost:" + port + PATH);
+      assertThat(send(uri)).isEqualTo(200);
+
+      drive(uri, WARMUP);
+      threads.resetPeakThreadCount();
+      AtomicInteger peakServerThreads = new AtomicInteger();
+      Thread sampler = Thread
+        .ofPlatform()
+        .daemon()
+        .start(() -> sampleServerThreads(earlierThreads, peakServerThreads));
+      Result result = drive(uri, DURATION);
+      sampler.interrupt();
+
+      System.out.printf(
+        "virtualThreads=%s clients=%d requests=%d failures=%d requestsPerSecond=%.1f peakServerPlatformThreads=%d peakPlatformThreads=%d%n",
+        virtualThreads,
+        CLIENTS,
+        result.requests(),
+        result.failures(),
+        result.requests() * 1000.0 / DURATION.toMillis(),
+        peakServerThreads.get(),
+        threads.getPeakThreadCount()
+      );
+      assertThat(result.failures()).isZero();
+    }
+  }
+
+  /**
+   * Starts the application on a random port, without the ingest schedules and without a snapshot file,
+   * so the statistics snapshot is loaded from the seeded table.
+   */
+  private static ConfigurableApplicationContext application(
+    boolean virtualThreads
+  ) {
+    // Given as arguments, as default properties don't override application.properties
+    return new SpringApplicationBuilder(JobsearchApplication.class)
+      .profiles("test")
+      .run(
+        "--spring.config.additional-location=classpath:/loadtest.properties",
+        "--spring.threads.virtual.enabled=" + virtualThreads,
+        "--server.port=0",
+        "--stats.snapshot.file="
+      );
+  }
+
+  /**
+   * Sends requests back to back from every client, on virtual threads, for the given duration.
+   */
+  private Result drive(URI uri, Duration duration) {
+    AtomicLong requests = new AtomicLong();
+    AtomicInteger failures = new AtomicInteger();
+    long end = System.nanoTime() + duration.toNanos();
+
+    try (
+      ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()
+    ) {
+      for (int i = 0; i < CLIENTS; i++) {
+        clients.execute(() -> {
+          while (System.nanoTime() < end) {
+            if (send(uri) == 200) {
+              requests.incrementAndGet();
+            } else {
+              failures.incrementAndGet();
+            }
+          }
+        });
+      }
+    }
+    return new Result(requests.get(), failures.get());
+  }
+
+  /**
+   * Samples the live platform threads of the connector every 100 ms, until interrupted.
+   * Virtual threads are not live platform threads, so they aren't counted.
+   */
+  private static void sampleServerThreads(
+    Set<Thread> earlierThreads,
+    AtomicInteger peak
+  ) {
+    while (!Thread.currentThread().isInterrupted()) {
+      int count = (int) Thread
+        .getAllStackTraces()
+        .keySet()
+        .stream()
+        .filter(thread -> thread.getName().startsWith("http-nio-"))
+        .filter(thread -> !earlierThreads.contains(thread))
+        .count();
+      peak.accumulateAndGet(count, Math::max);
+      try {
+        Thread.sleep(100);
+      } catch (InterruptedException e) {
+        return;
+      }
+    }
+  }
+
+  private int send(URI uri) {
+    try {
+      return httpClient
+        .send(
+          HttpRequest.newBuilder(uri).GET().build(),
+          HttpResponse.BodyHandlers.discarding()
+        )
+        .statusCode();
+    } catch (IOException e) {
+      return -1;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return -1;
+    }
+  }
+
+  private record Result(long requests, int failures) {}
+}
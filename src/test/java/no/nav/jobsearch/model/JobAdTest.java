@@ -0,0 +1,95 @@
+package no.nav.jobsearch.model;
+
+import static org.assertj.core.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+class JobAdTest {
+
+  private static final String DESCRIPTION =
+    "<p>Vi søker en utvikler med erfaring i Kotlin og Java.</p>";
+
+  @Test
+  void testTextStorageKeepsPlainDescription() {
+    JobAd jobAd = new JobAd(dto(), DescriptionStorage.TEXT);
+
+    assertThat(jobAd.getDescription()).isEqualTo(DESCRIPTION);
+    assertThat(jobAd.getCompressedDescription()).isNull();
+    assertThat(jobAd.getTechnologies())
+      .isEqualTo(Technology.KOTLIN.flag() | Technology.JAVA.flag());
+  }
+
+  @Test
+  void testCompressedStorageKeepsOnlyCompressedDescription() {
+    JobAd jobAd = new JobAd(dto(), DescriptionStorage.COMPRESSED);
+
+    assertThat(jobAd.getDescription()).isEqualTo(DESCRIPTION);
+    assertThat(jobAd.getCompressedDescription()).isEqualTo(DESCRIPTION);
+    assertThat(jobAd.getTechnologies())
+      .isEqualTo(Technology.KOTLIN.flag() | Technology.JAVA.flag());
+  }
+
+  @Test
+  void testDropStorageKeepsOnlyTechnologyFlags() {
+    JobAd jobAd = new JobAd(dto(), DescriptionStorage.DROP);
+
+    assertThat(jobAd.getDescription()).isNull();
+    assertThat(jobAd.getCompressedDescription()).isNull();
+    assertThat(jobAd.getTechnologies())
+      .isEqualTo(Technology.KOTLIN.flag() | Technology.JAVA.flag());
+  }
+
+  @Test
+  void testCompressedTextRoundTrip() {
+    CompressedTextConverter converter = new CompressedTextConverter();
+    String description = DESCRIPTION.repeat(50);
+
+    byte[] compressed = converter.convertToDatabaseColumn(description);
+
+    assertThat(compressed.length).isLessThan(description.length() / 4);
+    assertThat(converter.convertToEntityAttribute(compressed))
+      .isEqualTo(description);
+    assertThat(converter.convertToDatabaseColumn(null)).isNull();
+    assertThat(converter.convertToEntityAttribute(null)).isNull();
+  }
+
+  @Test
+  void testDimensionsAreTakenFromFeed() throws Exception {
+    JobAdDto dto = new ObjectMapper()
+      .readValue(
+        """
+        {
+          "uuid": "uuid1",
+          "employer": { "name": " Nav ", "orgnr": "889640782" },
+          "workLocations": [
+            { "country": "NORGE", "county": null, "city": "OSLO" },
+            { "country": "NORGE", "county": "Oslo", "city": "OSLO" }
+          ],
+          "occupationCategories": [{ "level1": "IT", "level2": "Utvikling" }],
+          "sector": "Offentlig",
+          "extent": "Heltid"
+        }
+        """,
+        JobAdDto.class
+      );
+
+    JobAd jobAd = new JobAd(dto);
+
+    assertThat(jobAd.getEmployer()).isEqualTo("Nav");
+    assertThat(jobAd.getRegion()).isEqualTo("OSLO");
+    assertThat(jobAd.getOccupation()).isEqualTo("IT");
+    assertThat(jobAd.getSector()).isEqualTo("Offentlig");
+  }
+
+  private static JobAdDto dto() {
+    JobAdDto dto = new JobAdDto();
+    dto.setUuid("uuid1");
+    dto.setTitle("Utvikler");
+    dto.setDescription(DESCRIPTION);
+    dto.setPublished("2025-01-01T00:00:00Z");
+    dto.setUpdated("2025-01-01T00:00:00Z");
+    dto.setExpires("2025-03-01T00:00:00Z");
+    return dto;
+  }
+}
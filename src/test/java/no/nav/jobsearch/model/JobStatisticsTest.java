@@ -2,6 +2,7 @@ package no.nav.jobsearch.model;
 
 import static org.assertj.core.api.Assertions.*;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 import org.junit.jupiter.api.Test;
@@ -94,4 +95,22 @@ class JobStatisticsTest {
     LocalDateTime expectedMonday = LocalDateTime.of(2024, 2, 5, 0, 0); // Monday at 00:00
     assertThat(stats.weekStart()).isEqualTo(expectedMonday);
   }
+
+  @Test
+  void testWeeklyPeriodIsConvertedToJobStatistics() {
+    PeriodStatistics week = new PeriodStatistics(
+      LocalDate.of(2024, 2, 5),
+      LocalDate.of(2024, 2, 12),
+      5L,
+      10L,
+      20L
+    );
+
+    JobStatistics stats = JobStatistics.of(week);
+
+    assertThat(stats)
+      .isEqualTo(
+        new JobStatistics(LocalDateTime.of(2024, 2, 5, 0, 0), 6, 5L, 10L, 20L)
+      );
+  }
 }
@@ -0,0 +1,76 @@
+package no.nav.jobsearch.service;
+
+import static org.assertj.core.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import no.nav.jobsearch.model.JobAdExport;
+import no.nav.jobsearch.model.Technology;
+import org.junit.jupiter.api.Test;
+
+class ExportWriterTest {
+
+  private final ObjectMapper objectMapper = new ObjectMapper()
+    .findAndRegisterModules();
+
+  private final JobAdExport kotlinAd = new JobAdExport(
+    "uuid1",
+    "Utvikler, \"Kotlin\"",
+    LocalDateTime.of(2025, 1, 1, 10, 0),
+    LocalDateTime.of(2025, 1, 2, 10, 0),
+    LocalDateTime.of(2025, 3, 1, 0, 0),
+    List.of(Technology.KOTLIN, Technology.JAVA)
+  );
+
+  private final JobAdExport untitledAd = new JobAdExport(
+    "uuid2",
+    null,
+    LocalDateTime.of(2025, 1, 3, 10, 0),
+    null,
+    null,
+    List.of()
+  );
+
+  @Test
+  void testCsvHasHeaderAndEscapedFields() throws Exception {
+    String csv = export(ExportFormat.CSV);
+
+    assertThat(csv.split("\n"))
+      .containsExactly(
+        "uuid,title,published,updated,expires,technologies",
+        "uuid1,\"Utvikler, \"\"Kotlin\"\"\",2025-01-01T10:00,2025-01-02T10:00,2025-03-01T00:00,KOTLIN;JAVA",
+        "uuid2,,2025-01-03T10:00,,,"
+      );
+  }
+
+  @Test
+  void testNdjsonHasOneObjectPerLine() throws Exception {
+    String ndjson = export(ExportFormat.NDJSON);
+
+    String[] lines = ndjson.split("\n");
+    assertThat(lines).hasSize(2);
+    assertThat(objectMapper.readTree(lines[0]).get("technologies").toString())
+      .isEqualTo("[\"KOTLIN\",\"JAVA\"]");
+    assertThat(objectMapper.readTree(lines[1]).get("uuid").asText())
+      .isEqualTo("uuid2");
+  }
+
+  private String export(ExportFormat format) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (
+      ExportWriter<JobAdExport> writer = new ExportWriter<>(
+        JobAdExport.class,
+        format,
+        out,
+        objectMapper
+      )
+    ) {
+      writer.write(kotlinAd);
+      writer.write(untitledAd);
+    }
+    return out.toString(StandardCharsets.UTF_8);
+  }
+}
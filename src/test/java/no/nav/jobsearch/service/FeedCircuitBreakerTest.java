@@ -0,0 +1,128 @@
+package no.nav.jobsearch.service;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class FeedCircuitBreakerTest {
+
+  private MutableClock clock;
+  private FeedCircuitBreaker circuitBreaker;
+
+  @BeforeEach
+  void setUp() {
+    clock = new MutableClock(Instant.parse("2025-02-01T00:00:00Z"));
+    circuitBreaker =
+      new FeedCircuitBreaker(3, Duration.ofMinutes(10), 1, clock);
+  }
+
+  @Test
+  void testBreakerOpensAfterConsecutiveFailures() {
+    circuitBreaker.onFailure();
+    circuitBreaker.onFailure();
+    assertThat(circuitBreaker.getState())
+      .isEqualTo(FeedCircuitBreaker.State.CLOSED);
+
+    circuitBreaker.onFailure();
+
+    assertThat(circuitBreaker.getState())
+      .isEqualTo(FeedCircuitBreaker.State.OPEN);
+    assertThatThrownBy(() -> circuitBreaker.acquirePermission())
+      .isInstanceOf(FeedUnavailableException.class);
+  }
+
+  @Test
+  void testSuccessResetsFailureCount() {
+    circuitBreaker.onFailure();
+    circuitBreaker.onFailure();
+    circuitBreaker.onSuccess();
+    circuitBreaker.onFailure();
+
+    assertThat(circuitBreaker.getState())
+      .isEqualTo(FeedCircuitBreaker.State.CLOSED);
+    assertThatNoException()
+      .isThrownBy(() -> circuitBreaker.acquirePermission());
+  }
+
+  @Test
+  void testBreakerPermitsOneProbeWhenHalfOpen() {
+    openBreaker();
+
+    clock.advance(Duration.ofMinutes(10));
+
+    assertThatNoException()
+      .isThrownBy(() -> circuitBreaker.acquirePermission());
+    assertThat(circuitBreaker.isHalfOpen()).isTrue();
+    // Only one probe call is permitted while the first probe is in flight
+    assertThatThrownBy(() -> circuitBreaker.acquirePermission())
+      .isInstanceOf(FeedUnavailableException.class);
+  }
+
+  @Test
+  void testSuccessfulProbeClosesBreaker() {
+    openBreaker();
+    clock.advance(Duration.ofMinutes(10));
+
+    circuitBreaker.acquirePermission();
+    circuitBreaker.onSuccess();
+
+    assertThat(circuitBreaker.getState())
+      .isEqualTo(FeedCircuitBreaker.State.CLOSED);
+    assertThat(circuitBreaker.getOpenedAt()).isNull();
+  }
+
+  @Test
+  void testFailedProbeReopensBreaker() {
+    openBreaker();
+    clock.advance(Duration.ofMinutes(10));
+
+    circuitBreaker.acquirePermission();
+    circuitBreaker.onFailure();
+
+    assertThat(circuitBreaker.getState())
+      .isEqualTo(FeedCircuitBreaker.State.OPEN);
+    assertThat(circuitBreaker.getOpenedAt()).isEqualTo(clock.instant());
+    assertThatThrownBy(() -> circuitBreaker.acquirePermission())
+      .isInstanceOf(FeedUnavailableException.class);
+  }
+
+  private void openBreaker() {
+    circuitBreaker.onFailure();
+    circuitBreaker.onFailure();
+    circuitBreaker.onFailure();
+  }
+
+  private static class MutableClock extends Clock {
+
+    private Instant instant;
+
+    MutableClock(Instant instant) {
+      this.instant = instant;
+    }
+
+    void advance(Duration duration) {
+      instant = instant.plus(duration);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return instant;
+    }
+  }
+}
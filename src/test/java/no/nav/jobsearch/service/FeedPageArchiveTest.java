@@ -0,0 +1,84 @@
+package no.nav.jobsearch.service;
+
+import static org.assertj.core.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import no.nav.jobsearch.model.JobAdDto;
+import no.nav.jobsearch.model.JobFeedResponse;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FeedPageArchiveTest {
+
+  @TempDir
+  private Path tempDir;
+
+  @Test
+  void testPagesAreReplayedNewestFirstAcrossSegments() {
+    // Every page fills a segment
+    FeedPageArchive archive = archive(1);
+    archive.append(page(0, "uuid1", "Kotlin"));
+    archive.append(page(1, "uuid2", "Java"));
+    archive.append(page(2, "uuid3", "<p>Kotlin og Java</p>"));
+    archive.close();
+
+    List<JobFeedResponse> replayed = new ArrayList<>();
+    archive(1).replay(replayed::add);
+
+    assertThat(archive.segments()).hasSize(3);
+    assertThat(replayed)
+      .extracting(JobFeedResponse::getPageNumber)
+      .containsExactly(2, 1, 0);
+    assertThat(replayed.getFirst().getContent().getFirst().getDescription())
+      .isEqualTo("<p>Kotlin og Java</p>");
+  }
+
+  @Test
+  void testTruncatedRecordIsSkipped() throws IOException {
+    FeedPageArchive archive = archive(64 * 1024);
+    archive.append(page(0, "uuid1", "Kotlin"));
+    archive.append(page(1, "uuid2", "Java"));
+    archive.close();
+    // A crash while appending leaves a partial record behind
+    Files.write(
+      archive.segments().getFirst(),
+      new byte[] { 0, 0, 1, 0, 0, 0 },
+      StandardOpenOption.APPEND
+    );
+
+    List<JobFeedResponse> replayed = new ArrayList<>();
+    archive.replay(replayed::add);
+
+    assertThat(replayed)
+      .extracting(JobFeedResponse::getPageNumber)
+      .containsExactly(1, 0);
+  }
+
+  private FeedPageArchive archive(long segmentSize) {
+    return new FeedPageArchive(
+      tempDir.resolve("archive").toString(),
+      segmentSize,
+      new ObjectMapper(),
+      new SimpleMeterRegistry()
+    );
+  }
+
+  private static JobFeedResponse page(
+    int pageNumber,
+    String uuid,
+    String description
+  ) {
+    JobAdDto jobAdDto = new JobAdDto();
+    jobAdDto.setUuid(uuid);
+    jobAdDto.setDescription(description);
+    jobAdDto.setUpdated("2025-01-01T00:00:00Z");
+    return new JobFeedResponse(List.of(jobAdDto), pageNumber, 3);
+  }
+}
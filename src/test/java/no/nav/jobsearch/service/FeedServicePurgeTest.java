@@ -0,0 +1,141 @@
+package no.nav.jobsearch.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import no.nav.jobsearch.model.JobAd;
+import no.nav.jobsearch.model.JobAdDto;
+import no.nav.jobsearch.model.JobAdWeeklyHistory;
+import no.nav.jobsearch.repository.JobAdRepository;
+import no.nav.jobsearch.repository.JobAdWeeklyHistoryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Purges job ads of two categories concurrently against the test database of the local Postgres from docker-compose.yaml,
+ * which the test empties, so it runs against {@code jobdb_loadtest} like the load tests.
+ * Tagged {@code database}, so it only runs on demand, as it needs Postgres.
+ */
+@Tag("database")
+@SpringBootTest
+@TestPropertySource(locations = "classpath:loadtest.properties")
+@ActiveProfiles("test")
+class FeedServicePurgeTest {
+
+  private static final LocalDate WEEK = LocalDate.of(2024, 12, 30);
+
+  private static final int ADS_PER_CATEGORY = 50;
+
+  @Autowired
+  private FeedService feedService;
+
+  @Autowired
+  private JobAdRepository jobAdRepository;
+
+  @Autowired
+  private JobAdWeeklyHistoryRepository historyRepository;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  @BeforeEach
+  void setUp() {
+    jdbcTemplate.update("DELETE FROM job_ad");
+    jdbcTemplate.update("DELETE FROM job_ad_weekly_history");
+  }
+
+  @Test
+  void testConcurrentPurgesOfTheSameWeekKeepBothCounts() throws Exception {
+    givenExpiredAds("IT", "Kotlin");
+    givenExpiredAds("Bygg og anlegg", "Java");
+    LocalDateTime now = LocalDateTime.parse("2025-06-01T00:00:00");
+    TransactionTemplate transaction = new TransactionTemplate(
+      transactionManager
+    );
+    CyclicBarrier started = new CyclicBarrier(2);
+    ExecutorService purges = Executors.newFixedThreadPool(2);
+    try {
+      List<Future<?>> results = new ArrayList<>();
+      for (String category : List.of("IT", "Bygg og anlegg")) {
+        results.add(
+          purges.submit(() ->
+            transaction.executeWithoutResult(status -> {
+              // Both transactions are open before either purge adds its counts
+              await(started);
+              JobAdChanges changes = new JobAdChanges();
+              feedService.removeExpiredAndUnpublishedAds(
+                category,
+                now,
+                UuidSet.of(),
+                changes
+              );
+              feedService.writeHistory(changes);
+            })
+          )
+        );
+      }
+      for (Future<?> result : results) {
+        result.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      purges.shutdownNow();
+    }
+
+    assertThat(jobAdRepository.count()).isZero();
+    JobAdWeeklyHistory week = historyRepository.findById(WEEK).orElseThrow();
+    assertThat(week.getTotalCount()).isEqualTo(2 * ADS_PER_CATEGORY);
+    assertThat(week.getKotlinCount()).isEqualTo(ADS_PER_CATEGORY);
+    assertThat(week.getJavaCount()).isEqualTo(ADS_PER_CATEGORY);
+  }
+
+  /**
+   * Stores expired job ads of a category, all published in {@link #WEEK}.
+   */
+  private void givenExpiredAds(String category, String description) {
+    jobAdRepository.saveAll(
+      IntStream
+        .range(0, ADS_PER_CATEGORY)
+        .mapToObj(i -> {
+          JobAdDto dto = new JobAdDto();
+          dto.setUuid(category + "-" + i);
+          dto.setTitle("Utvikler");
+          dto.setDescription(description);
+          dto.setPublished("2025-01-01T00:00:00Z");
+          dto.setUpdated("2025-01-01T00:00:00Z");
+          dto.setExpires("2025-02-01T00:00:00Z");
+          JobAd jobAd = new JobAd(dto);
+          jobAd.setCategory(category);
+          return jobAd;
+        })
+        .toList()
+    );
+  }
+
+  private static void await(CyclicBarrier barrier) {
+    try {
+      barrier.await(10, TimeUnit.SECONDS);
+    } catch (Exception e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
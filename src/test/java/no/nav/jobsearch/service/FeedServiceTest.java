@@ -1,32 +1,69 @@
 package no.nav.jobsearch.service;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.*;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import no.nav.jobsearch.model.ArchivedJobAd;
+import no.nav.jobsearch.model.DescriptionStorage;
 import no.nav.jobsearch.model.JobAd;
 import no.nav.jobsearch.model.JobAdDto;
+import no.nav.jobsearch.model.JobAdMetadata;
 import no.nav.jobsearch.model.JobFeedResponse;
+import no.nav.jobsearch.model.PeriodStatistics;
+import no.nav.jobsearch.model.Technology;
+import no.nav.jobsearch.repository.ArchivedJobAdRepository;
 import no.nav.jobsearch.repository.JobAdRepository;
+import no.nav.jobsearch.repository.JobAdWeeklyHistoryRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
 
 @ExtendWith(MockitoExtension.class)
 public class FeedServiceTest {
 
+  private static final String CATEGORY = "IT";
+
   @Mock
   private JobAdRepository jobAdRepository;
 
+  @Mock
+  private JobAdWeeklyHistoryRepository historyRepository;
+
+  @Mock
+  private ArchivedJobAdRepository archivedJobAdRepository;
+
   @Mock
   private JobFetcher jobFetcher;
 
+  @Mock
+  private FeedPageArchive pageArchive;
+
+  @Mock
+  private ApplicationEventPublisher eventPublisher;
+
+  @Mock
+  private PlatformTransactionManager transactionManager;
+
+  @Spy
+  private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
   @InjectMocks
   private FeedService feedService;
 
@@ -54,7 +91,9 @@ public class FeedServiceTest {
     jobAdDto2.setExpires("2025-03-03T00:00:00Z");
 
     jobAd1 = new JobAd(jobAdDto1);
+    jobAd1.setCategory(CATEGORY);
     jobAd2 = new JobAd(jobAdDto2);
+    jobAd2.setCategory(CATEGORY);
 
     ReflectionTestUtils.setField(feedService, "batchSize", 100);
   }
@@ -70,22 +109,34 @@ public class FeedServiceTest {
       1
     );
 
-    // Mock the fetchJobs method to invoke the Consumer with the response content
+    // Mock the fetchAllJobs method to invoke the Consumer with the response content
     // The response contains jobAd1 and jobAd2 that should be saved to the database.
     doAnswer(invocation -> {
-        Consumer<List<JobAdDto>> consumer = invocation.getArgument(3);
+        Consumer<List<JobAdDto>> consumer = invocation.getArgument(4);
         consumer.accept(response.getContent());
         return null;
       })
       .when(jobFetcher)
-      .fetchJobs(eq(now), eq(sixMonthsAgo), eq(now), any(Consumer.class));
+      .fetchAllJobs(
+        eq(CATEGORY),
+        eq(now),
+        eq(sixMonthsAgo),
+        eq(now),
+        any(Consumer.class)
+      );
 
-    feedService.fetchAndUpdateAllITJobs(now);
+    feedService.fetchAndUpdateAllJobs(CATEGORY, now);
 
     verify(jobFetcher, times(1))
-      .fetchJobs(eq(now), eq(sixMonthsAgo), eq(now), any(Consumer.class));
+      .fetchAllJobs(
+        eq(CATEGORY),
+        eq(now),
+        eq(sixMonthsAgo),
+        eq(now),
+        any(Consumer.class)
+      );
     verify(jobAdRepository, times(1)).saveAll(List.of(jobAd1, jobAd2));
-    verify(jobAdRepository, times(1)).findAll();
+    verify(jobAdRepository, times(1)).findAllMetadataByCategory(CATEGORY);
   }
 
   @Test
@@ -99,30 +150,201 @@ public class FeedServiceTest {
       1
     );
 
-    // Mock the fetchJobs method to invoke the Consumer with the response content
+    // Mock the fetchAllJobs method to invoke the Consumer with the response content
     // The response contains jobAd1 and jobAd2 that should be saved to the database.
     doAnswer(invocation -> {
-        Consumer<List<JobAdDto>> consumer = invocation.getArgument(3);
+        Consumer<List<JobAdDto>> consumer = invocation.getArgument(4);
         consumer.accept(response.getContent());
         return null;
       })
       .when(jobFetcher)
-      .fetchJobs(eq(now), eq(sixMonthsAgo), eq(now), any(Consumer.class));
+      .fetchAllJobs(
+        eq(CATEGORY),
+        eq(now),
+        eq(sixMonthsAgo),
+        eq(now),
+        any(Consumer.class)
+      );
 
     // both jobAd1 and jobAd2 should be returned from the database
     // jobAd1 has expired and should be deleted from the database
-    when(jobAdRepository.findAll()).thenReturn(List.of(jobAd1, jobAd2));
+    when(jobAdRepository.findAllMetadataByCategory(CATEGORY))
+      .thenReturn(List.of(metadata(jobAd1), metadata(jobAd2)));
 
-    feedService.fetchAndUpdateAllITJobs(now);
+    feedService.fetchAndUpdateAllJobs(CATEGORY, now);
 
     // fetchAndUpdateAllITJobs should fetch jobs from the jobFetcher, with the correct dates
     verify(jobFetcher, times(1))
-      .fetchJobs(eq(now), eq(sixMonthsAgo), eq(now), any(Consumer.class));
+      .fetchAllJobs(
+        eq(CATEGORY),
+        eq(now),
+        eq(sixMonthsAgo),
+        eq(now),
+        any(Consumer.class)
+      );
     // jobAd1 and jobAd2 should be saved to the database
     verify(jobAdRepository, times(1)).saveAll(List.of(jobAd1, jobAd2));
     // jobAd1 should be deleted from the database, as it has expired
-    verify(jobAdRepository, times(1)).delete(jobAd1);
-    verify(jobAdRepository, times(1)).findAll();
+    verify(jobAdRepository, times(1)).deleteByUuidIn(List.of("uuid1"));
+    verify(jobAdRepository, times(1)).findAllMetadataByCategory(CATEGORY);
+  }
+
+  @Test
+  public void testFetchAndUpdateAllITJobsPublishesStoredAndRemovedAds() {
+    LocalDateTime now = LocalDateTime.parse("2025-03-02T00:00:00");
+    LocalDateTime sixMonthsAgo = now.minusMonths(6);
+
+    doAnswer(invocation -> {
+        Consumer<List<JobAdDto>> consumer = invocation.getArgument(4);
+        consumer.accept(List.of(jobAdDto1, jobAdDto2));
+        return null;
+      })
+      .when(jobFetcher)
+      .fetchAllJobs(
+        eq(CATEGORY),
+        eq(now),
+        eq(sixMonthsAgo),
+        eq(now),
+        any(Consumer.class)
+      );
+    when(jobAdRepository.findAllMetadataByCategory(CATEGORY))
+      .thenReturn(List.of(metadata(jobAd1), metadata(jobAd2)));
+
+    feedService.fetchAndUpdateAllJobs(CATEGORY, now);
+
+    // jobAd1 was stored and then removed as it has expired, so the last change wins
+    ArgumentCaptor<JobAdsChangedEvent> event = ArgumentCaptor.forClass(
+      JobAdsChangedEvent.class
+    );
+    verify(eventPublisher, times(1)).publishEvent(event.capture());
+    JobAdChanges changes = event.getValue().changes();
+    assertThat(changes.getStored())
+      .extracting(JobAdSnapshot.Row::uuid)
+      .containsExactly(JobAdSnapshot.key("uuid2"));
+    assertThat(changes.getRemoved())
+      .containsExactly(JobAdSnapshot.key("uuid1"));
+  }
+
+  @Test
+  public void testFetchAndUpdateAllITJobsStoresAdsFetchedTwiceOnce() {
+    LocalDateTime now = LocalDateTime.parse("2025-02-01T00:00:00");
+    LocalDateTime sixMonthsAgo = now.minusMonths(6);
+
+    // jobAdDto2 is at the boundary of two date ranges, so it is fetched twice
+    doAnswer(invocation -> {
+        Consumer<List<JobAdDto>> consumer = invocation.getArgument(4);
+        consumer.accept(List.of(jobAdDto1, jobAdDto2));
+        consumer.accept(List.of(jobAdDto2));
+        return null;
+      })
+      .when(jobFetcher)
+      .fetchAllJobs(
+        eq(CATEGORY),
+        eq(now),
+        eq(sixMonthsAgo),
+        eq(now),
+        any(Consumer.class)
+      );
+    when(jobAdRepository.findAllMetadataByCategory(CATEGORY))
+      .thenReturn(List.of(metadata(jobAd1), metadata(jobAd2)));
+
+    feedService.fetchAndUpdateAllJobs(CATEGORY, now);
+
+    verify(jobAdRepository, times(1)).saveAll(anyList());
+    verify(jobAdRepository, times(1)).findByUuid("uuid2");
+    verify(jobAdRepository, never()).deleteByUuidIn(any());
+    assertThat(adsCount("inserted")).isEqualTo(2);
+  }
+
+  @Test
+  public void testReprocessArchivedJobsUsesNewestVersionOfStoredAds() {
+    JobAdDto newerJobAdDto1 = new JobAdDto();
+    newerJobAdDto1.setUuid("uuid1");
+    newerJobAdDto1.setTitle("Title 1");
+    newerJobAdDto1.setDescription("Kotlin");
+    newerJobAdDto1.setPublished("2025-01-01T00:00:00Z");
+    newerJobAdDto1.setUpdated("2025-01-05T00:00:00Z");
+    newerJobAdDto1.setExpires("2025-03-01T00:00:00Z");
+    // The archive replays the newest page first
+    doAnswer(invocation -> {
+        Consumer<JobFeedResponse> pageHandler = invocation.getArgument(0);
+        pageHandler.accept(
+          new JobFeedResponse(List.of(newerJobAdDto1, jobAdDto2), 1, 2)
+        );
+        pageHandler.accept(new JobFeedResponse(List.of(jobAdDto1), 0, 2));
+        return null;
+      })
+      .when(pageArchive)
+      .replay(any(Consumer.class));
+    // jobAd2 has been removed since it was archived
+    when(jobAdRepository.findAllMetadata())
+      .thenReturn(List.of(metadata(jobAd1)));
+    when(jobAdRepository.findByUuid("uuid1")).thenReturn(Optional.of(jobAd1));
+
+    feedService.reprocessArchivedJobs();
+
+    verify(jobAdRepository, times(1)).saveAll(List.of(jobAd1));
+    verify(jobAdRepository, never()).findByUuid("uuid2");
+    assertThat(jobAd1.getDescription()).isEqualTo("Kotlin");
+    verify(eventPublisher, times(1))
+      .publishEvent(any(JobAdsChangedEvent.class));
+  }
+
+  @Test
+  public void testReprocessArchivedJobsCommitsEachChunk() {
+    LocalDateTime updated = LocalDateTime.parse("2025-01-01T00:00:00");
+    List<JobAdDto> archivedAds = IntStream
+      .range(0, 1500)
+      .mapToObj(i -> {
+        JobAdDto ad = new JobAdDto();
+        ad.setUuid("uuid" + i);
+        ad.setUpdated("2025-01-01T00:00:00Z");
+        return ad;
+      })
+      .toList();
+    doAnswer(invocation -> {
+        Consumer<JobFeedResponse> pageHandler = invocation.getArgument(0);
+        for (int i = 0; i < archivedAds.size(); i += 100) {
+          pageHandler.accept(
+            new JobFeedResponse(archivedAds.subList(i, i + 100), i / 100, 15)
+          );
+        }
+        return null;
+      })
+      .when(pageArchive)
+      .replay(any(Consumer.class));
+    when(jobAdRepository.findAllMetadata())
+      .thenReturn(
+        archivedAds
+          .stream()
+          .map(ad -> new JobAdMetadata(ad.getUuid(), updated, updated))
+          .toList()
+      );
+    when(jobAdRepository.findByUuid(anyString())).thenReturn(Optional.empty());
+
+    feedService.reprocessArchivedJobs();
+
+    // The first chunk is committed once it reaches 1000 ads, the rest at the end of the archive
+    verify(transactionManager, times(2)).commit(any());
+    ArgumentCaptor<JobAdsChangedEvent> events = ArgumentCaptor.forClass(
+      JobAdsChangedEvent.class
+    );
+    verify(eventPublisher, times(2)).publishEvent(events.capture());
+    assertThat(events.getAllValues())
+      .extracting(event -> event.changes().getStored().size())
+      .containsExactly(1000, 500);
+  }
+
+  @Test
+  public void testNoEventIsPublishedWithoutChanges() {
+    LocalDateTime now = LocalDateTime.now();
+
+    when(jobAdRepository.findNewestUpdatedDateByCategory(CATEGORY))
+      .thenReturn(Optional.empty());
+
+    feedService.fetchAndSaveUpdatedJobs(CATEGORY, now);
+
+    verifyNoInteractions(eventPublisher);
   }
 
   @Test
@@ -132,25 +354,95 @@ public class FeedServiceTest {
 
     JobFeedResponse response = new JobFeedResponse(List.of(jobAdDto1), 0, 1);
 
-    when(jobAdRepository.findNewestUpdatedDate())
+    when(jobAdRepository.findNewestUpdatedDateByCategory(CATEGORY))
       .thenReturn(Optional.of(newestUpdatedDate));
 
     // Mock the fetchJobs method to invoke the Consumer with the response content
     // The response contains jobAd1 that should be saved to the database.
     doAnswer(invocation -> {
-        Consumer<List<JobAdDto>> consumer = invocation.getArgument(3);
+        Consumer<List<JobAdDto>> consumer = invocation.getArgument(4);
         consumer.accept(response.getContent());
         return null;
       })
       .when(jobFetcher)
-      .fetchJobs(eq(now), eq(newestUpdatedDate), eq(now), any(Consumer.class));
+      .fetchJobs(
+        eq(CATEGORY),
+        eq(now),
+        eq(newestUpdatedDate),
+        eq(now),
+        any(Consumer.class)
+      );
+
+    feedService.fetchAndSaveUpdatedJobs(CATEGORY, now);
+
+    verify(jobAdRepository, times(1))
+      .findNewestUpdatedDateByCategory(CATEGORY);
+    verify(jobFetcher, times(1))
+      .fetchJobs(
+        eq(CATEGORY),
+        eq(now),
+        eq(newestUpdatedDate),
+        eq(now),
+        any(Consumer.class)
+      );
+    verify(jobAdRepository, times(1)).saveAll(List.of(jobAd1));
+  }
 
-    feedService.fetchAndSaveUpdatedJobs(now);
+  @Test
+  public void testAdsStoredByConcurrentRunOfOtherCategoryAreSkipped() {
+    LocalDateTime now = LocalDateTime.parse("2025-02-01T00:00:00");
+    String otherCategory = "Bygg og anlegg";
+    when(jobAdRepository.findNewestUpdatedDateByCategory(any()))
+      .thenReturn(Optional.of(now.minusDays(1)));
+    // The run of the other category starts while the IT run, which has stored jobAd1, is in progress
+    doAnswer(invocation -> {
+        invocation
+          .<Consumer<List<JobAdDto>>>getArgument(4)
+          .accept(List.of(jobAdDto1));
+        feedService.fetchAndSaveUpdatedJobs(otherCategory, now);
+        return null;
+      })
+      .when(jobFetcher)
+      .fetchJobs(eq(CATEGORY), any(), any(), any(), any(Consumer.class));
+    doAnswer(invocation -> {
+        invocation
+          .<Consumer<List<JobAdDto>>>getArgument(4)
+          .accept(List.of(jobAdDto1, jobAdDto2));
+        return null;
+      })
+      .when(jobFetcher)
+      .fetchJobs(eq(otherCategory), any(), any(), any(), any(Consumer.class));
 
-    verify(jobAdRepository, times(1)).findNewestUpdatedDate();
-    verify(jobFetcher, times(1))
-      .fetchJobs(eq(now), eq(newestUpdatedDate), eq(now), any(Consumer.class));
+    feedService.fetchAndSaveUpdatedJobs(CATEGORY, now);
+
+    jobAd2.setCategory(otherCategory);
     verify(jobAdRepository, times(1)).saveAll(List.of(jobAd1));
+    verify(jobAdRepository, times(1)).saveAll(List.of(jobAd2));
+    verify(jobAdRepository, times(1)).findByUuid("uuid1");
+
+    // Once the IT run has finished, the other category stores jobAd1 as well
+    feedService.fetchAndSaveUpdatedJobs(otherCategory, now);
+
+    verify(jobAdRepository, times(2)).findByUuid("uuid1");
+  }
+
+  @Test
+  public void testFullRefreshOfWholeFeedRemovesAdsOfAllCategories() {
+    LocalDateTime now = LocalDateTime.parse("2025-02-01T00:00:00");
+    when(jobAdRepository.findAllMetadata())
+      .thenReturn(List.of(metadata(jobAd1), metadata(jobAd2)));
+    when(jobAdRepository.deleteByUuidIn(List.of("uuid1", "uuid2")))
+      .thenReturn(2);
+
+    int deleted = feedService.removeExpiredAndUnpublishedAds(
+      FeedFetcher.ALL_CATEGORIES,
+      now,
+      UuidSet.of(),
+      new JobAdChanges()
+    );
+
+    assertThat(deleted).isEqualTo(2);
+    verify(jobAdRepository, never()).findAllMetadataByCategory(any());
   }
 
   @Test
@@ -162,61 +454,278 @@ public class FeedServiceTest {
     when(jobAdRepository.findByUuid("uuid1")).thenReturn(Optional.of(jobAd1));
     when(jobAdRepository.findByUuid("uuid2")).thenReturn(Optional.empty());
 
-    feedService.processAndStoreJobsInBatches(jobAdDtos);
+    feedService.processAndStoreJobsInBatches(
+      jobAdDtos,
+      CATEGORY,
+      new JobAdChanges()
+    );
 
     verify(jobAdRepository, times(1)).findByUuid("uuid1");
     verify(jobAdRepository, times(1)).findByUuid("uuid2");
     verify(jobAdRepository, times(1)).saveAll(List.of(jobAd1, jobAd2));
   }
 
+  @Test
+  public void testProcessAndStoreJobsInBatchesUsesDescriptionStorage() {
+    ReflectionTestUtils.setField(
+      feedService,
+      "descriptionStorage",
+      DescriptionStorage.DROP
+    );
+    when(jobAdRepository.findByUuid("uuid1")).thenReturn(Optional.empty());
+
+    feedService.processAndStoreJobsInBatches(
+      List.of(jobAdDto1),
+      CATEGORY,
+      new JobAdChanges()
+    );
+
+    JobAd stored = new JobAd(jobAdDto1, DescriptionStorage.DROP);
+    stored.setCategory(CATEGORY);
+    verify(jobAdRepository, times(1)).saveAll(List.of(stored));
+  }
+
+  @Test
+  public void testProcessAndStoreJobsInBatchesCountsInsertedAndUpdatedAds() {
+    when(jobAdRepository.findByUuid("uuid1")).thenReturn(Optional.of(jobAd1));
+    when(jobAdRepository.findByUuid("uuid2")).thenReturn(Optional.empty());
+
+    feedService.processAndStoreJobsInBatches(
+      List.of(jobAdDto1, jobAdDto2),
+      CATEGORY,
+      new JobAdChanges()
+    );
+
+    assertThat(adsCount("updated")).isEqualTo(1);
+    assertThat(adsCount("inserted")).isEqualTo(1);
+    assertThat(meterRegistry.get("feed.batch.write").timer().count())
+      .isEqualTo(1);
+  }
+
   @Test
   public void testNonExpiredAndPublishedAdsShouldNotBeRemoved() {
-    List<String> activeAdUuids = List.of("uuid1", "uuid2");
+    UuidSet activeAdUuids = UuidSet.of("uuid1", "uuid2");
 
-    when(jobAdRepository.findAll()).thenReturn(List.of(jobAd1, jobAd2));
+    when(jobAdRepository.findAllMetadataByCategory(CATEGORY))
+      .thenReturn(List.of(metadata(jobAd1), metadata(jobAd2)));
 
     // Setting the now() time to be before the expiration date of both jobAd1 and jobAd2
     // So to mock that no jobAd has expired.
     LocalDateTime now = LocalDateTime.parse("2025-02-01T00:00:00");
 
-    // both jobAd1 and jobAd2 should not be deleted, as they are in the activeAdUuids list returned by the jodFetcher.
-    feedService.removeExpiredAndUnpublishedAds(now, activeAdUuids);
+    // both jobAd1 and jobAd2 should not be deleted, as they are in the activeAdUuids set returned by the jodFetcher.
+    feedService.removeExpiredAndUnpublishedAds(
+      CATEGORY,
+      now,
+      activeAdUuids,
+      new JobAdChanges()
+    );
 
-    verify(jobAdRepository, times(1)).findAll();
-    verify(jobAdRepository, never()).delete(any(JobAd.class));
+    verify(jobAdRepository, times(1)).findAllMetadataByCategory(CATEGORY);
+    verify(jobAdRepository, never()).deleteByUuidIn(any());
   }
 
   @Test
   public void testRemoveUnpublishedAds() {
-    List<String> activeAdUuids = List.of("uuid1");
+    UuidSet activeAdUuids = UuidSet.of("uuid1");
 
-    when(jobAdRepository.findAll()).thenReturn(List.of(jobAd1, jobAd2));
+    when(jobAdRepository.findAllMetadataByCategory(CATEGORY))
+      .thenReturn(List.of(metadata(jobAd1), metadata(jobAd2)));
 
     // Setting the now() time to be before the expiration date of both jobAd1 and jobAd2
     // So to mock that no jobAd has expired.
     LocalDateTime now = LocalDateTime.parse("2025-02-01T00:00:00");
 
-    // jobAd2 should be deleted, as it is not in the activeAdUuids list returned by the jodFetcher.
-    feedService.removeExpiredAndUnpublishedAds(now, activeAdUuids);
+    when(jobAdRepository.deleteByUuidIn(List.of("uuid2"))).thenReturn(1);
+
+    // jobAd2 should be deleted, as it is not in the activeAdUuids set returned by the jodFetcher.
+    int deleted = feedService.removeExpiredAndUnpublishedAds(
+      CATEGORY,
+      now,
+      activeAdUuids,
+      new JobAdChanges()
+    );
 
-    verify(jobAdRepository, times(1)).findAll();
-    verify(jobAdRepository, times(1)).delete(jobAd2);
+    assertThat(deleted).isEqualTo(1);
+
+    verify(jobAdRepository, times(1)).findAllMetadataByCategory(CATEGORY);
+    verify(jobAdRepository, times(1)).deleteByUuidIn(List.of("uuid2"));
   }
 
   @Test
   public void testRemoveExpiredAds() {
-    List<String> activeAdUuids = List.of("uuid2");
+    UuidSet activeAdUuids = UuidSet.of("uuid2");
 
-    when(jobAdRepository.findAll()).thenReturn(List.of(jobAd1, jobAd2));
+    when(jobAdRepository.findAllMetadataByCategory(CATEGORY))
+      .thenReturn(List.of(metadata(jobAd1), metadata(jobAd2)));
 
     // Setting the now() time to be one day after the expiration date of jobAd1
     // So to mock that the jobAd1 has expired and should be deleted from the database.
     // jobAd2 should not be deleted as it has not expired.
     LocalDateTime now = jobAd1.getExpires().plusDays(1);
-    feedService.removeExpiredAndUnpublishedAds(now, activeAdUuids);
+    feedService.removeExpiredAndUnpublishedAds(
+      CATEGORY,
+      now,
+      activeAdUuids,
+      new JobAdChanges()
+    );
+
+    verify(jobAdRepository, times(1)).findAllMetadataByCategory(CATEGORY);
+    verify(jobAdRepository, times(1)).deleteByUuidIn(List.of("uuid1"));
+  }
+
+  @Test
+  public void testRemovedAdsAreFoldedIntoTheWeeklyHistory() {
+    LocalDateTime now = LocalDateTime.parse("2025-02-01T00:00:00");
+    LocalDate week = LocalDate.of(2024, 12, 30);
+    when(jobAdRepository.findAllMetadataByCategory(CATEGORY))
+      .thenReturn(List.of(metadata(jobAd1), metadata(jobAd2)));
+    // Both are published in a week with purged job ads,
+    // jobAd2 is stored without technology flags
+    when(jobAdRepository.findHistoryRows(List.of("uuid1", "uuid2")))
+      .thenReturn(
+        List.of(
+          new Object[] {
+            "uuid1",
+            jobAd1.getPublished(),
+            Technology.JAVA.flag(),
+            null,
+          },
+          new Object[] { "uuid2", jobAd2.getPublished(), null, "Kotlin" }
+        )
+      );
+    JobAdChanges changes = new JobAdChanges();
+
+    feedService.removeExpiredAndUnpublishedAds(
+      CATEGORY,
+      now,
+      UuidSet.of(),
+      changes
+    );
+
+    // The counts are added to the history at the end of the run
+    verify(jobAdRepository).deleteByUuidIn(List.of("uuid1", "uuid2"));
+    verifyNoInteractions(historyRepository);
+    feedService.writeHistory(changes);
+    verify(historyRepository).addCounts(week, 1, 1, 2);
+    verify(archivedJobAdRepository)
+      .saveAll(
+        List.of(
+          new ArchivedJobAd("uuid1", week, Technology.JAVA.flag()),
+          new ArchivedJobAd("uuid2", week, Technology.KOTLIN.flag())
+        )
+      );
+    assertThat(changes.getArchived().getWeeks())
+      .containsExactly(
+        new PeriodStatistics(week, week.plusWeeks(1), 1L, 1L, 2L)
+      );
+    assertThat(adsCount("archived")).isEqualTo(2);
+  }
+
+  @Test
+  public void testPurgedAdThatComesBackIsTakenOutOfTheWeeklyHistory() {
+    LocalDate week = LocalDate.of(2024, 12, 30);
+    when(jobAdRepository.findByUuid("uuid1")).thenReturn(Optional.empty());
+    // jobAd1 was purged as a Java job ad, and is republished
+    when(archivedJobAdRepository.findAllById(List.of("uuid1")))
+      .thenReturn(
+        List.of(new ArchivedJobAd("uuid1", week, Technology.JAVA.flag()))
+      );
+    JobAdChanges changes = new JobAdChanges();
+
+    feedService.processAndStoreJobsInBatches(List.of(jobAdDto1), null, changes);
+
+    verify(archivedJobAdRepository).deleteByUuidIn(List.of("uuid1"));
+    verifyNoInteractions(historyRepository);
+    feedService.writeHistory(changes);
+    verify(historyRepository).addCounts(week, 0, -1, -1);
+    assertThat(changes.getArchived().getWeeks())
+      .containsExactly(
+        new PeriodStatistics(week, week.plusWeeks(1), 0L, -1L, -1L)
+      );
+    assertThat(changes.getStored()).hasSize(1);
+  }
+
+  @Test
+  public void testFullRefreshWritesTheHistoryAtTheEndInWeekOrder() {
+    LocalDateTime now = LocalDateTime.parse("2025-03-02T00:00:00");
+    LocalDate earlierWeek = LocalDate.of(2024, 12, 23);
+    LocalDate laterWeek = LocalDate.of(2024, 12, 30);
+    // jobAd2 comes back after it was purged from the earlier week,
+    // and jobAd1 is purged from the later week
+    doAnswer(invocation -> {
+        Consumer<List<JobAdDto>> consumer = invocation.getArgument(4);
+        consumer.accept(List.of(jobAdDto2));
+        return null;
+      })
+      .when(jobFetcher)
+      .fetchAllJobs(eq(CATEGORY), eq(now), any(), eq(now), any());
+    when(archivedJobAdRepository.findAllById(List.of("uuid2")))
+      .thenReturn(
+        List.of(
+          new ArchivedJobAd("uuid2", earlierWeek, Technology.JAVA.flag())
+        )
+      );
+    when(jobAdRepository.findAllMetadataByCategory(CATEGORY))
+      .thenReturn(List.of(metadata(jobAd1), metadata(jobAd2)));
+    when(jobAdRepository.findHistoryRows(List.of("uuid1")))
+      .thenReturn(
+        List.<Object[]>of(
+          new Object[] {
+            "uuid1",
+            jobAd1.getPublished(),
+            Technology.JAVA.flag(),
+            null,
+          }
+        )
+      );
+
+    feedService.fetchAndUpdateAllJobs(CATEGORY, now);
+
+    InOrder inOrder = inOrder(jobAdRepository, historyRepository);
+    inOrder.verify(jobAdRepository).deleteByUuidIn(List.of("uuid1"));
+    inOrder.verify(historyRepository).addCounts(earlierWeek, 0, -1, -1);
+    inOrder.verify(historyRepository).addCounts(laterWeek, 0, 1, 1);
+    verifyNoMoreInteractions(historyRepository);
+  }
+
+  @Test
+  public void testRemovedAdsAreDeletedInChunks() {
+    LocalDateTime now = LocalDateTime.parse("2025-02-01T00:00:00");
+    List<JobAdMetadata> storedAds = IntStream
+      .range(0, 1500)
+      .mapToObj(i -> new JobAdMetadata("uuid" + i, now, now.plusDays(1)))
+      .toList();
+    when(jobAdRepository.findAllMetadataByCategory(CATEGORY))
+      .thenReturn(storedAds);
+    when(jobAdRepository.deleteByUuidIn(anyList()))
+      .thenAnswer(invocation -> invocation.<List<String>>getArgument(0).size());
+
+    // None of the stored ads are active, so all should be deleted
+    int deleted = feedService.removeExpiredAndUnpublishedAds(
+      CATEGORY,
+      now,
+      UuidSet.of(),
+      new JobAdChanges()
+    );
+
+    assertThat(deleted).isEqualTo(1500);
+    verify(jobAdRepository, times(2)).deleteByUuidIn(anyList());
+  }
+
+  private static JobAdMetadata metadata(JobAd jobAd) {
+    return new JobAdMetadata(
+      jobAd.getUuid(),
+      jobAd.getUpdated(),
+      jobAd.getExpires()
+    );
+  }
 
-    verify(jobAdRepository, times(1)).findAll();
-    verify(jobAdRepository, times(1)).delete(jobAd1);
-    verify(jobAdRepository, never()).delete(jobAd2);
+  private double adsCount(String operation) {
+    return meterRegistry
+      .get("feed.ads")
+      .tag("operation", operation)
+      .counter()
+      .count();
   }
 }
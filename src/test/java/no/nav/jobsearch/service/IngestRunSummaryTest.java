@@ -0,0 +1,28 @@
+package no.nav.jobsearch.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class IngestRunSummaryTest {
+
+  @Test
+  void testFetchedCountsTheJobAdsOfTheFeedRatherThanTheStoredOnes() {
+    IngestRunSummary summary = new IngestRunSummary("full", "IT");
+
+    // Two pages of 100 job ads, of which 5 were fetched twice
+    summary.addFetched(100);
+    summary.addBatch(new FeedService.BatchResult(60, 40));
+    summary.addFetched(100);
+    summary.addDuplicates(5);
+    summary.addBatch(new FeedService.BatchResult(50, 45));
+
+    assertThat(summary.getFetched()).isEqualTo(200);
+    assertThat(summary.getInserted()).isEqualTo(110);
+    assertThat(summary.getUpdated()).isEqualTo(85);
+    assertThat(summary.toString())
+      .startsWith(
+        "run=full category=IT fetched=200 inserted=110 updated=85 deleted=0 duplicates=5"
+      );
+  }
+}
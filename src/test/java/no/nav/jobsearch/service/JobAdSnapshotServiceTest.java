@@ -0,0 +1,172 @@
+package no.nav.jobsearch.service;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Stream;
+import no.nav.jobsearch.model.JobAd;
+import no.nav.jobsearch.model.PeriodStatistics;
+import no.nav.jobsearch.repository.DataRevisionRepository;
+import no.nav.jobsearch.repository.JobAdRepository;
+import no.nav.jobsearch.repository.JobAdWeeklyHistoryRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+@ExtendWith(MockitoExtension.class)
+class JobAdSnapshotServiceTest {
+
+  @Mock
+  private JobAdRepository jobAdRepository;
+
+  @Mock
+  private JobAdWeeklyHistoryRepository historyRepository;
+
+  @Mock
+  private DataRevisionRepository revisionRepository;
+
+  @Mock
+  private PlatformTransactionManager transactionManager;
+
+  @TempDir
+  private Path tempDir;
+
+  @Test
+  void testPatchedSnapshotIsRestoredWithoutLoadingTheDatabase() {
+    when(jobAdRepository.streamSnapshotRows()).thenReturn(Stream.empty());
+    Path snapshotFile = tempDir.resolve("snapshot.bin");
+    JobAdSnapshotService service = snapshotService(snapshotFile);
+    service.getSnapshot();
+    // The ingest run stored one job ad
+    when(revisionRepository.findCurrent()).thenReturn(1L);
+    service.onJobAdsChanged(new JobAdsChangedEvent(changes(1)));
+
+    JobAdSnapshotService restarted = snapshotService(snapshotFile);
+    restarted.restore();
+
+    assertThat(restarted.getSnapshot().size()).isEqualTo(1);
+    verify(jobAdRepository, times(1)).streamSnapshotRows();
+  }
+
+  @Test
+  void testSnapshotOfOtherDataIsNotRestored() {
+    when(jobAdRepository.streamSnapshotRows())
+      .thenAnswer(invocation -> Stream.empty());
+    Path snapshotFile = tempDir.resolve("snapshot.bin");
+    JobAdSnapshotService service = snapshotService(snapshotFile);
+    service.getSnapshot();
+    // A reclassification changed the technology flags of job ads,
+    // and the application crashed before the snapshot was patched
+    when(revisionRepository.findCurrent()).thenReturn(1L);
+
+    JobAdSnapshotService restarted = snapshotService(snapshotFile);
+    restarted.restore();
+
+    assertThat(restarted.getSnapshot().size()).isZero();
+    verify(jobAdRepository, times(2)).streamSnapshotRows();
+  }
+
+  @Test
+  void testSnapshotIsOnlyRestoredWithTheChangesOfAllRevisions() {
+    when(jobAdRepository.streamSnapshotRows())
+      .thenAnswer(invocation -> Stream.empty());
+    Path snapshotFile = tempDir.resolve("snapshot.bin");
+    JobAdSnapshotService service = snapshotService(snapshotFile);
+    service.getSnapshot();
+    // Two runs committed one after the other, and the second is patched first
+    when(revisionRepository.findCurrent()).thenReturn(2L);
+    service.onJobAdsChanged(new JobAdsChangedEvent(changes(2)));
+
+    JobAdSnapshotService missingFirstRun = snapshotService(snapshotFile);
+    missingFirstRun.restore();
+    assertThat(missingFirstRun.getSnapshot().size()).isZero();
+
+    JobAdChanges firstRun = new JobAdChanges();
+    firstRun.setRevision(1);
+    service.onJobAdsChanged(new JobAdsChangedEvent(firstRun));
+    JobAdSnapshotService restarted = snapshotService(snapshotFile);
+    restarted.restore();
+    assertThat(restarted.getSnapshot().size()).isEqualTo(1);
+    verify(jobAdRepository, times(2)).streamSnapshotRows();
+  }
+
+  @Test
+  void testChangesCommittedBeforeTheSnapshotWasLoadedAreSkipped() {
+    when(jobAdRepository.streamSnapshotRows()).thenReturn(Stream.empty());
+    // The snapshot is loaded after a purge committed, before its changes are received
+    when(revisionRepository.findCurrent()).thenReturn(1L);
+    JobAdSnapshotService service = snapshotService(tempDir.resolve("s.bin"));
+    service.getSnapshot();
+    LocalDate week = LocalDate.of(2024, 1, 1);
+    JobAdChanges purge = new JobAdChanges();
+    purge.archived(
+      WeeklyHistory.of(
+        List.of(new PeriodStatistics(week, week.plusWeeks(1), 1, 0, 1))
+      )
+    );
+    purge.setRevision(1);
+
+    service.onJobAdsChanged(new JobAdsChangedEvent(purge));
+
+    assertThat(service.getSnapshot().getHistory().isEmpty()).isTrue();
+  }
+
+  @Test
+  void testSnapshotIsPersistedOnShutdown() {
+    Path snapshotFile = tempDir.resolve("data").resolve("snapshot.bin");
+    when(jobAdRepository.streamSnapshotRows()).thenReturn(Stream.empty());
+    JobAdSnapshotService service = snapshotService(snapshotFile);
+    service.getSnapshot();
+
+    service.persist();
+
+    assertThat(snapshotFile).exists();
+    assertThat(tempDir.resolve("data").resolve("snapshot.bin.tmp"))
+      .doesNotExist();
+  }
+
+  @Test
+  void testUnreadableSnapshotFileIsIgnored() throws IOException {
+    Path snapshotFile = tempDir.resolve("snapshot.bin");
+    Files.writeString(snapshotFile, "not a snapshot");
+    when(jobAdRepository.streamSnapshotRows()).thenReturn(Stream.empty());
+    JobAdSnapshotService service = snapshotService(snapshotFile);
+
+    service.restore();
+
+    assertThat(service.getSnapshot().size()).isZero();
+    verify(jobAdRepository).streamSnapshotRows();
+  }
+
+  private JobAdSnapshotService snapshotService(Path snapshotFile) {
+    return new JobAdSnapshotService(
+      jobAdRepository,
+      historyRepository,
+      revisionRepository,
+      transactionManager,
+      new SimpleMeterRegistry(),
+      snapshotFile.toString()
+    );
+  }
+
+  private static JobAdChanges changes(long revision) {
+    JobAd jobAd = new JobAd();
+    jobAd.setUuid("5b4c0b4e-2ad8-4a8e-9a10-3c4f1a2b3c01");
+    jobAd.setDescription("Kotlin");
+    jobAd.setPublished(LocalDate.of(2024, 1, 1).atStartOfDay());
+    jobAd.setExpires(LocalDate.of(2024, 2, 1).atStartOfDay());
+    JobAdChanges changes = new JobAdChanges();
+    changes.stored(jobAd);
+    changes.setRevision(revision);
+    return changes;
+  }
+}
@@ -0,0 +1,253 @@
+package no.nav.jobsearch.service;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import no.nav.jobsearch.model.Dimension;
+import no.nav.jobsearch.model.DimensionStatistics;
+import no.nav.jobsearch.model.JobAd;
+import no.nav.jobsearch.model.PeriodStatistics;
+import no.nav.jobsearch.model.Technology;
+import org.junit.jupiter.api.Test;
+
+class JobAdSnapshotTest {
+
+  private static final String UUID_1 = "5b4c0b4e-2ad8-4a8e-9a10-3c4f1a2b3c01";
+  private static final String UUID_2 = "5b4c0b4e-2ad8-4a8e-9a10-3c4f1a2b3c02";
+  private static final LocalDate WEEK = LocalDate.of(2022, 1, 3);
+
+  @Test
+  void testDescriptionIsClassifiedIgnoringCase() {
+    JobAdSnapshot.Row row = JobAdSnapshot.Row.of(
+      UUID_1,
+      LocalDateTime.of(2024, 1, 1, 10, 0),
+      LocalDateTime.of(2024, 2, 1, 0, 0),
+      null,
+      "Vi søker KOTLIN-utviklere"
+    );
+
+    assertThat(Technology.KOTLIN.isIn(row.technologies())).isTrue();
+    assertThat(Technology.JAVA.isIn(row.technologies())).isFalse();
+    assertThat(row.publishedDay())
+      .isEqualTo(LocalDate.of(2024, 1, 1).toEpochDay());
+  }
+
+  @Test
+  void testStoredTechnologyFlagsAreUsedWithoutDescription() {
+    JobAdSnapshot.Row row = JobAdSnapshot.Row.of(
+      UUID_1,
+      LocalDateTime.of(2024, 1, 1, 10, 0),
+      LocalDateTime.of(2024, 2, 1, 0, 0),
+      Technology.JAVA.flag(),
+      null
+    );
+
+    assertThat(row.technologies()).isEqualTo(Technology.JAVA.flag());
+  }
+
+  @Test
+  void testPatchReplacesStoredAndDropsRemovedAds() {
+    JobAd kotlinAd = jobAd(UUID_1, "Kotlin", LocalDate.of(2024, 1, 1));
+    JobAd javaAd = jobAd(UUID_2, "Java", LocalDate.of(2024, 1, 2));
+    JobAdChanges initial = new JobAdChanges();
+    initial.stored(kotlinAd);
+    initial.stored(javaAd);
+    JobAdSnapshot snapshot = JobAdSnapshot.EMPTY.patch(initial);
+
+    kotlinAd.setDescription("Java");
+    JobAdChanges changes = new JobAdChanges();
+    changes.stored(kotlinAd);
+    changes.removed(javaAd.getUuid());
+    JobAdSnapshot patched = snapshot.patch(changes);
+
+    assertThat(snapshot.size()).isEqualTo(2);
+    assertThat(patched.size()).isEqualTo(1);
+    assertThat(
+      patched
+        .getDailyStatistics()
+        .sum(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 3))
+    )
+      .satisfies(period -> {
+        assertThat(period.kotlinCount()).isZero();
+        assertThat(period.javaCount()).isEqualTo(1);
+        assertThat(period.totalCount()).isEqualTo(1);
+      });
+  }
+
+  @Test
+  void testAdStoredAfterRemovalIsKept() {
+    JobAd jobAd = jobAd(UUID_1, "Kotlin", LocalDate.of(2024, 1, 1));
+    JobAdChanges changes = new JobAdChanges();
+    changes.removed(jobAd.getUuid());
+    changes.stored(jobAd);
+
+    assertThat(JobAdSnapshot.EMPTY.patch(changes).size()).isEqualTo(1);
+  }
+
+  @Test
+  void testNonStandardUuidsAreHashedConsistently() {
+    assertThat(JobAdSnapshot.key("uuid1"))
+      .isEqualTo(JobAdSnapshot.key("uuid1"))
+      .isNotEqualTo(JobAdSnapshot.key("uuid2"));
+  }
+
+  @Test
+  void testActiveAdsAreCountedByExpiryDate() {
+    JobAdChanges changes = new JobAdChanges();
+    changes.stored(jobAd(UUID_1, "Kotlin", LocalDate.of(2024, 1, 1)));
+    changes.stored(jobAd(UUID_2, "Java", LocalDate.of(2024, 2, 1)));
+    JobAdSnapshot snapshot = JobAdSnapshot.EMPTY.patch(changes);
+
+    // The ads expire one month after they were published
+    assertThat(snapshot.countActive(LocalDate.of(2024, 2, 1))).isEqualTo(2);
+    assertThat(snapshot.countActive(LocalDate.of(2024, 2, 2))).isEqualTo(1);
+    assertThat(snapshot.countActive(LocalDate.of(2024, 3, 2))).isZero();
+  }
+
+  @Test
+  void testWrittenSnapshotIsReadBack() throws IOException {
+    JobAdChanges changes = new JobAdChanges();
+    changes.stored(jobAd(UUID_1, "Kotlin", LocalDate.of(2024, 1, 1)));
+    changes.stored(jobAd(UUID_2, "Java", LocalDate.of(2024, 2, 1)));
+    JobAdSnapshot snapshot = JobAdSnapshot.EMPTY.patch(changes);
+
+    JobAdSnapshot read = JobAdSnapshot.readFrom(
+      new DataInputStream(new ByteArrayInputStream(write(snapshot)))
+    );
+
+    assertThat(read.size()).isEqualTo(2);
+    assertThat(read.countActive(LocalDate.of(2024, 2, 2))).isEqualTo(1);
+    assertThat(
+      read
+        .getDailyStatistics()
+        .sum(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 3, 1))
+    )
+      .isEqualTo(
+        snapshot
+          .getDailyStatistics()
+          .sum(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 3, 1))
+      );
+  }
+
+  @Test
+  void testDimensionsSurvivePatchAndWrite() throws IOException {
+    JobAd oslo = jobAd(UUID_1, "Kotlin", LocalDate.of(2024, 1, 1));
+    oslo.setRegion("OSLO");
+    JobAd vestland = jobAd(UUID_2, "Java", LocalDate.of(2024, 1, 2));
+    vestland.setRegion("VESTLAND");
+    JobAdChanges initial = new JobAdChanges();
+    initial.stored(oslo);
+    initial.stored(vestland);
+    JobAdChanges changes = new JobAdChanges();
+    changes.removed(oslo.getUuid());
+    JobAdSnapshot patched = JobAdSnapshot.EMPTY.patch(initial).patch(changes);
+
+    JobAdSnapshot read = JobAdSnapshot.readFrom(
+      new DataInputStream(new ByteArrayInputStream(write(patched)))
+    );
+
+    assertThat(
+      read
+        .getCube()
+        .breakdown(
+          LocalDate.of(2024, 1, 1),
+          LocalDate.of(2024, 1, 8),
+          Dimension.REGION,
+          null,
+          null,
+          null
+        )
+    )
+      .containsExactly(new DimensionStatistics("VESTLAND", 0L, 1L, 1L));
+  }
+
+  @Test
+  void testArchivedAdsAreAddedToTheHistory() throws IOException {
+    JobAd kotlin = jobAd(UUID_1, "Kotlin", WEEK);
+    JobAd java = jobAd(UUID_2, "Java", WEEK);
+    JobAdChanges changes = new JobAdChanges();
+    changes.archived(
+      WeeklyHistory.count(
+        List.of(JobAdSnapshot.Row.of(kotlin), JobAdSnapshot.Row.of(java))
+      )
+    );
+    changes.removed(kotlin.getUuid());
+    changes.removed(java.getUuid());
+
+    // Each ingest run adds the job ads it purged to the counts of their weeks
+    JobAdSnapshot patched = JobAdSnapshot.EMPTY.patch(changes).patch(changes);
+
+    JobAdSnapshot read = JobAdSnapshot.readFrom(
+      new DataInputStream(new ByteArrayInputStream(write(patched)))
+    );
+
+    assertThat(read.getHistory().getWeeks())
+      .containsExactly(
+        new PeriodStatistics(WEEK, WEEK.plusWeeks(1), 2L, 2L, 4L)
+      );
+  }
+
+  @Test
+  void testPurgedAdThatComesBackIsOnlyCountedOnce() {
+    JobAd kotlin = jobAd(UUID_1, "Kotlin", WEEK);
+    WeeklyHistory purged = WeeklyHistory.count(
+      List.of(JobAdSnapshot.Row.of(kotlin))
+    );
+    JobAdChanges purge = new JobAdChanges();
+    purge.archived(purged);
+    purge.removed(kotlin.getUuid());
+    JobAdChanges republish = new JobAdChanges();
+    republish.stored(kotlin);
+    republish.unarchived(purged);
+
+    JobAdSnapshot patched = JobAdSnapshot.EMPTY.patch(purge).patch(republish);
+
+    // The job ad is stored again, and no longer counted in the history
+    assertThat(patched.size()).isEqualTo(1);
+    assertThat(patched.getHistory().getWeeks())
+      .containsExactly(
+        new PeriodStatistics(WEEK, WEEK.plusWeeks(1), 0L, 0L, 0L)
+      );
+  }
+
+  @Test
+  void testSnapshotOfOtherFormatVersionIsRejected() throws IOException {
+    byte[] bytes = write(JobAdSnapshot.EMPTY);
+    ByteBuffer.wrap(bytes).putInt(4, JobAdSnapshot.FORMAT_VERSION + 1);
+
+    assertThatThrownBy(() ->
+        JobAdSnapshot.readFrom(
+          new DataInputStream(new ByteArrayInputStream(bytes))
+        )
+      )
+      .isInstanceOf(IOException.class)
+      .hasMessageContaining("format version");
+  }
+
+  private static byte[] write(JobAdSnapshot snapshot) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    snapshot.writeTo(new DataOutputStream(bytes));
+    return bytes.toByteArray();
+  }
+
+  private static JobAd jobAd(
+    String uuid,
+    String description,
+    LocalDate published
+  ) {
+    JobAd jobAd = new JobAd();
+    jobAd.setUuid(uuid);
+    jobAd.setDescription(description);
+    jobAd.setPublished(published.atStartOfDay());
+    jobAd.setExpires(published.plusMonths(1).atStartOfDay());
+    return jobAd;
+  }
+}
@@ -0,0 +1,71 @@
+package no.nav.jobsearch.service;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Test factory of statistics snapshots and their job ads.
+ * The job ads are published at noon and expire a month later.
+ */
+final class JobAdSnapshots {
+
+  private JobAdSnapshots() {
+    // Prevent instantiation
+  }
+
+  static JobAdSnapshot snapshot(JobAdSnapshot.Row... rows) {
+    return snapshot(WeeklyHistory.EMPTY, rows);
+  }
+
+  static JobAdSnapshot snapshot(
+    WeeklyHistory history,
+    JobAdSnapshot.Row... rows
+  ) {
+    JobAdSnapshot.Builder builder = new JobAdSnapshot.Builder(rows.length)
+      .history(history);
+    for (JobAdSnapshot.Row row : rows) {
+      builder.add(row);
+    }
+    return builder.build();
+  }
+
+  static JobAdSnapshot.Row ad(LocalDate published, String description) {
+    return ad(published, description, null, null, null);
+  }
+
+  static JobAdSnapshot.Row ad(
+    LocalDate published,
+    String description,
+    String category
+  ) {
+    return ad(published, description, null, null, category);
+  }
+
+  static JobAdSnapshot.Row ad(
+    LocalDate published,
+    String description,
+    String region,
+    String sector
+  ) {
+    return ad(published, description, region, sector, null);
+  }
+
+  private static JobAdSnapshot.Row ad(
+    LocalDate published,
+    String description,
+    String region,
+    String sector,
+    String category
+  ) {
+    return JobAdSnapshot.Row.of(
+      UUID.randomUUID().toString(),
+      published.atTime(12, 0),
+      published.plusMonths(1).atStartOfDay(),
+      null,
+      description,
+      region,
+      sector,
+      category
+    );
+  }
+}
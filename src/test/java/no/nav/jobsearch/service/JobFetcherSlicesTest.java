@@ -0,0 +1,216 @@
+package no.nav.jobsearch.service;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+import no.nav.jobsearch.model.JobAdDto;
+import no.nav.jobsearch.model.JobFeedResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Tests the cursor and the time slices of the blocking {@link JobFetcher} against a mocked feed,
+ * which returns the ads of the requested updated range newest first, including the ads on both bounds.
+ */
+@Timeout(10)
+class JobFetcherSlicesTest {
+
+  private static final int PAGE_SIZE = 4;
+
+  private final LocalDateTime now = LocalDateTime.parse("2025-02-01T12:00:00");
+
+  /**
+   * One ad a minute, from one to twenty minutes before now.
+   */
+  private final List<JobAdDto> ads = IntStream
+    .rangeClosed(1, 20)
+    .mapToObj(minutes -> ad(now.minusMinutes(minutes)))
+    .toList();
+
+  private final List<String> requests = Collections.synchronizedList(
+    new ArrayList<>()
+  );
+
+  private JobFetcherWithRetry jobFetcherWithRetry;
+  private JobFetcher jobFetcher;
+
+  @BeforeEach
+  void setUp() {
+    jobFetcherWithRetry = mock(JobFetcherWithRetry.class);
+    givenFeedWithMaxPages(Integer.MAX_VALUE);
+  }
+
+  @AfterEach
+  void tearDown() {
+    if (jobFetcher != null) {
+      jobFetcher.shutdown();
+    }
+  }
+
+  @Test
+  void testEachRangeContinuesAtTheLastAdOfThePrevious() {
+    // The feed returns at most three pages per range, so the ads take three ranges
+    givenFeedWithMaxPages(3);
+    jobFetcher = jobFetcher(1);
+    List<String> fetched = new ArrayList<>();
+
+    jobFetcher.fetchJobs(
+      "IT",
+      now,
+      now.minusHours(1),
+      now,
+      page -> page.stream().map(JobAdDto::getUuid).forEach(fetched::add)
+    );
+
+    // The pages of a range are requested with the bounds of its first page,
+    // and the next range starts at the last ad fetched, which is fetched again
+    assertThat(requests)
+      .containsExactly(
+        request(now, 0),
+        request(now, 1),
+        request(now, 2),
+        request(now.minusMinutes(12), 0),
+        request(now.minusMinutes(12), 1),
+        request(now.minusMinutes(12), 2),
+        request(now.minusMinutes(20), 0)
+      );
+    List<String> expected = new ArrayList<>(uuids(1, 12));
+    expected.addAll(uuids(12, 20));
+    expected.addAll(uuids(20, 20));
+    assertThat(fetched).containsExactlyElementsOf(expected);
+  }
+
+  @Test
+  void testSlicesAreFetchedConcurrentlyAndHandedToTheCallingThread() {
+    jobFetcher = jobFetcher(3);
+    Thread caller = Thread.currentThread();
+    List<String> fetched = new ArrayList<>();
+
+    jobFetcher.fetchAllJobs(
+      "IT",
+      now,
+      now.minusMinutes(30),
+      now,
+      page -> {
+        assertThat(Thread.currentThread()).isSameAs(caller);
+        page.stream().map(JobAdDto::getUuid).forEach(fetched::add);
+      }
+    );
+
+    // The slices are ten minutes each, and the ads on their bounds are fetched by both slices
+    assertThat(requests)
+      .contains(
+        request(now, 0),
+        request(now.minusMinutes(10), 0),
+        request(now.minusMinutes(20), 0)
+      );
+    assertThat(fetched)
+      .containsAll(ads.stream().map(JobAdDto::getUuid).toList());
+    assertThat(fetched)
+      .filteredOn(ads.get(9).getUuid()::equals)
+      .hasSizeGreaterThan(1);
+    assertThat(fetched)
+      .filteredOn(ads.get(19).getUuid()::equals)
+      .hasSizeGreaterThan(1);
+  }
+
+  @Test
+  void testFailureOfOneSliceFailsTheFetch() {
+    RuntimeException failure = new RuntimeException("Feed failed");
+    givenSliceFails(now.minusMinutes(10), failure);
+    jobFetcher = jobFetcher(3);
+
+    assertThatThrownBy(() -> fetchAll(jobFetcher)).isSameAs(failure);
+  }
+
+  @Test
+  void testErrorInOneSliceFailsTheFetchInsteadOfBlocking() {
+    AssertionError error = new AssertionError("Slice failed");
+    givenSliceFails(now.minusMinutes(10), error);
+    jobFetcher = jobFetcher(3);
+
+    assertThatThrownBy(() -> fetchAll(jobFetcher)).isSameAs(error);
+  }
+
+  private JobFetcher jobFetcher(int fetchShards) {
+    return new JobFetcher(
+      jobFetcherWithRetry,
+      new FeedCircuitBreaker(3, 600_000, 1),
+      1,
+      fetchShards,
+      false
+    );
+  }
+
+  private void fetchAll(JobFetcher fetcher) {
+    fetcher.fetchAllJobs("IT", now, now.minusMinutes(30), now, page -> {});
+  }
+
+  private void givenFeedWithMaxPages(int maxPages) {
+    doAnswer(invocation -> {
+        LocalDateTime oldest = invocation.getArgument(2);
+        LocalDateTime newest = invocation.getArgument(3);
+        int page = invocation.getArgument(4);
+        requests.add(request(newest, page));
+        List<JobAdDto> matching = ads
+          .stream()
+          .filter(ad -> !ad.getPublishedAsLocalDateTime().isBefore(oldest))
+          .filter(ad -> !ad.getPublishedAsLocalDateTime().isAfter(newest))
+          .toList();
+        int totalPages = Math.min(
+          maxPages,
+          (matching.size() + PAGE_SIZE - 1) / PAGE_SIZE
+        );
+        List<JobAdDto> content = page < totalPages
+          ? matching.subList(
+            page * PAGE_SIZE,
+            Math.min((page + 1) * PAGE_SIZE, matching.size())
+          )
+          : List.of();
+        return ResponseEntity.ok(
+          new JobFeedResponse(content, page, totalPages)
+        );
+      })
+      .when(jobFetcherWithRetry)
+      .fetchDataWithRetry(any(), any(), any(), any(), anyInt());
+  }
+
+  private void givenSliceFails(LocalDateTime sliceNewest, Throwable failure) {
+    doThrow(failure)
+      .when(jobFetcherWithRetry)
+      .fetchDataWithRetry(any(), any(), any(), eq(sliceNewest), anyInt());
+  }
+
+  /**
+   * The UUIDs of the ads published from one to another number of minutes before now, newest first.
+   */
+  private List<String> uuids(int fromMinute, int toMinute) {
+    return ads
+      .subList(fromMinute - 1, toMinute)
+      .stream()
+      .map(JobAdDto::getUuid)
+      .toList();
+  }
+
+  private static String request(LocalDateTime newest, int page) {
+    return newest + "#" + page;
+  }
+
+  private static JobAdDto ad(LocalDateTime published) {
+    JobAdDto ad = new JobAdDto();
+    ad.setUuid("uuid-" + published);
+    ad.setPublished(published.atOffset(ZoneOffset.UTC).toString());
+    ad.setUpdated(published.atOffset(ZoneOffset.UTC).toString());
+    return ad;
+  }
+}
@@ -73,6 +73,7 @@ public class JobFetcherTest {
 
     // Call the method under test
     jobFetcher.fetchJobs(
+      "IT",
       now,
       oldestUpdatedDate,
       newestUpdatedDate,
@@ -116,6 +117,7 @@ public class JobFetcherTest {
 
     // Call the method under test
     jobFetcher.fetchJobs(
+      "IT",
       now,
       oldestUpdatedDate,
       newestUpdatedDate,
@@ -150,6 +152,7 @@ public class JobFetcherTest {
 
     // Call the method under test
     jobFetcher.fetchJobs(
+      "IT",
       now,
       oldestUpdatedDate,
       newestUpdatedDate,
@@ -191,6 +194,7 @@ public class JobFetcherTest {
       ResourceAccessException.class,
       () ->
         jobFetcher.fetchJobs(
+          "IT",
           now,
           oldestUpdatedDate,
           newestUpdatedDate,
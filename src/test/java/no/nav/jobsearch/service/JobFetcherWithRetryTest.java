@@ -4,6 +4,8 @@ import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.time.LocalDateTime;
 import no.nav.jobsearch.model.JobFeedResponse;
 import org.junit.jupiter.api.BeforeEach;
@@ -11,6 +13,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
@@ -25,12 +28,15 @@ class JobFetcherWithRetryTest {
   @Mock
   private RestTemplate restTemplate;
 
+  @Spy
+  private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
   @InjectMocks
   private JobFetcherWithRetry jobFetcherWithRetry;
 
   @BeforeEach
   void setUp() {
-    jobFetcherWithRetry = new JobFetcherWithRetry(restTemplate);
+    jobFetcherWithRetry = new JobFetcherWithRetry(restTemplate, meterRegistry);
   }
 
   @Test
@@ -53,6 +59,7 @@ class JobFetcherWithRetryTest {
 
     ResponseEntity<JobFeedResponse> response =
       jobFetcherWithRetry.fetchDataWithRetry(
+        "IT",
         now,
         oldestUpdatedDate,
         newestUpdatedDate,
@@ -90,6 +97,7 @@ class JobFetcherWithRetryTest {
       HttpClientErrorException.class,
       () ->
         jobFetcherWithRetry.fetchDataWithRetry(
+          "IT",
           now,
           oldestUpdatedDate,
           newestUpdatedDate,
@@ -115,6 +123,7 @@ class JobFetcherWithRetryTest {
 
     String expectedUrlPart = "&page=1";
     String url = jobFetcherWithRetry.buildApiUrl(
+      "IT",
       now,
       oldestUpdatedDate,
       newestUpdatedDate,
@@ -125,6 +134,22 @@ class JobFetcherWithRetryTest {
     assertTrue(url.contains(expectedUrlPart));
   }
 
+  @Test
+  void testBuildApiUrl_AllCategories() {
+    LocalDateTime now = LocalDateTime.of(2024, 2, 6, 12, 0, 0);
+
+    String url = jobFetcherWithRetry.buildApiUrl(
+      FeedFetcher.ALL_CATEGORIES,
+      now,
+      now.minusDays(10),
+      now.minusDays(1),
+      0
+    );
+
+    assertTrue(url.contains("?size="));
+    assertFalse(url.contains("category="));
+  }
+
   @Test
   void testGetHttpEntity() {
     HttpEntity<String> httpEntity = jobFetcherWithRetry.getHttpEntity();
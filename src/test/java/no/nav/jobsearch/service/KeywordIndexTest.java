@@ -0,0 +1,109 @@
+package no.nav.jobsearch.service;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+import no.nav.jobsearch.model.KeywordStatistics;
+import org.junit.jupiter.api.Test;
+
+class KeywordIndexTest {
+
+  private static final UUID UUID_1 = UUID.fromString(
+    "5b4c0b4e-2ad8-4a8e-9a10-3c4f1a2b3c01"
+  );
+  private static final UUID UUID_2 = UUID.fromString(
+    "5b4c0b4e-2ad8-4a8e-9a10-3c4f1a2b3c02"
+  );
+  private static final UUID UUID_3 = UUID.fromString(
+    "5b4c0b4e-2ad8-4a8e-9a10-3c4f1a2b3c03"
+  );
+
+  private static final LocalDate WEEK_1 = LocalDate.of(2024, 1, 1);
+  private static final LocalDate WEEK_2 = LocalDate.of(2024, 1, 8);
+
+  @Test
+  void testTermsIgnoreCaseAndHtml() {
+    assertThat(
+      KeywordIndex.terms("<p>Kotlin, C# og <b>Spring-Boot</b> på Android</p>")
+    )
+      .containsExactlyInAnyOrder(
+        "kotlin",
+        "c#",
+        "og",
+        "spring",
+        "boot",
+        "på",
+        "android"
+      );
+  }
+
+  @Test
+  void testBooleanQueryIsCountedPerWeek() {
+    KeywordIndex index = new KeywordIndex();
+    KeywordIndex.Delta delta = new KeywordIndex.Delta();
+    delta.stored(UUID_1, day(WEEK_1), "Utvikler", "Kotlin og Spring");
+    delta.stored(UUID_2, day(WEEK_1), "Android-utvikler", "Kotlin og Spring");
+    delta.stored(UUID_3, day(WEEK_2.plusDays(6)), "Utvikler", "Kotlin, Spring");
+    index.apply(delta);
+
+    assertThat(weekly(index, "kotlin AND spring AND NOT android"))
+      .containsExactly(
+        new KeywordStatistics(WEEK_1, WEEK_2, 1L),
+        new KeywordStatistics(WEEK_2, WEEK_2.plusWeeks(1), 1L)
+      );
+    assertThat(weekly(index, "android OR (kotlin NOT spring)"))
+      .containsExactly(new KeywordStatistics(WEEK_1, WEEK_2, 1L));
+  }
+
+  @Test
+  void testUpdatedAndRemovedAdsAreNotMatched() {
+    KeywordIndex index = new KeywordIndex();
+    KeywordIndex.Delta initial = new KeywordIndex.Delta();
+    initial.stored(UUID_1, day(WEEK_1), "Kotlin");
+    initial.stored(UUID_2, day(WEEK_1), "Kotlin");
+    initial.stored(UUID_3, day(WEEK_1), "Kotlin");
+    index.apply(initial);
+
+    // Leaves more dead than live ordinals, so the index is compacted
+    KeywordIndex.Delta changes = new KeywordIndex.Delta();
+    changes.stored(UUID_1, day(WEEK_2), "Java");
+    changes.removed(UUID_2);
+    changes.stored(UUID_3, day(WEEK_2), "Kotlin");
+    index.apply(changes);
+    KeywordIndex.Delta more = new KeywordIndex.Delta();
+    more.stored(UUID_2, day(WEEK_2), "Kotlin");
+    index.apply(more);
+
+    assertThat(index.size()).isEqualTo(3);
+    assertThat(weekly(index, "kotlin"))
+      .containsExactly(new KeywordStatistics(WEEK_2, WEEK_2.plusWeeks(1), 2L));
+    assertThat(weekly(index, "NOT kotlin"))
+      .containsExactly(new KeywordStatistics(WEEK_2, WEEK_2.plusWeeks(1), 1L));
+  }
+
+  @Test
+  void testMalformedQueriesAreRejected() {
+    for (String query : List.of("", "kotlin AND", "(kotlin", "OR java", "!")) {
+      assertThatThrownBy(() -> KeywordQuery.parse(query))
+        .as(query)
+        .isInstanceOf(IllegalArgumentException.class);
+    }
+  }
+
+  private static List<KeywordStatistics> weekly(
+    KeywordIndex index,
+    String query
+  ) {
+    return index.weekly(
+      KeywordQuery.parse(query).matches(index),
+      WEEK_1,
+      WEEK_2.plusWeeks(1)
+    );
+  }
+
+  private static int day(LocalDate date) {
+    return (int) date.toEpochDay();
+  }
+}
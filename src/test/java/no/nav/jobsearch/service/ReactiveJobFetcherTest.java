@@ -0,0 +1,234 @@
+package no.nav.jobsearch.service;
+
+import static org.assertj.core.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import no.nav.jobsearch.AppConfig;
+import no.nav.jobsearch.loadtest.FeedSimulator;
+import no.nav.jobsearch.model.JobAdDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class ReactiveJobFetcherTest {
+
+  private static final int PAGE_SIZE = 10;
+
+  private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final LocalDateTime now = LocalDateTime.now().withNano(0);
+
+  private FeedSimulator feed;
+  private JobFetcherWithRetry jobFetcherWithRetry;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    feed = new FeedSimulator(95, now, Duration.ZERO);
+    jobFetcherWithRetry =
+      new JobFetcherWithRetry(
+        new AppConfig().restTemplate(false),
+        meterRegistry
+      );
+    ReflectionTestUtils.setField(jobFetcherWithRetry, "apiUrl", feed.getUrl());
+    ReflectionTestUtils.setField(jobFetcherWithRetry, "token", "token");
+    ReflectionTestUtils.setField(jobFetcherWithRetry, "batchSize", PAGE_SIZE);
+  }
+
+  @AfterEach
+  void tearDown() {
+    feed.close();
+  }
+
+  @Test
+  void testFetchJobsReturnsSameAdsAsBlockingFetcher() {
+    JobFetcher blockingFetcher = new JobFetcher(
+      jobFetcherWithRetry,
+      new FeedCircuitBreaker(3, 600_000, 1),
+      1,
+      false
+    );
+    List<String> blockingUuids = fetchUuids(blockingFetcher);
+
+    List<String> reactiveUuids = fetchUuids(reactiveJobFetcher(4));
+
+    assertThat(reactiveUuids).isNotEmpty().isEqualTo(blockingUuids);
+  }
+
+  @Test
+  void testFetchJobsArchivesThePages(@TempDir Path archiveDir) {
+    FeedPageArchive pageArchive = new FeedPageArchive(
+      archiveDir.toString(),
+      1 << 20,
+      new ObjectMapper().findAndRegisterModules(),
+      meterRegistry
+    );
+    jobFetcherWithRetry =
+      new JobFetcherWithRetry(
+        new AppConfig().restTemplate(false),
+        meterRegistry,
+        pageArchive
+      );
+    ReflectionTestUtils.setField(jobFetcherWithRetry, "apiUrl", feed.getUrl());
+    ReflectionTestUtils.setField(jobFetcherWithRetry, "token", "token");
+    ReflectionTestUtils.setField(jobFetcherWithRetry, "batchSize", PAGE_SIZE);
+
+    List<String> fetchedUuids = fetchUuids(reactiveJobFetcher(4));
+
+    List<String> archivedUuids = new ArrayList<>();
+    pageArchive.replay(page ->
+      page
+        .getContent()
+        .stream()
+        .map(JobAdDto::getUuid)
+        .forEach(archivedUuids::add)
+    );
+    assertThat(archivedUuids)
+      .isNotEmpty()
+      .containsExactlyInAnyOrderElementsOf(fetchedUuids);
+  }
+
+  @Test
+  void testFetchAllJobsInTimeSlicesReturnsAllAdsOnce() {
+    JobFetcher blockingFetcher = new JobFetcher(
+      jobFetcherWithRetry,
+      new FeedCircuitBreaker(3, 600_000, 1),
+      2,
+      4,
+      false
+    );
+    ReactiveJobFetcher reactiveFetcher = new ReactiveJobFetcher(
+      jobFetcherWithRetry,
+      new FeedCircuitBreaker(3, 600_000, 1),
+      new AppConfig().feedWebClient(),
+      meterRegistry,
+      2,
+      4,
+      3,
+      10
+    );
+    try {
+      List<String> serialUuids = fetchUuids(blockingFetcher);
+      List<String> blockingUuids = fetchAllUuids(blockingFetcher);
+      List<String> reactiveUuids = fetchAllUuids(reactiveFetcher);
+
+      assertThat(serialUuids).hasSize(95).doesNotHaveDuplicates();
+      assertThat(blockingUuids)
+        .containsExactlyInAnyOrderElementsOf(serialUuids);
+      assertThat(reactiveUuids)
+        .containsExactlyInAnyOrderElementsOf(serialUuids);
+    } finally {
+      blockingFetcher.shutdown();
+    }
+  }
+
+  @Test
+  void testFetchAllJobsInTimeSlicesFailsIfAnySliceFails() {
+    FeedCircuitBreaker circuitBreaker = new FeedCircuitBreaker(1, 600_000, 1);
+    circuitBreaker.onFailure();
+    JobFetcher blockingFetcher = new JobFetcher(
+      jobFetcherWithRetry,
+      circuitBreaker,
+      1,
+      4,
+      false
+    );
+    try {
+      assertThatThrownBy(() -> fetchAllUuids(blockingFetcher))
+        .isInstanceOf(FeedUnavailableException.class);
+    } finally {
+      blockingFetcher.shutdown();
+    }
+  }
+
+  @Test
+  void testFetchJobsHandsPagesToHandlerOnCallingThread() {
+    Thread caller = Thread.currentThread();
+    List<Thread> handlerThreads = new ArrayList<>();
+
+    reactiveJobFetcher(4)
+      .fetchJobs(
+        "IT",
+        now,
+        now.minusDays(1),
+        now.plusSeconds(1),
+        jobAdDtos -> handlerThreads.add(Thread.currentThread())
+      );
+
+    assertThat(handlerThreads).isNotEmpty().containsOnly(caller);
+  }
+
+  @Test
+  void testFetchJobsFailsFastWhenCircuitBreakerIsOpen() {
+    FeedCircuitBreaker circuitBreaker = new FeedCircuitBreaker(1, 600_000, 1);
+    circuitBreaker.onFailure();
+    ReactiveJobFetcher reactiveJobFetcher = new ReactiveJobFetcher(
+      jobFetcherWithRetry,
+      circuitBreaker,
+      new AppConfig().feedWebClient(),
+      meterRegistry,
+      4,
+      3,
+      10
+    );
+
+    assertThatThrownBy(() ->
+        reactiveJobFetcher.fetchJobs(
+          "IT",
+          now,
+          now.minusDays(1),
+          now.plusSeconds(1),
+          jobAdDtos -> {}
+        )
+      )
+      .isInstanceOf(FeedUnavailableException.class);
+    assertThat(feed.getRequestCount()).isZero();
+  }
+
+  private ReactiveJobFetcher reactiveJobFetcher(int fetchConcurrency) {
+    return new ReactiveJobFetcher(
+      jobFetcherWithRetry,
+      new FeedCircuitBreaker(3, 600_000, 1),
+      new AppConfig().feedWebClient(),
+      meterRegistry,
+      fetchConcurrency,
+      3,
+      10
+    );
+  }
+
+  private List<String> fetchUuids(FeedFetcher fetcher) {
+    List<String> uuids = new ArrayList<>();
+    fetcher.fetchJobs(
+      "IT",
+      now,
+      now.minusDays(1),
+      now.plusSeconds(1),
+      jobAdDtos -> jobAdDtos.stream().map(JobAdDto::getUuid).forEach(uuids::add)
+    );
+    return uuids;
+  }
+
+  private List<String> fetchAllUuids(FeedFetcher fetcher) {
+    Thread caller = Thread.currentThread();
+    List<String> uuids = new ArrayList<>();
+    fetcher.fetchAllJobs(
+      "IT",
+      now,
+      now.minusDays(1),
+      now.plusSeconds(1),
+      jobAdDtos -> {
+        assertThat(Thread.currentThread()).isSameAs(caller);
+        jobAdDtos.stream().map(JobAdDto::getUuid).forEach(uuids::add);
+      }
+    );
+    return uuids;
+  }
+}
@@ -0,0 +1,191 @@
+package no.nav.jobsearch.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import no.nav.jobsearch.model.Technology;
+import no.nav.jobsearch.repository.JobAdRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+
+@ExtendWith(MockitoExtension.class)
+class ReclassificationJobTest {
+
+  private static final LocalDateTime PUBLISHED = LocalDateTime.of(
+    2025,
+    1,
+    1,
+    0,
+    0
+  );
+
+  private static final long KOTLIN = Technology.flagsOf("Kotlin");
+
+  private static final long JAVA = Technology.flagsOf("Java");
+
+  private static final long NONE = Technology.flagsOf("Utvikler");
+
+  @Mock
+  private JobAdRepository jobAdRepository;
+
+  @Mock
+  private ApplicationEventPublisher eventPublisher;
+
+  @Mock
+  private PlatformTransactionManager transactionManager;
+
+  private ReclassificationJob reclassificationJob;
+
+  @BeforeEach
+  void setUp() {
+    reclassificationJob =
+      new ReclassificationJob(
+        jobAdRepository,
+        eventPublisher,
+        transactionManager,
+        2,
+        2,
+        0
+      );
+  }
+
+  @Test
+  void testOnlyChangedFlagsAreUpdatedChunkByChunk() {
+    when(jobAdRepository.streamUuidsInOrder())
+      .thenReturn(Stream.of("uuid1", "uuid2", "uuid3", "uuid4", "uuid5"));
+    when(jobAdRepository.findReclassificationRows("", "uuid2"))
+      .thenReturn(
+        List.of(
+          row("uuid1", JAVA, "Kotlin", null),
+          row("uuid2", KOTLIN, "Kotlin", null)
+        )
+      );
+    when(jobAdRepository.findReclassificationRows("uuid2", "uuid4"))
+      .thenReturn(
+        List.of(
+          row("uuid3", JAVA, null, "Utvikler"),
+          row("uuid4", JAVA, null, null)
+        )
+      );
+    when(jobAdRepository.findReclassificationRows("uuid4", "uuid5"))
+      .thenReturn(List.<Object[]>of(row("uuid5", NONE, "Kotlin", null)));
+
+    reclassificationJob.run();
+
+    verify(jobAdRepository).updateTechnologies(KOTLIN, List.of("uuid1"));
+    verify(jobAdRepository).updateTechnologies(KOTLIN, List.of("uuid5"));
+    verify(jobAdRepository).updateTechnologies(NONE, List.of("uuid3"));
+    verify(jobAdRepository, times(3)).updateTechnologies(anyLong(), any());
+
+    ArgumentCaptor<JobAdsChangedEvent> event = ArgumentCaptor.forClass(
+      JobAdsChangedEvent.class
+    );
+    // Each chunk publishes its own reclassified job ads
+    verify(eventPublisher, times(3)).publishEvent(event.capture());
+    List<JobAdSnapshot.Row> stored = new ArrayList<>();
+    event
+      .getAllValues()
+      .forEach(changed -> stored.addAll(changed.changes().getStored()));
+    assertThat(stored)
+      .extracting(JobAdSnapshot.Row::uuid)
+      .containsExactlyInAnyOrder(
+        JobAdSnapshot.key("uuid1"),
+        JobAdSnapshot.key("uuid3"),
+        JobAdSnapshot.key("uuid5")
+      );
+
+    ReclassificationJob.Progress progress = reclassificationJob.getProgress();
+    assertThat(progress.status())
+      .isEqualTo(ReclassificationJob.Status.FINISHED);
+    assertThat(progress.totalChunks()).isEqualTo(3);
+    assertThat(progress.completedChunks()).isEqualTo(3);
+    assertThat(progress.scannedAds()).isEqualTo(5);
+    assertThat(progress.reclassifiedAds()).isEqualTo(3);
+  }
+
+  @Test
+  void testFailedChunkIsRolledBackAndOthersCompleted() {
+    when(jobAdRepository.streamUuidsInOrder())
+      .thenReturn(Stream.of("uuid1", "uuid2", "uuid3"));
+    when(jobAdRepository.findReclassificationRows("", "uuid2"))
+      .thenThrow(new IllegalStateException("Deadlock"));
+    when(jobAdRepository.findReclassificationRows("uuid2", "uuid3"))
+      .thenReturn(List.<Object[]>of(row("uuid3", JAVA, "Kotlin", null)));
+
+    reclassificationJob.run();
+
+    verify(transactionManager).rollback(any());
+    verify(jobAdRepository).updateTechnologies(KOTLIN, List.of("uuid3"));
+    verify(eventPublisher).publishEvent(any(JobAdsChangedEvent.class));
+    ReclassificationJob.Progress progress = reclassificationJob.getProgress();
+    assertThat(progress.completedChunks()).isEqualTo(1);
+    assertThat(progress.failedChunks()).isEqualTo(1);
+  }
+
+  @Test
+  void testBackfillRunsInsideTheGuard() throws Exception {
+    when(jobAdRepository.streamUuidsInOrder())
+      .thenReturn(Stream.of("uuid1"));
+    when(jobAdRepository.findReclassificationRows("", "uuid1"))
+      .thenReturn(List.<Object[]>of(row("uuid1", JAVA, "Kotlin", null)));
+    ReentrantLock runLock = new ReentrantLock();
+    CountDownLatch finished = new CountDownLatch(1);
+    AtomicBoolean updatedWhileLocked = new AtomicBoolean();
+    // The chunks are updated by the workers, while the backfill holds the lock
+    doAnswer(invocation -> {
+        updatedWhileLocked.set(runLock.isLocked());
+        return 1;
+      })
+      .when(jobAdRepository)
+      .updateTechnologies(anyLong(), any());
+
+    boolean started = reclassificationJob.start(task -> {
+      runLock.lock();
+      try {
+        task.run();
+      } finally {
+        runLock.unlock();
+        finished.countDown();
+      }
+    });
+
+    assertThat(started).isTrue();
+    assertThat(finished.await(5, TimeUnit.SECONDS)).isTrue();
+    verify(jobAdRepository).updateTechnologies(KOTLIN, List.of("uuid1"));
+    assertThat(updatedWhileLocked).isTrue();
+    reclassificationJob.shutdown();
+  }
+
+  private static Object[] row(
+    String uuid,
+    long technologies,
+    String description,
+    String compressedDescription
+  ) {
+    return new Object[] {
+      uuid,
+      PUBLISHED,
+      PUBLISHED.plusMonths(1),
+      technologies,
+      description,
+      compressedDescription,
+      null,
+      null,
+      null,
+    };
+  }
+}
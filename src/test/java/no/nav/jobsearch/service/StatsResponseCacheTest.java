@@ -0,0 +1,131 @@
+package no.nav.jobsearch.service;
+
+import static no.nav.jobsearch.service.JobAdSnapshots.ad;
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.zip.GZIPInputStream;
+import no.nav.jobsearch.model.JobStatistics;
+import no.nav.jobsearch.service.StatsResponseCache.EncodedStatistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class StatsResponseCacheTest {
+
+  private static final LocalDate FROM = LocalDate.of(2024, 1, 1);
+  private static final LocalDate TO = LocalDate.of(2024, 1, 31);
+
+  @Mock
+  private JobAdSnapshotService snapshotService;
+
+  private final ObjectMapper objectMapper = new ObjectMapper()
+    .findAndRegisterModules();
+
+  private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private StatsResponseCache statsResponseCache;
+
+  @BeforeEach
+  void setUp() {
+    Clock clock = Clock.fixed(
+      Instant.parse("2024-03-15T12:00:00Z"),
+      ZoneOffset.UTC
+    );
+    statsResponseCache =
+      new StatsResponseCache(
+        new StatsService(
+          snapshotService,
+          mock(KeywordIndexService.class),
+          meterRegistry,
+          clock
+        ),
+        snapshotService,
+        objectMapper,
+        meterRegistry,
+        clock
+      );
+  }
+
+  @Test
+  void testStatisticsAreEncodedOncePerSnapshot() throws IOException {
+    givenAds(ad(FROM, "Kotlin"), ad(FROM, "Java"));
+
+    EncodedStatistics first = statsResponseCache.getKotlinVsJavaStats(FROM, TO);
+    EncodedStatistics second = statsResponseCache.getKotlinVsJavaStats(
+      FROM,
+      TO
+    );
+
+    assertThat(second).isSameAs(first);
+    assertThat(cacheCount("miss")).isEqualTo(1);
+    assertThat(cacheCount("hit")).isEqualTo(1);
+    JobStatistics[] statistics = objectMapper.readValue(
+      first.getJson(),
+      JobStatistics[].class
+    );
+    assertThat(statistics)
+      .containsExactly(
+        new JobStatistics(FROM.atStartOfDay(), 1, 1, 1, 2)
+      );
+    assertThat(gunzip(first.getGzip())).isEqualTo(first.getJson());
+    assertThat(first.getETag(true)).isNotEqualTo(first.getETag(false));
+  }
+
+  @Test
+  void testETagOnlyChangesWithTheStatistics() {
+    JobAdSnapshot.Row kotlinAd = ad(FROM, "Kotlin");
+    givenAds(kotlinAd);
+    EncodedStatistics first = statsResponseCache.getKotlinVsJavaStats(FROM, TO);
+
+    // A patched snapshot with the same numbers is encoded again, to the same ETag
+    givenAds(kotlinAd);
+    EncodedStatistics patched = statsResponseCache.getKotlinVsJavaStats(
+      FROM,
+      TO
+    );
+    givenAds(kotlinAd, ad(FROM, "Java"));
+    EncodedStatistics changed = statsResponseCache.getKotlinVsJavaStats(
+      FROM,
+      TO
+    );
+
+    assertThat(cacheCount("miss")).isEqualTo(3);
+    assertThat(patched.getETag(false)).isEqualTo(first.getETag(false));
+    assertThat(changed.getETag(false)).isNotEqualTo(first.getETag(false));
+  }
+
+  private void givenAds(JobAdSnapshot.Row... rows) {
+    when(snapshotService.getSnapshot())
+      .thenReturn(JobAdSnapshots.snapshot(rows));
+  }
+
+  private static byte[] gunzip(byte[] gzip) throws IOException {
+    try (
+      InputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip))
+    ) {
+      return in.readAllBytes();
+    }
+  }
+
+  private double cacheCount(String result) {
+    return meterRegistry
+      .get("stats.response.cache")
+      .tag("result", result)
+      .counter()
+      .count();
+  }
+}
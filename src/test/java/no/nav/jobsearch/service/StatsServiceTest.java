@@ -0,0 +1,394 @@
+package no.nav.jobsearch.service;
+
+import static no.nav.jobsearch.service.JobAdSnapshots.ad;
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import no.nav.jobsearch.model.Dimension;
+import no.nav.jobsearch.model.DimensionStatistics;
+import no.nav.jobsearch.model.Granularity;
+import no.nav.jobsearch.model.PeriodStatistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class StatsServiceTest {
+
+  @Mock
+  private JobAdSnapshotService snapshotService;
+
+  @Mock
+  private KeywordIndexService keywordIndexService;
+
+  private StatsService statsService;
+
+  @BeforeEach
+  void setUp() {
+    statsService =
+      new StatsService(
+        snapshotService,
+        keywordIndexService,
+        new SimpleMeterRegistry(),
+        Clock.fixed(Instant.parse("2024-03-15T12:00:00Z"), ZoneOffset.UTC)
+      );
+  }
+
+  @Test
+  void testDailyCountsAreRolledUpToWeeks() {
+    givenAds(
+      ad(LocalDate.of(2024, 1, 1), "Kotlin og Java"), // Monday, week 1
+      ad(LocalDate.of(2024, 1, 1), "Java"),
+      ad(LocalDate.of(2024, 1, 7), "Kotlin"), // Sunday, week 1
+      ad(LocalDate.of(2024, 1, 8), "Java"), // Monday, week 2
+      ad(LocalDate.of(2024, 1, 8), "Python")
+    );
+
+    List<PeriodStatistics> result = statsService.getKotlinVsJavaStats(
+      LocalDate.of(2024, 1, 1),
+      LocalDate.of(2024, 1, 31),
+      Granularity.WEEK
+    );
+
+    assertThat(result)
+      .containsExactly(
+        new PeriodStatistics(
+          LocalDate.of(2024, 1, 1),
+          LocalDate.of(2024, 1, 8),
+          2L,
+          2L,
+          3L
+        ),
+        new PeriodStatistics(
+          LocalDate.of(2024, 1, 8),
+          LocalDate.of(2024, 1, 15),
+          0L,
+          1L,
+          2L
+        )
+      );
+  }
+
+  @Test
+  void testWeeklyStatsIncludePurgedAds() {
+    LocalDate week = LocalDate.of(2022, 1, 3);
+    givenAds(
+      WeeklyHistory.of(
+        List.of(
+          new PeriodStatistics(week, week.plusWeeks(1), 2L, 1L, 5L),
+          new PeriodStatistics(
+            LocalDate.of(2024, 1, 1),
+            LocalDate.of(2024, 1, 8),
+            1L,
+            0L,
+            1L
+          )
+        )
+      ),
+      ad(LocalDate.of(2024, 1, 2), "Java")
+    );
+
+    List<PeriodStatistics> weeks = statsService.getKotlinVsJavaStats(
+      LocalDate.of(2022, 1, 1),
+      LocalDate.of(2024, 1, 31),
+      Granularity.WEEK
+    );
+    List<PeriodStatistics> months = statsService.getKotlinVsJavaStats(
+      LocalDate.of(2022, 1, 1),
+      LocalDate.of(2024, 1, 31),
+      Granularity.MONTH
+    );
+
+    // The history is only kept per week, so the months only count the stored job ads
+    assertThat(weeks)
+      .containsExactly(
+        new PeriodStatistics(week, week.plusWeeks(1), 2L, 1L, 5L),
+        new PeriodStatistics(
+          LocalDate.of(2024, 1, 1),
+          LocalDate.of(2024, 1, 8),
+          1L,
+          1L,
+          2L
+        )
+      );
+    assertThat(months)
+      .extracting(PeriodStatistics::periodStart, PeriodStatistics::totalCount)
+      .containsExactly(tuple(LocalDate.of(2024, 1, 1), 1L));
+  }
+
+  @Test
+  void testDailyCountsAreRolledUpToMonthsAndDays() {
+    givenAds(
+      ad(LocalDate.of(2024, 1, 31), "Kotlin"),
+      ad(LocalDate.of(2024, 2, 1), "Java"),
+      ad(LocalDate.of(2024, 2, 29), "Kotlin"),
+      ad(LocalDate.of(2024, 2, 29), "Java")
+    );
+
+    List<PeriodStatistics> months = statsService.getKotlinVsJavaStats(
+      LocalDate.of(2024, 1, 1),
+      LocalDate.of(2024, 2, 29),
+      Granularity.MONTH
+    );
+    List<PeriodStatistics> days = statsService.getKotlinVsJavaStats(
+      LocalDate.of(2024, 2, 1),
+      LocalDate.of(2024, 2, 29),
+      Granularity.DAY
+    );
+
+    assertThat(months)
+      .extracting(PeriodStatistics::periodStart, PeriodStatistics::totalCount)
+      .containsExactly(
+        tuple(LocalDate.of(2024, 1, 1), 1L),
+        tuple(LocalDate.of(2024, 2, 1), 3L)
+      );
+    assertThat(days)
+      .extracting(PeriodStatistics::periodStart)
+      .containsExactly(LocalDate.of(2024, 2, 1), LocalDate.of(2024, 2, 29));
+  }
+
+  @Test
+  void testWindowIsSnappedToWholePeriods() {
+    givenAds(
+      ad(LocalDate.of(2024, 1, 1), "Kotlin"), // Monday
+      ad(LocalDate.of(2024, 1, 14), "Java") // Sunday
+    );
+
+    // Wednesday to Wednesday covers the whole weeks of both days
+    List<PeriodStatistics> result = statsService.getKotlinVsJavaStats(
+      LocalDate.of(2024, 1, 3),
+      LocalDate.of(2024, 1, 10),
+      Granularity.WEEK
+    );
+
+    assertThat(result)
+      .extracting(PeriodStatistics::totalCount)
+      .containsExactly(1L, 1L);
+  }
+
+  @Test
+  void testDefaultWindowIsTheLastSixMonths() {
+    givenAds(
+      ad(LocalDate.of(2023, 8, 31), "Kotlin"),
+      ad(LocalDate.of(2023, 9, 1), "Kotlin"),
+      ad(LocalDate.of(2023, 9, 15), "Kotlin"),
+      ad(LocalDate.of(2024, 3, 15), "Java")
+    );
+
+    List<PeriodStatistics> result = statsService.getKotlinVsJavaStats(
+      null,
+      null,
+      Granularity.MONTH
+    );
+
+    assertThat(result)
+      .extracting(PeriodStatistics::periodStart, PeriodStatistics::totalCount)
+      .containsExactly(
+        tuple(LocalDate.of(2023, 9, 1), 2L),
+        tuple(LocalDate.of(2024, 3, 1), 1L)
+      );
+  }
+
+  @Test
+  void testAdsWithoutPublishedDateAreLeftOut() {
+    givenAds(
+      ad(LocalDate.of(2024, 3, 1), "Kotlin"),
+      JobAdSnapshot.Row.of("uuid", null, null, null, "Kotlin")
+    );
+
+    List<PeriodStatistics> result = statsService.getKotlinVsJavaStats(
+      null,
+      null,
+      Granularity.MONTH
+    );
+
+    assertThat(result)
+      .extracting(PeriodStatistics::kotlinCount)
+      .containsExactly(1L);
+  }
+
+  @Test
+  void testFromAfterToIsRejected() {
+    assertThatThrownBy(() ->
+        statsService.getKotlinVsJavaStats(
+          LocalDate.of(2024, 2, 1),
+          LocalDate.of(2024, 1, 1),
+          Granularity.DAY
+        )
+      )
+      .isInstanceOf(IllegalArgumentException.class);
+    verifyNoInteractions(snapshotService);
+  }
+
+  @Test
+  void testBreakdownByRegionIsFilteredBySector() {
+    givenAds(
+      ad(LocalDate.of(2024, 1, 1), "Kotlin", "OSLO", "Privat"),
+      ad(LocalDate.of(2024, 1, 2), "Java", "OSLO", "Offentlig"),
+      ad(LocalDate.of(2024, 1, 8), "Java", "VESTLAND", "Offentlig"),
+      ad(LocalDate.of(2024, 1, 9), "Kotlin og Java", "VESTLAND", "Offentlig"),
+      ad(LocalDate.of(2024, 1, 9), "Java", null, "Offentlig")
+    );
+
+    List<DimensionStatistics> all = statsService.getKotlinVsJavaBreakdown(
+      LocalDate.of(2024, 1, 1),
+      LocalDate.of(2024, 1, 31),
+      Dimension.REGION,
+      null,
+      null,
+      null
+    );
+    List<DimensionStatistics> publicSector =
+      statsService.getKotlinVsJavaBreakdown(
+        LocalDate.of(2024, 1, 1),
+        LocalDate.of(2024, 1, 31),
+        Dimension.REGION,
+        null,
+        "offentlig",
+        null
+      );
+
+    assertThat(all)
+      .containsExactly(
+        new DimensionStatistics("OSLO", 1L, 1L, 2L),
+        new DimensionStatistics("VESTLAND", 1L, 2L, 2L),
+        new DimensionStatistics(null, 0L, 1L, 1L)
+      );
+    assertThat(publicSector)
+      .containsExactly(
+        new DimensionStatistics("VESTLAND", 1L, 2L, 2L),
+        new DimensionStatistics("OSLO", 0L, 1L, 1L),
+        new DimensionStatistics(null, 0L, 1L, 1L)
+      );
+  }
+
+  @Test
+  void testFilteredStatsAreGroupedByWeek() {
+    givenAds(
+      ad(LocalDate.of(2024, 1, 1), "Kotlin", "OSLO", "Privat"),
+      ad(LocalDate.of(2024, 1, 7), "Java", "OSLO", "Privat"),
+      ad(LocalDate.of(2024, 1, 8), "Java", "VESTLAND", "Privat"),
+      ad(LocalDate.of(2024, 1, 15), "Java", "OSLO", "Offentlig")
+    );
+
+    List<PeriodStatistics> result = statsService.getKotlinVsJavaStats(
+      LocalDate.of(2024, 1, 3),
+      LocalDate.of(2024, 1, 31),
+      Granularity.WEEK,
+      "oslo",
+      null,
+      null
+    );
+
+    assertThat(result)
+      .containsExactly(
+        new PeriodStatistics(
+          LocalDate.of(2024, 1, 1),
+          LocalDate.of(2024, 1, 8),
+          1L,
+          1L,
+          2L
+        ),
+        new PeriodStatistics(
+          LocalDate.of(2024, 1, 15),
+          LocalDate.of(2024, 1, 22),
+          0L,
+          1L,
+          1L
+        )
+      );
+  }
+
+  @Test
+  void testStatsAreBrokenDownAndFilteredByCategory() {
+    givenAds(
+      ad(LocalDate.of(2024, 1, 1), "Kotlin", "IT"),
+      ad(LocalDate.of(2024, 1, 2), "Java", "IT"),
+      ad(LocalDate.of(2024, 1, 8), "Java", "Bygg og anlegg"),
+      ad(LocalDate.of(2024, 1, 9), "Kotlin og Java", "Bygg og anlegg")
+    );
+
+    List<DimensionStatistics> byCategory =
+      statsService.getKotlinVsJavaBreakdown(
+        LocalDate.of(2024, 1, 1),
+        LocalDate.of(2024, 1, 31),
+        Dimension.CATEGORY,
+        null,
+        null,
+        null
+      );
+    List<PeriodStatistics> it = statsService.getKotlinVsJavaStats(
+      LocalDate.of(2024, 1, 1),
+      LocalDate.of(2024, 1, 31),
+      Granularity.WEEK,
+      null,
+      null,
+      "it"
+    );
+
+    assertThat(byCategory)
+      .containsExactly(
+        new DimensionStatistics("Bygg og anlegg", 1L, 2L, 2L),
+        new DimensionStatistics("IT", 1L, 1L, 2L)
+      );
+    assertThat(it)
+      .containsExactly(
+        new PeriodStatistics(
+          LocalDate.of(2024, 1, 1),
+          LocalDate.of(2024, 1, 8),
+          1L,
+          1L,
+          2L
+        )
+      );
+  }
+
+  @Test
+  void testUnknownFilterValueGivesNoStatistics() {
+    givenAds(ad(LocalDate.of(2024, 1, 1), "Kotlin", "OSLO", "Privat"));
+
+    assertThat(
+      statsService.getKotlinVsJavaBreakdown(
+        null,
+        null,
+        Dimension.SECTOR,
+        "FINNMARK",
+        null,
+        null
+      )
+    )
+      .isEmpty();
+  }
+
+  @Test
+  void testFilteredStatsRequireWeeks() {
+    assertThatThrownBy(() ->
+        statsService.getKotlinVsJavaStats(
+          null,
+          null,
+          Granularity.MONTH,
+          "OSLO",
+          null,
+          null
+        )
+      )
+      .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private void givenAds(JobAdSnapshot.Row... rows) {
+    givenAds(WeeklyHistory.EMPTY, rows);
+  }
+
+  private void givenAds(WeeklyHistory history, JobAdSnapshot.Row... rows) {
+    when(snapshotService.getSnapshot())
+      .thenReturn(JobAdSnapshots.snapshot(history, rows));
+  }
+}
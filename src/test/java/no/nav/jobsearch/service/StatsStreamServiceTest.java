@@ -0,0 +1,145 @@
+package no.nav.jobsearch.service;
+
+import static no.nav.jobsearch.service.JobAdSnapshots.ad;
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import no.nav.jobsearch.StatsController;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+@ExtendWith(MockitoExtension.class)
+class StatsStreamServiceTest {
+
+  private static final LocalDate FROM = LocalDate.of(2024, 1, 1);
+
+  @Mock
+  private JobAdSnapshotService snapshotService;
+
+  private StatsStreamService statsStreamService;
+
+  private MockMvc mockMvc;
+
+  @BeforeEach
+  void setUp() {
+    MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    Clock clock = Clock.fixed(
+      Instant.parse("2024-03-15T12:00:00Z"),
+      ZoneOffset.UTC
+    );
+    StatsService statsService = new StatsService(
+      snapshotService,
+      mock(KeywordIndexService.class),
+      meterRegistry,
+      clock
+    );
+    StatsResponseCache statsResponseCache = new StatsResponseCache(
+      statsService,
+      snapshotService,
+      new ObjectMapper().findAndRegisterModules(),
+      meterRegistry,
+      clock
+    );
+    statsStreamService =
+      new StatsStreamService(statsResponseCache, meterRegistry, 60_000);
+    mockMvc =
+      MockMvcBuilders
+        .standaloneSetup(
+          new StatsController(
+            statsService,
+            statsResponseCache,
+            statsStreamService
+          )
+        )
+        .build();
+  }
+
+  @AfterEach
+  void tearDown() {
+    statsStreamService.shutdown();
+  }
+
+  @Test
+  void testStatisticsArePushedOnlyWhenTheyChange() throws Exception {
+    JobAdSnapshot.Row kotlinAd = ad(FROM, "Kotlin");
+    givenAds(kotlinAd);
+    MockHttpServletResponse response = mockMvc
+      .perform(get("/stats/kotlin-vs-java/stream"))
+      .andExpect(request().asyncStarted())
+      .andReturn()
+      .getResponse();
+    assertThat(statsStreamService.getSubscriberCount()).isEqualTo(1);
+    assertThat(events(response)).isEqualTo(1);
+
+    // An ingest run that doesn't change the numbers is not pushed
+    givenAds(kotlinAd);
+    statsStreamService.sendUpdates();
+    assertThat(events(response)).isEqualTo(1);
+
+    givenAds(kotlinAd, ad(FROM, "Java"));
+    statsStreamService.sendUpdates();
+    assertThat(events(response)).isEqualTo(2);
+    assertThat(response.getContentAsString())
+      .contains("event:stats")
+      .contains("\"kotlinCount\":1")
+      .contains("\"javaCount\":1");
+  }
+
+  @Test
+  void testReconnectWithCurrentEventIdIsNotSentTheStatisticsAgain()
+    throws Exception {
+    givenAds(ad(FROM, "Kotlin"));
+    MockHttpServletResponse first = mockMvc
+      .perform(get("/stats/kotlin-vs-java/stream"))
+      .andReturn()
+      .getResponse();
+    String eventId = first
+      .getContentAsString()
+      .lines()
+      .filter(line -> line.startsWith("id:"))
+      .findFirst()
+      .orElseThrow()
+      .substring("id:".length());
+
+    MockHttpServletResponse reconnected = mockMvc
+      .perform(
+        get("/stats/kotlin-vs-java/stream").header("Last-Event-ID", eventId)
+      )
+      .andExpect(request().asyncStarted())
+      .andReturn()
+      .getResponse();
+
+    assertThat(events(reconnected)).isZero();
+    assertThat(statsStreamService.getSubscriberCount()).isEqualTo(2);
+  }
+
+  private static long events(MockHttpServletResponse response)
+    throws Exception {
+    return response
+      .getContentAsString()
+      .lines()
+      .filter(line -> line.startsWith("event:stats"))
+      .count();
+  }
+
+  private void givenAds(JobAdSnapshot.Row... rows) {
+    when(snapshotService.getSnapshot())
+      .thenReturn(JobAdSnapshots.snapshot(rows));
+  }
+}
@@ -0,0 +1,45 @@
+package no.nav.jobsearch.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+class UuidSetTest {
+
+  @Test
+  void testAddReportsWhetherUuidIsNew() {
+    UuidSet set = new UuidSet();
+    String uuid = "5b4c0b4e-2ad8-4a8e-9a10-3c4f1a2b3c01";
+
+    assertThat(set.add(uuid)).isTrue();
+    assertThat(set.add(uuid.toUpperCase())).isFalse();
+    assertThat(set.add("not-a-uuid")).isTrue();
+    assertThat(set.add("not-a-uuid")).isFalse();
+    assertThat(set.add(new UUID(0, 0))).isTrue();
+    assertThat(set.add(new UUID(0, 0))).isFalse();
+
+    assertThat(set.size()).isEqualTo(3);
+    assertThat(set.contains(uuid)).isTrue();
+    assertThat(set.contains("not-a-uuid")).isTrue();
+    assertThat(set.contains("5b4c0b4e-2ad8-4a8e-9a10-3c4f1a2b3c02")).isFalse();
+  }
+
+  @Test
+  void testSetGrowsWithoutLosingUuids() {
+    UuidSet set = new UuidSet();
+    List<UUID> uuids = new ArrayList<>();
+    for (int i = 0; i < 10_000; i++) {
+      // Sequential UUIDs differing in the high bits only, to exercise the hash
+      uuids.add(new UUID((long) i << 32, 0x8000_0000_0000_0000L));
+    }
+    uuids.forEach(set::add);
+
+    assertThat(set.size()).isEqualTo(10_000);
+    assertThat(uuids).allMatch(set::contains);
+    assertThat(set.contains(new UUID(10_000L << 32, 0x8000_0000_0000_0000L)))
+      .isFalse();
+  }
+}